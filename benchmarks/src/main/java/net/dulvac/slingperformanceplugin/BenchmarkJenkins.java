@@ -0,0 +1,122 @@
+package net.dulvac.slingperformanceplugin;
+
+import hudson.Util;
+import hudson.model.AbstractBuild;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.TaskListener;
+import hudson.util.NullStream;
+import hudson.util.StreamTaskListener;
+import net.dulvac.slingperformanceplugin.parsers.GenericReportParser;
+import net.dulvac.slingperformanceplugin.parsers.SlingTextFormatReportParser;
+import net.dulvac.slingperformanceplugin.reports.PerformanceReport;
+import org.junit.runner.Description;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.kohsuke.stapler.StaplerRequest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Jenkins instance for the benchmarks that need projects and builds, started and stopped outside of JUnit.
+ */
+final class BenchmarkJenkins extends JenkinsRule {
+
+    static final TaskListener LISTENER = new StreamTaskListener(new NullStream());
+
+    void start() throws Throwable {
+        // JenkinsRule looks at the annotations of the running test
+        testDescription = Description.createSuiteDescription(BenchmarkJenkins.class);
+        before();
+    }
+
+    void stop() throws Exception {
+        after();
+    }
+
+    /**
+     * Creates a project with the given number of builds, each recording a synthetic report of the given number of
+     * tests the way the publisher does.
+     */
+    FreeStyleProject createProject(int builds, int tests) throws IOException {
+        FreeStyleProject project = createFreeStyleProject();
+        File dir = Util.createTempDir();
+        try {
+            SlingTextFormatReportParser parser = new SlingTextFormatReportParser("");
+            for (int i = 0; i < builds; i++) {
+                FreeStyleBuild build = project.createExecutable();
+                File report = SyntheticReports.write(dir, SyntheticReports.REPORT_FILE_NAME, tests, i);
+                List<Collection<PerformanceReport>> samples = new ArrayList<Collection<PerformanceReport>>();
+                samples.add(parser.parse(build, Collections.singletonList(report), LISTENER));
+                SlingPerformanceReportMap reportMap = createReportMap(build, true, samples);
+                TrendIndex.get(project).record(build, reportMap);
+                ReportCatalog.get(project).record(build, reportMap);
+            }
+        } finally {
+            Util.deleteRecursive(dir);
+        }
+        return project;
+    }
+
+    /**
+     * Creates the report map of a build from parsed reports, the way the publisher does.
+     */
+    static SlingPerformanceReportMap createReportMap(AbstractBuild<?, ?> build, boolean mergeSamples,
+                                                     List<Collection<PerformanceReport>> samples) {
+        PerformanceBuildAction action = new PerformanceBuildAction(build, new PrintStream(new NullStream()),
+                new ArrayList<GenericReportParser>());
+        SlingPerformanceReportMap reportMap = new SlingPerformanceReportMap(action);
+        reportMap.setMergeSamples(mergeSamples);
+        for (int i = 0; i < samples.size(); i++) {
+            reportMap.addReports(samples.get(i), i);
+        }
+        return reportMap;
+    }
+
+    /**
+     * @return a request carrying only the report position, like the requests of the trend pages without cookies
+     */
+    static StaplerRequest request(final String reportFileName, final String reportName) {
+        return (StaplerRequest) Proxy.newProxyInstance(StaplerRequest.class.getClassLoader(),
+                new Class<?>[] {StaplerRequest.class}, new InvocationHandler() {
+
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        String name = method.getName();
+                        if (name.equals("bindParameters") && args[0] instanceof PerformanceReportPosition) {
+                            PerformanceReportPosition position = (PerformanceReportPosition) args[0];
+                            position.setPerformanceReportPosition(reportFileName);
+                            position.setReportName(reportName);
+                            return null;
+                        }
+                        if (name.equals("equals")) {
+                            return proxy == args[0];
+                        }
+                        if (name.equals("hashCode")) {
+                            return System.identityHashCode(proxy);
+                        }
+                        if (name.equals("toString")) {
+                            return "request for " + reportName;
+                        }
+                        Class<?> type = method.getReturnType();
+                        if (type == boolean.class) {
+                            return false;
+                        }
+                        if (type == int.class) {
+                            return 0;
+                        }
+                        if (type == long.class) {
+                            return 0L;
+                        }
+                        return null;
+                    }
+                });
+    }
+}
@@ -0,0 +1,71 @@
+package net.dulvac.slingperformanceplugin;
+
+import hudson.util.DataSetBuilder;
+import org.jfree.chart.ChartUtilities;
+import org.jfree.data.category.CategoryDataset;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering of the response time chart of the project page as PNG, with one plot per dataset.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ChartBenchmark {
+
+    @Param({"100", "1000"})
+    public int builds;
+
+    @Param({"1", "5"})
+    public int datasets;
+
+    private List<CategoryDataset> datasetList;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        datasetList = new ArrayList<CategoryDataset>();
+        for (int i = 0; i < datasets; i++) {
+            DataSetBuilder<String, CustomNumberOnlyBuildLabel> dataSetBuilder =
+                    new DataSetBuilder<String, CustomNumberOnlyBuildLabel>();
+            for (int build = 1; build <= builds; build++) {
+                CustomNumberOnlyBuildLabel label = new CustomNumberOnlyBuildLabel(build);
+                long median = 50 + random.nextInt(200);
+                dataSetBuilder.add(median / 2, Messages.ProjectAction_Minimum(), label);
+                dataSetBuilder.add(median * 3 / 4, Messages.ProjectAction_Line10(), label);
+                dataSetBuilder.add(median, Messages.ProjectAction_Median(), label);
+                dataSetBuilder.add(median * 2, Messages.ProjectAction_Line90(), label);
+                dataSetBuilder.add(median * 3, Messages.ProjectAction_Maximum(), label);
+            }
+            datasetList.add(dataSetBuilder.build());
+        }
+    }
+
+    @Benchmark
+    public byte[] createRespondingTimeChart() throws IOException {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ChartUtilities.writeChartAsPNG(png, SlingPerformanceProjectAction.createRespondingTimeChart(datasetList),
+                SlingPerformanceProjectAction.CHART_DEFAULT_W, datasets * SlingPerformanceProjectAction.CHART_DEFAULT_H);
+        return png.toByteArray();
+    }
+}
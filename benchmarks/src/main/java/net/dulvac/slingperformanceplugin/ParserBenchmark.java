@@ -0,0 +1,60 @@
+package net.dulvac.slingperformanceplugin;
+
+import hudson.Util;
+import net.dulvac.slingperformanceplugin.parsers.SlingTextFormatReportParser;
+import net.dulvac.slingperformanceplugin.reports.PerformanceReport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of a Sling text report file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ParserBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int rows;
+
+    private File dir;
+    private List<File> reports;
+    private SlingTextFormatReportParser parser;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = Util.createTempDir();
+        reports = Collections.singletonList(SyntheticReports.write(dir, SyntheticReports.REPORT_FILE_NAME, rows, 1));
+        parser = new SlingTextFormatReportParser("");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Util.deleteRecursive(dir);
+    }
+
+    @Benchmark
+    public Collection<PerformanceReport> parse() throws IOException {
+        return parser.parse(null, reports, BenchmarkJenkins.LISTENER);
+    }
+}
@@ -0,0 +1,88 @@
+package net.dulvac.slingperformanceplugin;
+
+import hudson.Util;
+import hudson.model.FreeStyleBuild;
+import net.dulvac.slingperformanceplugin.parsers.SlingTextFormatReportParser;
+import net.dulvac.slingperformanceplugin.reports.PerformanceReport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Construction of the report map of a build from several samples of the same tests, with and without merging the
+ * samples.
+ *
+ * <p> Constructing the map changes the parsed reports, so they are parsed again before every invocation. </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReportMapBenchmark {
+
+    @Param({"true", "false"})
+    public boolean mergeSamples;
+
+    @Param({"1000", "10000"})
+    public int tests;
+
+    @Param({"5"})
+    public int samples;
+
+    private final BenchmarkJenkins jenkins = new BenchmarkJenkins();
+    private final SlingTextFormatReportParser parser = new SlingTextFormatReportParser("");
+    private File dir;
+    private FreeStyleBuild build;
+    private List<File> reports;
+    private List<Collection<PerformanceReport>> parsed;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        jenkins.start();
+        build = jenkins.createFreeStyleProject().createExecutable();
+        dir = Util.createTempDir();
+        reports = new ArrayList<File>();
+        for (int i = 0; i < samples; i++) {
+            reports.add(SyntheticReports.write(dir, "sample" + i + ".txt", tests, i));
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void parse() throws IOException {
+        parsed = new ArrayList<Collection<PerformanceReport>>();
+        for (File report : reports) {
+            parsed.add(parser.parse(build, Collections.singletonList(report), BenchmarkJenkins.LISTENER));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Util.deleteRecursive(dir);
+        jenkins.stop();
+    }
+
+    @Benchmark
+    public SlingPerformanceReportMap construct() {
+        return BenchmarkJenkins.createReportMap(build, mergeSamples, parsed);
+    }
+}
@@ -0,0 +1,45 @@
+package net.dulvac.slingperformanceplugin;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Random;
+
+/**
+ * Writes synthetic report files in the Sling text format, one row per test, with random but reproducible timings.
+ */
+final class SyntheticReports {
+
+    static final String REPORT_FILE_NAME = "report.txt";
+
+    private static final String HEADER = "Test Suite          |Test Class                                   "
+            + "|Test Case            |      DateTime      |  min  |   10%   |   50%   |   90%   |   max";
+
+    private SyntheticReports() {
+    }
+
+    /**
+     * @param seed seed of the timings; the same seed gives the same report
+     */
+    static File write(File dir, String name, int tests, long seed) throws IOException {
+        File file = new File(dir, name);
+        Random random = new Random(seed);
+        Writer out = new BufferedWriter(new FileWriter(file), 64 * 1024);
+        try {
+            out.write(HEADER);
+            out.write('\n');
+            for (int test = 0; test < tests; test++) {
+                int median = 50 + random.nextInt(200);
+                out.write(String.format("Suite%-15d|com.example.performance.PerformanceTest%-5d|testMethod%-11d"
+                                + "|2015/01/31 12:00:00 |%7d|%9d|%9d|%9d|%9d\n",
+                        test % 10, test / 10 % 1000, test, median / 2, median * 3 / 4, median, median * 2,
+                        median * 3 + random.nextInt(100)));
+            }
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+}
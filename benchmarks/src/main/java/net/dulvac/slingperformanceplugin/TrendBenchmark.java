@@ -0,0 +1,77 @@
+package net.dulvac.slingperformanceplugin;
+
+import hudson.model.FreeStyleProject;
+import hudson.util.DataSetBuilder;
+import org.jfree.data.category.CategoryDataset;
+import org.kohsuke.stapler.StaplerRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aggregation of the trend of one test over the builds of a project, for the trend graphs and the trend report.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TrendBenchmark {
+
+    private static final List<DataFilter> ALL_METRICS = Arrays.asList(DataFilter.values());
+
+    @Param({"100", "1000", "5000"})
+    public int builds;
+
+    @Param({"20"})
+    public int tests;
+
+    private final BenchmarkJenkins jenkins = new BenchmarkJenkins();
+    private FreeStyleProject project;
+    private SlingPerformanceProjectAction action;
+    private StaplerRequest request;
+    private String reportName;
+
+    @Setup
+    public void setUp() throws Throwable {
+        jenkins.start();
+        project = jenkins.createProject(builds, tests);
+        action = new SlingPerformanceProjectAction(project);
+        reportName = ReportCatalog.get(project).getReportNames(SyntheticReports.REPORT_FILE_NAME).get(0);
+        request = BenchmarkJenkins.request(SyntheticReports.REPORT_FILE_NAME, reportName);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        jenkins.stop();
+    }
+
+    @Benchmark
+    public Map<Integer, DataSetBuilder<String, CustomNumberOnlyBuildLabel>> addToDatasetBuilders() {
+        Map<Integer, DataSetBuilder<String, CustomNumberOnlyBuildLabel>> datasetBuilders =
+                new HashMap<Integer, DataSetBuilder<String, CustomNumberOnlyBuildLabel>>();
+        action.addToDatasetBuilders(request, ALL_METRICS, project, datasetBuilders, false);
+        return datasetBuilders;
+    }
+
+    @Benchmark
+    public CategoryDataset getTrendReportData() {
+        return action.getTrendReportData(request, reportName).build();
+    }
+}
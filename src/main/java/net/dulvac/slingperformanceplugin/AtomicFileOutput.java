@@ -0,0 +1,81 @@
+package net.dulvac.slingperformanceplugin;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Output to a file that readers only see once it is completely written.
+ *
+ * <p> The data is written to a temporary file of a unique name in the directory of the file, which {@link #commit()}
+ * renames to the file. Concurrent writers of the same file never share a temporary file, and the last one to commit
+ * wins. A writer that fails calls {@link #abort()}, which deletes its temporary file. </p>
+ *
+ * <pre>
+ * AtomicFileOutput output = new AtomicFileOutput(file);
+ * try {
+ *     output.getStream().writeInt(MAGIC);
+ *     output.commit();
+ * } finally {
+ *     output.abort();
+ * }
+ * </pre>
+ */
+final class AtomicFileOutput {
+
+    private final File file;
+    private final File tmp;
+    private final DataOutputStream out;
+    private boolean committed;
+
+    AtomicFileOutput(File file) throws IOException {
+        this.file = file;
+        File dir = file.getAbsoluteFile().getParentFile();
+        // createTempFile needs a prefix of at least three characters
+        this.tmp = File.createTempFile(file.getName() + "-", ".tmp", dir);
+        try {
+            this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        }
+    }
+
+    DataOutputStream getStream() {
+        return out;
+    }
+
+    /**
+     * Closes the output and replaces the file with what was written.
+     */
+    void commit() throws IOException {
+        out.close();
+        if (!tmp.renameTo(file)) {
+            // renameTo does not replace an existing file on every platform; the file may also have been deleted by
+            // another writer in the meantime, so only the second rename tells whether it failed
+            file.delete();
+            if (!tmp.renameTo(file)) {
+                throw new IOException("Unable to replace " + file + " with " + tmp);
+            }
+        }
+        committed = true;
+    }
+
+    /**
+     * Closes the output and deletes the temporary file, unless the output was committed. Does nothing after
+     * {@link #commit()}, so it can be called in a <code>finally</code> block.
+     */
+    void abort() {
+        if (committed) {
+            return;
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            // the temporary file is deleted anyway
+        }
+        tmp.delete();
+    }
+}
@@ -0,0 +1,507 @@
+package net.dulvac.slingperformanceplugin;
+
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.model.Result;
+import net.dulvac.slingperformanceplugin.reports.PerformanceReport;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Per-project running statistics of the successful builds, one {@link Baseline} per test.
+ *
+ * <p> The publisher updates the store when a successful build completes, in constant time per test: every baseline
+ * keeps an exponentially weighted mean and variance of the median and the 90% line, and the values of the last
+ * builds in a ring. Comparisons with the baseline therefore never load historical builds. </p>
+ *
+ * <p> Deleting a build does not change the store, since its values cannot be taken out of the weighted statistics;
+ * they fade out with the following builds. The weight of the newest build and the size of the ring can be set with
+ * the <code>net.dulvac.slingperformanceplugin.BaselineStore.alpha</code> and <code>.window</code> system properties.
+ * When the window changes, or the {@link TestDictionary} is recreated, the store is rebuilt from the
+ * {@link TrendIndex}. </p>
+ *
+ * <p> The baselines of the tests of a build, as they were before the build was recorded, are also kept with the
+ * build, so the build pages keep comparing the build with the baseline it was published against. </p>
+ */
+public final class BaselineStore {
+
+    public static final String STORE_FILE_NAME = "performance-baseline.bin";
+
+    public static final String BUILD_FILE_NAME = "performance-build-baseline.bin";
+
+    private static final Logger LOGGER = Logger.getLogger(BaselineStore.class.getName());
+
+    private static final int MAGIC = 0x53504253;
+    private static final int BUILD_MAGIC = 0x53504242;
+    private static final int VERSION = 1;
+
+    static final double ALPHA = parseAlpha(System.getProperty(BaselineStore.class.getName() + ".alpha"));
+    static final int WINDOW = Math.max(1, Integer.getInteger(BaselineStore.class.getName() + ".window", 10));
+
+    private static final ConcurrentMap<String, BaselineStore> STORES = new ConcurrentHashMap<String, BaselineStore>();
+
+    private final File file;
+    private final TestDictionary dictionary;
+
+    /**
+     * Baselines indexed by test id; <code>null</code> for tests without successful builds.
+     */
+    private final List<Baseline> baselines = new ArrayList<Baseline>();
+
+    /**
+     * Number of the last build included, so a build is never counted twice.
+     */
+    private int lastBuild;
+
+    /**
+     * Whether the store is written; not when it was rebuilt from part of the builds.
+     */
+    private boolean persistent = true;
+
+    BaselineStore(File file, TestDictionary dictionary) {
+        this.file = file;
+        this.dictionary = dictionary;
+    }
+
+    public static File getStoreFile(AbstractProject<?, ?> project) {
+        return new File(project.getRootDir(), STORE_FILE_NAME);
+    }
+
+    public static File getBuildFile(AbstractBuild<?, ?> build) {
+        return new File(build.getRootDir(), BUILD_FILE_NAME);
+    }
+
+    /**
+     * Returns the baseline store of a project. When the project has no store yet, it is built once from the project's
+     * {@link TrendIndex}.
+     */
+    public static BaselineStore get(AbstractProject<?, ?> project) {
+        File file = getStoreFile(project);
+        BaselineStore store = STORES.get(file.getPath());
+        if (store != null) {
+            return store;
+        }
+        store = new BaselineStore(file, TestDictionary.get(project));
+        synchronized (store) {
+            BaselineStore existing = STORES.putIfAbsent(file.getPath(), store);
+            if (existing != null) {
+                return existing;
+            }
+            if ((!file.isFile() || !store.load()) && !store.rebuild(project)) {
+                // rebuilt from part of the builds, while the trend index is being built; not kept
+                STORES.remove(file.getPath(), store);
+            }
+        }
+        return store;
+    }
+
+    /**
+     * Returns the baseline store of a project only if it has one, without building it.
+     */
+    static BaselineStore getIfExists(AbstractProject<?, ?> project) {
+        File file = getStoreFile(project);
+        if (!STORES.containsKey(file.getPath()) && !file.isFile()) {
+            return null;
+        }
+        return get(project);
+    }
+
+    /**
+     * Adds the values of a successful build. Builds older than the last build included are ignored.
+     */
+    public void record(AbstractBuild<?, ?> build, SlingPerformanceReportMap reportMap) throws IOException {
+        record(build.number, reportMap.getPerformanceReportMap().values());
+    }
+
+    synchronized void record(int buildNumber, Collection<PerformanceReport> reports) throws IOException {
+        if (buildNumber <= lastBuild) {
+            return;
+        }
+        for (PerformanceReport report : reports) {
+            int id = report.getTestId();
+            if (id < 0) {
+                id = dictionary.identify(report).getId();
+            }
+            if (report.getReportSample() != null) {
+                getOrCreate(id).add(report.getMedian(), report.get90Percentile());
+            }
+        }
+        lastBuild = buildNumber;
+        save();
+    }
+
+    /**
+     * Keeps the current baselines of the tests of a build with the build, before the build is recorded. Nothing is
+     * kept if the store already includes the build.
+     */
+    public void saveForBuild(AbstractBuild<?, ?> build, SlingPerformanceReportMap reportMap) throws IOException {
+        if (build.number > getLastBuild()) {
+            writeBaselines(getBuildFile(build), reportMap.getPerformanceReportMap().values());
+        }
+    }
+
+    /**
+     * Writes the current baselines of the tests of the given reports.
+     */
+    synchronized void writeBaselines(File buildFile, Collection<PerformanceReport> reports) throws IOException {
+        Set<Integer> ids = new TreeSet<Integer>();
+        for (PerformanceReport report : reports) {
+            int id = report.getTestId();
+            if (id >= 0 && id < baselines.size() && baselines.get(id) != null) {
+                ids.add(id);
+            }
+        }
+        AtomicFileOutput output = new AtomicFileOutput(buildFile);
+        try {
+            DataOutputStream out = output.getStream();
+            out.writeInt(BUILD_MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(dictionary.getToken());
+            out.writeInt(WINDOW);
+            out.writeInt(ids.size());
+            for (int id : ids) {
+                out.writeInt(id);
+                baselines.get(id).write(out);
+            }
+            output.commit();
+        } finally {
+            output.abort();
+        }
+    }
+
+    /**
+     * Reads the baselines kept with a build.
+     *
+     * @return the baselines keyed by test id, or <code>null</code> if the build has none that can be read
+     */
+    static Map<Integer, Baseline> readBaselines(File buildFile, TestDictionary dictionary) {
+        if (!buildFile.isFile()) {
+            return null;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(buildFile)));
+            try {
+                if (in.readInt() != BUILD_MAGIC || in.readInt() != VERSION || in.readLong() != dictionary.getToken()
+                        || in.readInt() != WINDOW) {
+                    return null;
+                }
+                int count = in.readInt();
+                Map<Integer, Baseline> result = new HashMap<Integer, Baseline>();
+                for (int i = 0; i < count; i++) {
+                    int id = in.readInt();
+                    Baseline baseline = new Baseline();
+                    baseline.read(in);
+                    result.put(id, baseline);
+                }
+                return result;
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to read performance baseline " + buildFile, e);
+            return null;
+        }
+    }
+
+    /**
+     * @return a copy of the baseline of a test, or <code>null</code> if no successful build recorded the test
+     */
+    public synchronized Baseline getBaseline(int testId) {
+        if (testId < 0 || testId >= baselines.size() || baselines.get(testId) == null) {
+            return null;
+        }
+        return baselines.get(testId).copy();
+    }
+
+    public synchronized int getLastBuild() {
+        return lastBuild;
+    }
+
+    /**
+     * Replays the successful builds of the trend index, oldest first. While the trend index is still being built, the
+     * store holds the builds indexed so far, and is not written.
+     *
+     * @return whether the trend index held all builds
+     */
+    private boolean rebuild(AbstractProject<?, ?> project) {
+        baselines.clear();
+        lastBuild = 0;
+        Set<Integer> successful = new HashSet<Integer>();
+        for (AbstractBuild<?, ?> build : project.getBuilds()) {
+            if (build.getResult() == Result.SUCCESS && build.getAction(PerformanceBuildAction.class) != null) {
+                successful.add(build.number);
+            }
+        }
+        TrendIndex trendIndex = TrendIndex.get(project);
+        // asked first, since an index that holds all builds keeps holding them while its series are read
+        persistent = trendIndex.isComplete();
+        for (int id = 0; id < dictionary.size(); id++) {
+            TrendIndex.Series series = trendIndex.getSeries(id);
+            if (series == null) {
+                continue;
+            }
+            for (int row = 0; row < series.size(); row++) {
+                int buildNumber = series.getBuildNumber(row);
+                if (successful.contains(buildNumber)) {
+                    getOrCreate(id).add(series.getValue(DataFilter.MEDIAN, row),
+                            series.getValue(DataFilter.NINENTY_PERCENT, row));
+                    lastBuild = Math.max(lastBuild, buildNumber);
+                }
+            }
+        }
+        try {
+            save();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to write performance baseline " + file, e);
+        }
+        return persistent;
+    }
+
+    /**
+     * @return <code>false</code> if the file could not be read and the store has to be rebuilt
+     */
+    boolean load() {
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readLong() != dictionary.getToken()
+                        || in.readInt() != WINDOW) {
+                    return false;
+                }
+                lastBuild = in.readInt();
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    int id = in.readInt();
+                    if (id < 0 || id >= dictionary.size()) {
+                        throw new IOException("Unknown test in performance baseline " + file);
+                    }
+                    getOrCreate(id).read(in);
+                }
+            } finally {
+                in.close();
+            }
+            return true;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to read performance baseline " + file + ", rebuilding it", e);
+            return false;
+        }
+    }
+
+    private void save() throws IOException {
+        if (!persistent) {
+            return;
+        }
+        AtomicFileOutput output = new AtomicFileOutput(file);
+        try {
+            DataOutputStream out = output.getStream();
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(dictionary.getToken());
+            out.writeInt(WINDOW);
+            out.writeInt(lastBuild);
+            int count = 0;
+            for (Baseline baseline : baselines) {
+                if (baseline != null) {
+                    count++;
+                }
+            }
+            out.writeInt(count);
+            for (int id = 0; id < baselines.size(); id++) {
+                if (baselines.get(id) != null) {
+                    out.writeInt(id);
+                    baselines.get(id).write(out);
+                }
+            }
+            output.commit();
+        } finally {
+            output.abort();
+        }
+    }
+
+    private Baseline getOrCreate(int testId) {
+        while (baselines.size() <= testId) {
+            baselines.add(null);
+        }
+        Baseline baseline = baselines.get(testId);
+        if (baseline == null) {
+            baseline = new Baseline();
+            baselines.set(testId, baseline);
+        }
+        return baseline;
+    }
+
+    private static double parseAlpha(String value) {
+        if (value != null) {
+            try {
+                double alpha = Double.parseDouble(value);
+                if (alpha > 0 && alpha <= 1) {
+                    return alpha;
+                }
+            } catch (NumberFormatException e) {
+                // use the default
+            }
+            LOGGER.warning("Ignoring invalid performance baseline weight " + value);
+        }
+        return 0.2;
+    }
+
+    /**
+     * Running statistics of one test over the successful builds. For multi-sample reports, the values of a build are
+     * those of all its samples merged.
+     */
+    public static final class Baseline {
+
+        private int count;
+        private final Statistic median = new Statistic();
+        private final Statistic ninetyPercent = new Statistic();
+
+        void add(long medianValue, long ninetyPercentValue) {
+            count++;
+            median.add(medianValue);
+            ninetyPercent.add(ninetyPercentValue);
+        }
+
+        /**
+         * @return the number of successful builds that recorded the test
+         */
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * @return the weighted mean of the median or the 90% line
+         */
+        public double getMean(DataFilter metric) {
+            return statistic(metric).mean;
+        }
+
+        public double getStandardDeviation(DataFilter metric) {
+            return Math.sqrt(statistic(metric).variance);
+        }
+
+        /**
+         * @return the values of the last builds, oldest first
+         */
+        public long[] getWindow(DataFilter metric) {
+            return statistic(metric).window();
+        }
+
+        private Statistic statistic(DataFilter metric) {
+            if (metric == DataFilter.MEDIAN) {
+                return median;
+            }
+            if (metric == DataFilter.NINENTY_PERCENT) {
+                return ninetyPercent;
+            }
+            throw new IllegalArgumentException("No baseline of " + metric);
+        }
+
+        Baseline copy() {
+            Baseline copy = new Baseline();
+            copy.count = count;
+            median.copyTo(copy.median);
+            ninetyPercent.copyTo(copy.ninetyPercent);
+            return copy;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(count);
+            median.write(out);
+            ninetyPercent.write(out);
+        }
+
+        void read(DataInputStream in) throws IOException {
+            count = in.readInt();
+            median.read(in);
+            ninetyPercent.read(in);
+        }
+    }
+
+    private static final class Statistic {
+
+        private double mean;
+        private double variance;
+        private final long[] ring = new long[WINDOW];
+        /** Number of values in the ring. */
+        private int filled;
+        /** Position of the next value in the ring. */
+        private int next;
+
+        void add(long value) {
+            if (filled == 0) {
+                mean = value;
+                variance = 0;
+            } else {
+                // incremental form of the exponentially weighted mean and variance
+                double diff = value - mean;
+                double increment = ALPHA * diff;
+                mean += increment;
+                variance = (1 - ALPHA) * (variance + diff * increment);
+            }
+            ring[next] = value;
+            next = (next + 1) % ring.length;
+            if (filled < ring.length) {
+                filled++;
+            }
+        }
+
+        long[] window() {
+            long[] values = new long[filled];
+            int start = (next - filled + ring.length) % ring.length;
+            for (int i = 0; i < filled; i++) {
+                values[i] = ring[(start + i) % ring.length];
+            }
+            return values;
+        }
+
+        void copyTo(Statistic copy) {
+            copy.mean = mean;
+            copy.variance = variance;
+            System.arraycopy(ring, 0, copy.ring, 0, ring.length);
+            copy.filled = filled;
+            copy.next = next;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeDouble(mean);
+            out.writeDouble(variance);
+            long[] values = window();
+            out.writeInt(values.length);
+            for (long value : values) {
+                out.writeLong(value);
+            }
+        }
+
+        void read(DataInputStream in) throws IOException {
+            mean = in.readDouble();
+            variance = in.readDouble();
+            int length = in.readInt();
+            if (length < 0 || length > ring.length) {
+                throw new IOException("Corrupt performance baseline");
+            }
+            for (int i = 0; i < length; i++) {
+                ring[i] = in.readLong();
+            }
+            filled = length;
+            next = length % ring.length;
+        }
+    }
+}
@@ -0,0 +1,394 @@
+package net.dulvac.slingperformanceplugin;
+
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import net.dulvac.slingperformanceplugin.reports.PerformanceReport;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-test differences between the results of two builds, or between a build and the {@link BaselineStore}.
+ *
+ * <p> The differences are computed in one merge pass over the reports of both sides ordered by test id, and kept in a
+ * small controller-wide LRU cache keyed by the pair of builds, since the results of a completed build do not change.
+ * Comparisons with the baseline are keyed by the last build included in the baseline. The cache holds 16 comparisons
+ * by default, which can be changed with the <code>net.dulvac.slingperformanceplugin.BuildComparison.cacheSize</code>
+ * system property. </p>
+ */
+public final class BuildComparison {
+
+    /**
+     * Order of the compared metrics.
+     */
+    public static final DataFilter[] METRICS = {
+            DataFilter.MIN, DataFilter.TEN_PERCENT, DataFilter.MEDIAN, DataFilter.NINENTY_PERCENT, DataFilter.MAX };
+
+    private static final int CACHE_SIZE = Math.max(1, Integer.getInteger(BuildComparison.class.getName()
+            + ".cacheSize", 16));
+
+    private static final Map<String, BuildComparison> CACHE = new LinkedHashMap<String, BuildComparison>(16, 0.75f,
+            true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, BuildComparison> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    /**
+     * Base build number of a comparison with the baseline.
+     */
+    static final int BASELINE = -1;
+
+    private final int baseNumber;
+    private final int targetNumber;
+    private final List<Row> rows;
+
+    BuildComparison(int baseNumber, int targetNumber, List<Row> rows) {
+        this.baseNumber = baseNumber;
+        this.targetNumber = targetNumber;
+        this.rows = Collections.unmodifiableList(rows);
+    }
+
+    /**
+     * Finds the builds to compare from request parameters and compares them.
+     *
+     * @param target the number of the compared build, or <code>null</code> for the last build with performance
+     *               results
+     * @param base   the number of the build to compare with, <code>baseline</code>, or <code>null</code> for the last
+     *               build with performance results before the compared one
+     * @throws IllegalArgumentException if a build does not exist or has no performance results
+     */
+    public static BuildComparison get(AbstractProject<?, ?> project, String target, String base) {
+        AbstractBuild<?, ?> targetBuild;
+        if (target == null || target.length() == 0) {
+            targetBuild = withResults(project.getLastBuild());
+            if (targetBuild == null) {
+                throw new IllegalArgumentException("No build has performance results");
+            }
+        } else {
+            targetBuild = getBuild(project, target);
+        }
+        BuildComparison comparison;
+        if ("baseline".equals(base)) {
+            comparison = getWithBaseline(targetBuild);
+        } else {
+            AbstractBuild<?, ?> baseBuild;
+            if (base == null || base.length() == 0) {
+                baseBuild = withResults(targetBuild.getPreviousBuild());
+                if (baseBuild == null) {
+                    throw new IllegalArgumentException("No build before " + targetBuild.getDisplayName()
+                            + " has performance results");
+                }
+            } else {
+                baseBuild = getBuild(project, base);
+            }
+            comparison = get(baseBuild, targetBuild);
+        }
+        if (comparison == null) {
+            throw new IllegalArgumentException("Build without performance results");
+        }
+        return comparison;
+    }
+
+    private static AbstractBuild<?, ?> getBuild(AbstractProject<?, ?> project, String number) {
+        AbstractBuild<?, ?> build;
+        try {
+            build = project.getBuildByNumber(Integer.parseInt(number));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a build number: " + number);
+        }
+        if (build == null || build.getAction(PerformanceBuildAction.class) == null) {
+            throw new IllegalArgumentException("No performance results of build " + number);
+        }
+        return build;
+    }
+
+    /**
+     * @return the given build or the last one before it with performance results, or <code>null</code>
+     */
+    private static AbstractBuild<?, ?> withResults(AbstractBuild<?, ?> build) {
+        while (build != null && build.getAction(PerformanceBuildAction.class) == null) {
+            build = build.getPreviousBuild();
+        }
+        return build;
+    }
+
+    /**
+     * Compares two builds.
+     *
+     * @return the comparison, or <code>null</code> if either build has no performance results
+     */
+    public static BuildComparison get(AbstractBuild<?, ?> base, AbstractBuild<?, ?> target) {
+        String key = base.getProject().getRootDir().getPath() + '#' + base.number + '#' + target.number;
+        BuildComparison comparison;
+        synchronized (CACHE) {
+            comparison = CACHE.get(key);
+        }
+        if (comparison != null) {
+            return comparison;
+        }
+        SlingPerformanceReportMap baseReports = getReportMap(base);
+        SlingPerformanceReportMap targetReports = getReportMap(target);
+        if (baseReports == null || targetReports == null) {
+            return null;
+        }
+        comparison = compare(base.number, baseReports.getPerformanceReportMap().values(),
+                target.number, targetReports.getPerformanceReportMap().values());
+        synchronized (CACHE) {
+            CACHE.put(key, comparison);
+        }
+        return comparison;
+    }
+
+    /**
+     * Compares a build with the current baseline of its project. Only the median and the 90% line have a baseline.
+     *
+     * @return the comparison, or <code>null</code> if the build has no performance results
+     */
+    public static BuildComparison getWithBaseline(AbstractBuild<?, ?> target) {
+        BaselineStore store = BaselineStore.get(target.getProject());
+        String key = target.getProject().getRootDir().getPath() + "#baseline@" + store.getLastBuild() + '#'
+                + target.number;
+        BuildComparison comparison;
+        synchronized (CACHE) {
+            comparison = CACHE.get(key);
+        }
+        if (comparison != null) {
+            return comparison;
+        }
+        SlingPerformanceReportMap targetReports = getReportMap(target);
+        if (targetReports == null) {
+            return null;
+        }
+        PerformanceReport[] reports = sortByTestId(targetReports.getPerformanceReportMap().values());
+        List<Row> rows = new ArrayList<Row>(reports.length);
+        for (PerformanceReport report : reports) {
+            BaselineStore.Baseline baseline = store.getBaseline(report.getTestId());
+            double[] baseValues = null;
+            if (baseline != null) {
+                baseValues = new double[METRICS.length];
+                for (int m = 0; m < METRICS.length; m++) {
+                    baseValues[m] = METRICS[m] == DataFilter.MEDIAN || METRICS[m] == DataFilter.NINENTY_PERCENT
+                            ? baseline.getMean(METRICS[m]) : Double.NaN;
+                }
+            }
+            rows.add(new Row(report.getTestId(), report.getReportName(), report.getReportFileName(), baseValues,
+                    values(report)));
+        }
+        comparison = new BuildComparison(BASELINE, target.number, rows);
+        synchronized (CACHE) {
+            CACHE.put(key, comparison);
+        }
+        return comparison;
+    }
+
+    /**
+     * Drops the cached comparisons of a project, after one of its builds was deleted.
+     */
+    public static void invalidate(AbstractProject<?, ?> project) {
+        String prefix = project.getRootDir().getPath() + '#';
+        synchronized (CACHE) {
+            for (Iterator<String> it = CACHE.keySet().iterator(); it.hasNext(); ) {
+                if (it.next().startsWith(prefix)) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    private static SlingPerformanceReportMap getReportMap(AbstractBuild<?, ?> build) {
+        PerformanceBuildAction action = build.getAction(PerformanceBuildAction.class);
+        return action == null ? null : action.getPerformanceReportMap();
+    }
+
+    /**
+     * Merges the reports of both sides by test id. Tests only one side recorded get a row without values on the
+     * other side.
+     */
+    static BuildComparison compare(int baseNumber, Iterable<PerformanceReport> base, int targetNumber,
+                                   Iterable<PerformanceReport> target) {
+        PerformanceReport[] baseReports = sortByTestId(base);
+        PerformanceReport[] targetReports = sortByTestId(target);
+        List<Row> rows = new ArrayList<Row>(Math.max(baseReports.length, targetReports.length));
+        int i = 0;
+        int j = 0;
+        while (i < baseReports.length || j < targetReports.length) {
+            int baseId = i < baseReports.length ? baseReports[i].getTestId() : Integer.MAX_VALUE;
+            int targetId = j < targetReports.length ? targetReports[j].getTestId() : Integer.MAX_VALUE;
+            if (baseId == targetId) {
+                PerformanceReport report = targetReports[j];
+                rows.add(new Row(targetId, report.getReportName(), report.getReportFileName(),
+                        values(baseReports[i]), values(report)));
+                i++;
+                j++;
+            } else if (baseId < targetId) {
+                PerformanceReport report = baseReports[i++];
+                rows.add(new Row(baseId, report.getReportName(), report.getReportFileName(), values(report), null));
+            } else {
+                PerformanceReport report = targetReports[j++];
+                rows.add(new Row(targetId, report.getReportName(), report.getReportFileName(), null,
+                        values(report)));
+            }
+        }
+        return new BuildComparison(baseNumber, targetNumber, rows);
+    }
+
+    private static PerformanceReport[] sortByTestId(Iterable<PerformanceReport> reports) {
+        List<PerformanceReport> list = new ArrayList<PerformanceReport>();
+        for (PerformanceReport report : reports) {
+            list.add(report);
+        }
+        PerformanceReport[] sorted = list.toArray(new PerformanceReport[list.size()]);
+        Arrays.sort(sorted, new Comparator<PerformanceReport>() {
+            public int compare(PerformanceReport r1, PerformanceReport r2) {
+                return r1.getTestId() < r2.getTestId() ? -1 : (r1.getTestId() == r2.getTestId() ? 0 : 1);
+            }
+        });
+        return sorted;
+    }
+
+    private static double[] values(PerformanceReport report) {
+        return new double[] { report.getMin(), report.get10Percentile(), report.getMedian(),
+                report.get90Percentile(), report.getMax() };
+    }
+
+    public String getBaseName() {
+        return baseNumber == BASELINE ? "baseline" : "#" + baseNumber;
+    }
+
+    public String getTargetName() {
+        return "#" + targetNumber;
+    }
+
+    /**
+     * @return the <code>build</code> and <code>with</code> parameters of {@link #get(AbstractProject, String, String)}
+     *         giving this comparison
+     */
+    public String getParameters() {
+        return "build=" + targetNumber + "&with=" + (baseNumber == BASELINE ? "baseline" : baseNumber);
+    }
+
+    /**
+     * @return the rows ordered by test id
+     */
+    public List<Row> getRows() {
+        return rows;
+    }
+
+    /**
+     * @param relative order by the change in percent instead of in milliseconds
+     * @return the rows ordered by the largest change of the given metric first, in either direction. Rows without a
+     *         change, like tests only one side recorded, come last.
+     */
+    public List<Row> getRows(final DataFilter metric, final boolean relative) {
+        final int column = column(metric);
+        List<Row> sorted = new ArrayList<Row>(rows);
+        Collections.sort(sorted, new Comparator<Row>() {
+            public int compare(Row r1, Row r2) {
+                double d1 = Math.abs(relative ? r1.getRelativeDelta(column) : r1.getDelta(column));
+                double d2 = Math.abs(relative ? r2.getRelativeDelta(column) : r2.getDelta(column));
+                if (Double.isNaN(d1) || Double.isNaN(d2)) {
+                    return Double.isNaN(d1) ? (Double.isNaN(d2) ? 0 : 1) : -1;
+                }
+                return Double.compare(d2, d1);
+            }
+        });
+        return sorted;
+    }
+
+    static int column(DataFilter metric) {
+        for (int m = 0; m < METRICS.length; m++) {
+            if (METRICS[m] == metric) {
+                return m;
+            }
+        }
+        throw new IllegalArgumentException("Unknown metric " + metric);
+    }
+
+    /**
+     * The values of one test on both sides.
+     */
+    public static final class Row {
+
+        private final int testId;
+        private final String name;
+        private final String fileName;
+        private final double[] base;
+        private final double[] target;
+
+        Row(int testId, String name, String fileName, double[] base, double[] target) {
+            this.testId = testId;
+            this.name = name;
+            this.fileName = fileName;
+            this.base = base;
+            this.target = target;
+        }
+
+        public int getTestId() {
+            return testId;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        public boolean isAdded() {
+            return base == null;
+        }
+
+        public boolean isRemoved() {
+            return target == null;
+        }
+
+        /**
+         * @return the value on the base side, or NaN if it has none
+         */
+        public double getBase(DataFilter metric) {
+            return base == null ? Double.NaN : base[column(metric)];
+        }
+
+        /**
+         * @return the value on the target side, or NaN if it has none
+         */
+        public double getTarget(DataFilter metric) {
+            return target == null ? Double.NaN : target[column(metric)];
+        }
+
+        /**
+         * @return the change in milliseconds, or NaN if either side has no value
+         */
+        public double getDelta(DataFilter metric) {
+            return getDelta(column(metric));
+        }
+
+        /**
+         * @return the change in percent of the base value, or NaN if either side has no value or the base is 0
+         */
+        public double getRelativeDelta(DataFilter metric) {
+            return getRelativeDelta(column(metric));
+        }
+
+        double getDelta(int column) {
+            if (base == null || target == null) {
+                return Double.NaN;
+            }
+            return target[column] - base[column];
+        }
+
+        double getRelativeDelta(int column) {
+            double delta = getDelta(column);
+            return base == null || base[column] == 0 ? Double.NaN : delta * 100 / base[column];
+        }
+    }
+}
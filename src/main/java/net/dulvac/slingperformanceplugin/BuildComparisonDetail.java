@@ -0,0 +1,91 @@
+package net.dulvac.slingperformanceplugin;
+
+import hudson.model.AbstractProject;
+import hudson.model.ModelObject;
+import org.kohsuke.stapler.StaplerRequest;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Page comparing the per-test results of two builds, or of a build and the baseline.
+ *
+ * <p> It takes the parameters <code>build</code> and <code>with</code> of {@link BuildComparison#get(AbstractProject,
+ * String, String)}, <code>metric</code>, the {@link DataFilter} to sort by, and <code>order</code>,
+ * <code>absolute</code> (default) or <code>relative</code>. </p>
+ */
+public class BuildComparisonDetail implements ModelObject {
+
+    private final AbstractProject<?, ?> project;
+    private BuildComparison comparison;
+    private String error;
+    private DataFilter metric = DataFilter.MEDIAN;
+    private final boolean relative;
+
+    public BuildComparisonDetail(AbstractProject<?, ?> project, StaplerRequest request) {
+        this.project = project;
+        this.relative = "relative".equals(request.getParameter("order"));
+        try {
+            String metricName = request.getParameter("metric");
+            if (metricName != null && metricName.length() > 0) {
+                metric = DataFilter.valueOf(metricName.toUpperCase(Locale.ENGLISH));
+                BuildComparison.column(metric);
+            }
+            comparison = BuildComparison.get(project, request.getParameter("build"), request.getParameter("with"));
+        } catch (IllegalArgumentException e) {
+            error = e.getMessage();
+        }
+    }
+
+    public String getDisplayName() {
+        return Messages.BuildComparisonDetail_DisplayName();
+    }
+
+    public AbstractProject<?, ?> getProject() {
+        return project;
+    }
+
+    /**
+     * @return why nothing could be compared, or <code>null</code>
+     */
+    public String getError() {
+        return error;
+    }
+
+    public BuildComparison getComparison() {
+        return comparison;
+    }
+
+    public DataFilter getMetric() {
+        return metric;
+    }
+
+    public boolean isRelative() {
+        return relative;
+    }
+
+    public List<DataFilter> getMetrics() {
+        return Arrays.asList(BuildComparison.METRICS);
+    }
+
+    public List<BuildComparison.Row> getRows() {
+        if (comparison == null) {
+            return Collections.emptyList();
+        }
+        return comparison.getRows(metric, relative);
+    }
+
+    public String formatValue(double value) {
+        return Double.isNaN(value) ? "" : String.valueOf(Math.round(value));
+    }
+
+    public String formatDelta(double delta) {
+        return Double.isNaN(delta) ? "" : String.format(Locale.ENGLISH, "%+d", Math.round(delta));
+    }
+
+    public String formatPercent(double percent) {
+        return Double.isNaN(percent) ? "" : String.format(Locale.ENGLISH, "%+.1f%%", percent);
+    }
+}
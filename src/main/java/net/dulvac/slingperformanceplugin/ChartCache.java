@@ -0,0 +1,244 @@
+package net.dulvac.slingperformanceplugin;
+
+import hudson.model.AbstractProject;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Controller-wide cache of rendered trend charts.
+ *
+ * <p> Charts are cached by project and by whatever else determines the picture, like the report, the data filters,
+ * the graph configuration and the size. Every project has a generation, the time its performance data last changed,
+ * which is part of every key; recording or deleting a build starts a new generation, so charts of the previous one
+ * are no longer found and age out of the cache. </p>
+ *
+ * <p> Charts are served with a strong ETag and a Last-Modified header, so browsers that poll the same chart only
+ * download it again after it changed. The cache holds at most 16 MB of images by default, which can be changed with
+ * the <code>net.dulvac.slingperformanceplugin.ChartCache.maxBytes</code> system property. </p>
+ */
+public final class ChartCache {
+
+    private static final ChartCache INSTANCE =
+            new ChartCache(Long.getLong(ChartCache.class.getName() + ".maxBytes", 16L * 1024 * 1024));
+
+    private final long maxBytes;
+
+    private final LinkedHashMap<String, Chart> charts = new LinkedHashMap<String, Chart>(16, 0.75f, true);
+    private long size;
+    private long hits;
+    private long misses;
+
+    /**
+     * Generation of each project, keyed by project directory.
+     */
+    private final Map<String, Long> generations = new HashMap<String, Long>();
+
+    ChartCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public static ChartCache get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Creates the cache key of a chart of the project's current generation.
+     *
+     * @param chart everything besides the project that determines the rendered chart
+     */
+    public Key getKey(AbstractProject<?, ?> project, String chart) {
+        return getKey(project.getRootDir().getPath(), chart);
+    }
+
+    synchronized Key getKey(String projectKey, String chart) {
+        Long generation = generations.get(projectKey);
+        if (generation == null) {
+            generation = System.currentTimeMillis();
+            generations.put(projectKey, generation);
+        }
+        return new Key(projectKey + '@' + generation + '|' + chart, generation);
+    }
+
+    /**
+     * @return the cached chart, or <code>null</code> if it has to be rendered
+     */
+    public Chart get(Key key) {
+        Chart chart;
+        synchronized (this) {
+            chart = charts.get(key.value);
+            if (chart == null) {
+                misses++;
+            } else {
+                hits++;
+            }
+        }
+        PluginMetrics.get().count(chart == null ? PluginMetrics.CHART_CACHE_MISSES : PluginMetrics.CHART_CACHE_HITS, 1);
+        return chart;
+    }
+
+    /**
+     * Caches a rendered chart.
+     *
+     * @return the cached chart
+     */
+    public Chart put(Key key, byte[] png) {
+        // hash outside of the lock
+        Chart chart = new Chart(png, createETag(png), key.generation);
+        synchronized (this) {
+            Chart replaced = charts.remove(key.value);
+            if (replaced != null) {
+                size -= replaced.png.length;
+            }
+            if (png.length > maxBytes) {
+                return chart;
+            }
+            Iterator<Chart> eldest = charts.values().iterator();
+            while (size + png.length > maxBytes && eldest.hasNext()) {
+                size -= eldest.next().png.length;
+                eldest.remove();
+            }
+            charts.put(key.value, chart);
+            size += png.length;
+        }
+        return chart;
+    }
+
+    /**
+     * Starts a new generation for a project whose performance data changed. The charts of a matrix project are built
+     * from its configurations, so their changes start a new generation of the matrix project too.
+     */
+    public synchronized void invalidate(AbstractProject<?, ?> project) {
+        startGeneration(project.getRootDir().getPath());
+        if (project.getRootProject() != project) {
+            startGeneration(project.getRootProject().getRootDir().getPath());
+        }
+    }
+
+    synchronized void startGeneration(String projectKey) {
+        Long previous = generations.get(projectKey);
+        long generation = System.currentTimeMillis();
+        if (previous != null && generation <= previous) {
+            generation = previous + 1;
+        }
+        generations.put(projectKey, generation);
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @return the size of the cached charts, in bytes
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    public synchronized int getCount() {
+        return charts.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Sends a chart, or only tells the browser that its copy is still current.
+     */
+    public static void send(StaplerRequest request, StaplerResponse response, Chart chart) throws IOException {
+        response.setHeader("ETag", chart.etag);
+        // browsers may keep the chart, but have to check whether it is still current
+        response.setHeader("Cache-Control", "private, no-cache");
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            response.setDateHeader("Last-Modified", chart.lastModified);
+            if (matches(ifNoneMatch, chart.etag)) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+        } else if (request.checkIfModified(chart.lastModified, response)) {
+            return;
+        }
+        response.setContentType("image/png");
+        response.setContentLength(chart.png.length);
+        OutputStream out = response.getOutputStream();
+        out.write(chart.png);
+        out.close();
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.equals("*") || candidate.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String createETag(byte[] png) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(png);
+            StringBuilder etag = new StringBuilder(2 + digest.length * 2).append('"');
+            for (byte b : digest) {
+                etag.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return etag.append('"').toString();
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform has MD5
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Key of a chart of one generation of a project.
+     */
+    public static final class Key {
+
+        private final String value;
+        private final long generation;
+
+        private Key(String value, long generation) {
+            this.value = value;
+            this.generation = generation;
+        }
+    }
+
+    /**
+     * A rendered chart.
+     */
+    public static final class Chart {
+
+        private final byte[] png;
+        private final String etag;
+        private final long lastModified;
+
+        private Chart(byte[] png, String etag, long lastModified) {
+            this.png = png;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+
+        public String getETag() {
+            return etag;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+    }
+}
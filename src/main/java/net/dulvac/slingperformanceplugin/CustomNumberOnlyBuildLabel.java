@@ -3,7 +3,11 @@ package net.dulvac.slingperformanceplugin;
 import hudson.model.AbstractBuild;
 
 public final class CustomNumberOnlyBuildLabel implements Comparable<CustomNumberOnlyBuildLabel> {
+    /**
+     * The labelled build, <code>null</code> when the label was created from a {@link TrendIndex} entry.
+     */
     public final AbstractBuild build;
+    private final int number;
     private String customSuffix = "";
 
     public String getCustomSuffix() {
@@ -16,10 +20,20 @@ public final class CustomNumberOnlyBuildLabel implements Comparable<CustomNumber
 
     public CustomNumberOnlyBuildLabel(AbstractBuild build) {
         this.build = build;
+        this.number = build.number;
+    }
+
+    public CustomNumberOnlyBuildLabel(int number) {
+        this.build = null;
+        this.number = number;
+    }
+
+    public int getNumber() {
+        return number;
     }
 
     public int compareTo(CustomNumberOnlyBuildLabel that) {
-        int buildDiff = this.build.number - that.build.number;
+        int buildDiff = this.number - that.number;
         if (buildDiff == 0)
             return this.getCustomSuffix().compareTo(that.getCustomSuffix());
         return buildDiff;
@@ -29,16 +43,16 @@ public final class CustomNumberOnlyBuildLabel implements Comparable<CustomNumber
     public boolean equals(Object o) {
         if(!(o instanceof CustomNumberOnlyBuildLabel))    return false;
         CustomNumberOnlyBuildLabel that = (CustomNumberOnlyBuildLabel) o;
-        return build.number == that.build.number && this.getCustomSuffix() == that.getCustomSuffix();
+        return number == that.number && this.getCustomSuffix() == that.getCustomSuffix();
     }
 
     @Override
     public int hashCode() {
-        return build.number;
+        return number;
     }
 
     @Override
     public String toString() {
-        return Integer.toString(build.number) + this.getCustomSuffix();
+        return Integer.toString(number) + this.getCustomSuffix();
     }
 }
@@ -0,0 +1,114 @@
+package net.dulvac.slingperformanceplugin;
+
+/**
+ * Picks the points of a series that keep its visual shape when it has to be drawn with fewer points.
+ *
+ * <p> Both methods return the indexes of the points to keep, in ascending order, and always keep the first and the
+ * last point. A series with no more points than asked for is returned whole. </p>
+ */
+final class Downsampling {
+
+    private Downsampling() {
+    }
+
+    /**
+     * Largest-Triangle-Three-Buckets: divides the points between the first and the last into equal buckets, and keeps
+     * the point of each bucket that forms the largest triangle with the point kept from the previous bucket and the
+     * average of the next bucket.
+     */
+    static int[] lttb(double[] x, double[] y, int points) {
+        int size = x.length;
+        if (points >= size || points < 3) {
+            return all(size);
+        }
+        int[] result = new int[points];
+        int count = 0;
+        // the buckets between the first and the last point
+        double bucketSize = (double) (size - 2) / (points - 2);
+        int previous = 0;
+        result[count++] = previous;
+        for (int bucket = 0; bucket < points - 2; bucket++) {
+            int start = (int) (bucket * bucketSize) + 1;
+            int end = (int) ((bucket + 1) * bucketSize) + 1;
+
+            // average of the next bucket, which is just the last point for the last bucket
+            int nextStart = end;
+            int nextEnd = Math.min((int) ((bucket + 2) * bucketSize) + 1, size);
+            double averageX = 0;
+            double averageY = 0;
+            for (int i = nextStart; i < nextEnd; i++) {
+                averageX += x[i];
+                averageY += y[i];
+            }
+            averageX /= nextEnd - nextStart;
+            averageY /= nextEnd - nextStart;
+
+            double largestArea = -1;
+            int selected = start;
+            for (int i = start; i < end; i++) {
+                // twice the area of the triangle, which is fine for comparing
+                double area = Math.abs((x[previous] - averageX) * (y[i] - y[previous])
+                        - (x[previous] - x[i]) * (averageY - y[previous]));
+                if (area > largestArea) {
+                    largestArea = area;
+                    selected = i;
+                }
+            }
+            result[count++] = selected;
+            previous = selected;
+        }
+        result[count] = size - 1;
+        return result;
+    }
+
+    /**
+     * Divides the points between the first and the last into buckets, and keeps the lowest and the highest point of
+     * each bucket, so no spike gets lost.
+     */
+    static int[] minMax(double[] y, int points) {
+        int size = y.length;
+        if (points >= size || points < 4) {
+            return all(size);
+        }
+        int buckets = (points - 2) / 2;
+        int[] result = new int[2 + buckets * 2];
+        int count = 0;
+        result[count++] = 0;
+        double bucketSize = (double) (size - 2) / buckets;
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            int start = (int) (bucket * bucketSize) + 1;
+            int end = (int) ((bucket + 1) * bucketSize) + 1;
+            int min = start;
+            int max = start;
+            for (int i = start + 1; i < end; i++) {
+                if (y[i] < y[min]) {
+                    min = i;
+                }
+                if (y[i] > y[max]) {
+                    max = i;
+                }
+            }
+            if (min == max) {
+                result[count++] = min;
+            } else {
+                result[count++] = Math.min(min, max);
+                result[count++] = Math.max(min, max);
+            }
+        }
+        result[count++] = size - 1;
+        if (count == result.length) {
+            return result;
+        }
+        int[] trimmed = new int[count];
+        System.arraycopy(result, 0, trimmed, 0, count);
+        return trimmed;
+    }
+
+    private static int[] all(int size) {
+        int[] result = new int[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = i;
+        }
+        return result;
+    }
+}
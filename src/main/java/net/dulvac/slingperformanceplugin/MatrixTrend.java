@@ -0,0 +1,244 @@
+package net.dulvac.slingperformanceplugin;
+
+import hudson.matrix.MatrixConfiguration;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Trend data of the configurations of a matrix project, read from the {@link TrendIndex} and the
+ * {@link ReportCatalog} of every configuration.
+ *
+ * <p> The data of the configurations is read concurrently, one configuration per task, on an executor shared by all
+ * requests, so configurations whose index is not loaded yet do not wait for each other. Results are returned in the
+ * order of the configurations. The number of threads defaults to the number of processors, at most 4, and can be set
+ * with the <code>net.dulvac.slingperformanceplugin.MatrixTrend.threads</code> system property. </p>
+ */
+final class MatrixTrend {
+
+    static final int THREADS = Integer.getInteger(MatrixTrend.class.getName() + ".threads",
+            Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    private static final ThreadPoolExecutor EXECUTOR = createExecutor();
+
+    private MatrixTrend() {
+    }
+
+    private static ThreadPoolExecutor createExecutor() {
+        int threads = Math.max(1, THREADS);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new NamingThreadFactory(new DaemonThreadFactory(), "Performance matrix trend"));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * @return the indexed builds of every configuration and the values of the given test, which are <code>null</code>
+     *         for configurations without values for it
+     */
+    static List<ConfigurationSeries> getSeries(Collection<MatrixConfiguration> configurations,
+                                               final String reportName) throws IOException {
+        return map(configurations, new Task<ConfigurationSeries>() {
+            public ConfigurationSeries call(MatrixConfiguration configuration) {
+                TrendIndex index = TrendIndex.get(configuration);
+                TrendIndex.Series series = index.getSeries(TestDictionary.get(configuration).getId(reportName));
+                return new ConfigurationSeries(configuration, index.getBuilds(), series);
+            }
+        });
+    }
+
+    /**
+     * @return the names of the report files of all configurations, in configuration order
+     */
+    static Set<String> getReportFileNames(Collection<MatrixConfiguration> configurations) throws IOException {
+        Set<String> names = new LinkedHashSet<String>();
+        for (List<String> configurationNames : map(configurations, new Task<List<String>>() {
+            public List<String> call(MatrixConfiguration configuration) {
+                return ReportCatalog.get(configuration).getReportFileNames();
+            }
+        })) {
+            names.addAll(configurationNames);
+        }
+        return names;
+    }
+
+    /**
+     * @return the names of the reports of a report file in all configurations, in configuration order
+     */
+    static Set<String> getReportNames(Collection<MatrixConfiguration> configurations, final String reportFileName)
+            throws IOException {
+        Set<String> names = new LinkedHashSet<String>();
+        for (List<String> configurationNames : map(configurations, new Task<List<String>>() {
+            public List<String> call(MatrixConfiguration configuration) {
+                return ReportCatalog.get(configuration).getReportNames(reportFileName);
+            }
+        })) {
+            names.addAll(configurationNames);
+        }
+        return names;
+    }
+
+    /**
+     * Takes the value of a metric at one build across the values of a matrix axis. The value of an axis value is the
+     * median of the values of all configurations with that axis value, whatever the values of the other axes are.
+     *
+     * @param axisValues the values of the axis, in the order they are returned in; values only found in the
+     *                   configurations follow them
+     * @return the values keyed by axis value, without axis values that have no value at that build
+     */
+    static Map<String, Long> getValuesByAxis(List<ConfigurationSeries> series, String axis, List<String> axisValues,
+                                             int buildNumber, DataFilter metric) {
+        Map<String, List<Long>> valuesByAxis = new LinkedHashMap<String, List<Long>>();
+        for (String axisValue : axisValues) {
+            valuesByAxis.put(axisValue, new ArrayList<Long>());
+        }
+        for (ConfigurationSeries configurationSeries : series) {
+            String axisValue = configurationSeries.getConfiguration().getCombination().get(axis);
+            int row = configurationSeries.getSeries() == null ? -1
+                    : configurationSeries.getSeries().indexOf(buildNumber);
+            if (axisValue == null || row < 0) {
+                continue;
+            }
+            List<Long> values = valuesByAxis.get(axisValue);
+            if (values == null) {
+                values = new ArrayList<Long>();
+                valuesByAxis.put(axisValue, values);
+            }
+            values.add(configurationSeries.getSeries().getValue(metric, row));
+        }
+        Map<String, Long> result = new LinkedHashMap<String, Long>();
+        for (Map.Entry<String, List<Long>> entry : valuesByAxis.entrySet()) {
+            if (!entry.getValue().isEmpty()) {
+                result.put(entry.getKey(), median(entry.getValue()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of the newest build indexed in any configuration, or -1 if there is none
+     */
+    static int getLastBuildNumber(List<ConfigurationSeries> series) {
+        int last = -1;
+        for (ConfigurationSeries configurationSeries : series) {
+            List<TrendIndex.BuildEntry> builds = configurationSeries.getBuilds();
+            if (!builds.isEmpty()) {
+                last = Math.max(last, builds.get(0).getNumber());
+            }
+        }
+        return last;
+    }
+
+    private static long median(List<Long> values) {
+        long[] sorted = new long[values.size()];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = values.get(i);
+        }
+        Arrays.sort(sorted);
+        int middle = sorted.length / 2;
+        return sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2;
+    }
+
+    /**
+     * Runs a task for every configuration.
+     *
+     * @return the results, in configuration order
+     */
+    private static <T> List<T> map(Collection<MatrixConfiguration> configurations, final Task<T> task)
+            throws IOException {
+        List<T> results = new ArrayList<T>(configurations.size());
+        if (configurations.size() <= 1 || THREADS <= 1) {
+            for (MatrixConfiguration configuration : configurations) {
+                results.add(task.call(configuration));
+            }
+            return results;
+        }
+
+        List<Future<T>> futures = new ArrayList<Future<T>>(configurations.size());
+        for (final MatrixConfiguration configuration : configurations) {
+            futures.add(EXECUTOR.submit(new Callable<T>() {
+                public T call() {
+                    return task.call(configuration);
+                }
+            }));
+        }
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading the performance trend of configurations");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException("Unable to read the performance trend of configurations", cause);
+        } finally {
+            for (Future<T> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return results;
+    }
+
+    private interface Task<T> {
+        T call(MatrixConfiguration configuration);
+    }
+
+    /**
+     * The indexed builds of a configuration and the values of one test.
+     */
+    static final class ConfigurationSeries {
+
+        private final MatrixConfiguration configuration;
+        private final List<TrendIndex.BuildEntry> builds;
+        private final TrendIndex.Series series;
+
+        ConfigurationSeries(MatrixConfiguration configuration, List<TrendIndex.BuildEntry> builds,
+                            TrendIndex.Series series) {
+            this.configuration = configuration;
+            this.builds = builds;
+            this.series = series;
+        }
+
+        MatrixConfiguration getConfiguration() {
+            return configuration;
+        }
+
+        /**
+         * @return the indexed builds, newest first
+         */
+        List<TrendIndex.BuildEntry> getBuilds() {
+            return builds;
+        }
+
+        /**
+         * @return the values of the test, or <code>null</code> if the configuration has none
+         */
+        TrendIndex.Series getSeries() {
+            return series;
+        }
+    }
+}
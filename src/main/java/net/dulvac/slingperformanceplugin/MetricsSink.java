@@ -0,0 +1,34 @@
+package net.dulvac.slingperformanceplugin;
+
+import hudson.ExtensionList;
+import hudson.ExtensionPoint;
+import hudson.model.Hudson;
+
+/**
+ * Receives the {@link PluginMetrics} of the plugin as they are recorded, for example to forward them to a monitoring
+ * system. Implementations are registered with {@link hudson.Extension}.
+ *
+ * <p> Sinks are called on the thread doing the measured work, like a build or a page request, so they must be
+ * thread-safe and must not block. </p>
+ */
+public abstract class MetricsSink implements ExtensionPoint {
+
+    /**
+     * @param timer one of the timer names of {@link PluginMetrics}
+     * @param nanos the measured duration
+     */
+    public abstract void recordTime(String timer, long nanos);
+
+    /**
+     * @param counter one of the counter names of {@link PluginMetrics}
+     * @param delta the amount the counter grew by
+     */
+    public abstract void recordCount(String counter, long delta);
+
+    /**
+     * All registered implementations.
+     */
+    public static ExtensionList<MetricsSink> all() {
+        return Hudson.getInstance().getExtensionList(MetricsSink.class);
+    }
+}
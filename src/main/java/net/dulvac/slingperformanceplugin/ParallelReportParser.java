@@ -0,0 +1,125 @@
+package net.dulvac.slingperformanceplugin;
+
+import hudson.model.AbstractBuild;
+import hudson.model.TaskListener;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import net.dulvac.slingperformanceplugin.parsers.GenericReportParser;
+import net.dulvac.slingperformanceplugin.reports.PerformanceReport;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses the report files of a parser concurrently, one file per task, on an executor shared by all builds.
+ *
+ * <p> The files are parsed in the order of their report file names, whatever order they were listed in, so merging
+ * the results gives the same report map when the reports are published and when they are parsed again from the
+ * build. The results are returned in that order, as if the files were parsed one after the other. The number of
+ * threads defaults to the number of processors, at most 4, and can be set with the
+ * <code>net.dulvac.slingperformanceplugin.ParallelReportParser.threads</code> system property. </p>
+ */
+final class ParallelReportParser {
+
+    static final int THREADS = Integer.getInteger(ParallelReportParser.class.getName() + ".threads",
+            Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    private static final ThreadPoolExecutor EXECUTOR = createExecutor();
+
+    private ParallelReportParser() {
+    }
+
+    private static ThreadPoolExecutor createExecutor() {
+        int threads = Math.max(1, THREADS);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new NamingThreadFactory(new DaemonThreadFactory(), "Performance report parser"));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Orders report files by report file name, and files of the same name by path.
+     */
+    static final Comparator<File> BY_REPORT_FILE_NAME = new Comparator<File>() {
+        public int compare(File a, File b) {
+            int result = GenericReportParser.getReportFileName(a).compareTo(GenericReportParser.getReportFileName(b));
+            return result != 0 ? result : a.compareTo(b);
+        }
+    };
+
+    /**
+     * Parses the files with the given parser.
+     *
+     * @return the reports of all files, in the order of the files sorted by {@link #BY_REPORT_FILE_NAME}
+     */
+    static List<PerformanceReport> parse(final GenericReportParser parser, final AbstractBuild<?, ?> build,
+                                         List<File> files, final TaskListener listener) throws IOException {
+        long start = System.nanoTime();
+        files = new ArrayList<File>(files);
+        Collections.sort(files, BY_REPORT_FILE_NAME);
+        try {
+            return parseFiles(parser, build, files, listener);
+        } finally {
+            PluginMetrics.get().time(PluginMetrics.PARSE, start);
+        }
+    }
+
+    private static List<PerformanceReport> parseFiles(final GenericReportParser parser,
+                                                      final AbstractBuild<?, ?> build, List<File> files,
+                                                      final TaskListener listener) throws IOException {
+        List<PerformanceReport> reports = new ArrayList<PerformanceReport>();
+        if (files.size() <= 1 || THREADS <= 1) {
+            reports.addAll(parser.parse(build, files, listener));
+            return reports;
+        }
+
+        List<Future<Collection<PerformanceReport>>> results =
+                new ArrayList<Future<Collection<PerformanceReport>>>(files.size());
+        for (final File file : files) {
+            results.add(EXECUTOR.submit(new Callable<Collection<PerformanceReport>>() {
+                public Collection<PerformanceReport> call() throws IOException {
+                    return parser.parse(build, Collections.singletonList(file), listener);
+                }
+            }));
+        }
+        try {
+            for (Future<Collection<PerformanceReport>> result : results) {
+                reports.addAll(result.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while parsing performance reports");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException("Unable to parse performance reports", cause);
+        } finally {
+            // nothing waits for the remaining files any more
+            for (Future<Collection<PerformanceReport>> result : results) {
+                result.cancel(true);
+            }
+        }
+        return reports;
+    }
+}
@@ -4,7 +4,6 @@ import org.kohsuke.stapler.StaplerProxy;
 
 import java.io.IOException;
 import java.io.PrintStream;
-import java.lang.ref.WeakReference;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -35,8 +34,6 @@ public class PerformanceBuildAction implements Action, StaplerProxy {
 
     private transient final PrintStream hudsonConsoleWriter;
 
-    private transient WeakReference<SlingPerformanceReportMap> performanceReportMap;
-
     private static final Logger logger = Logger.getLogger(PerformanceBuildAction.class.getName());
 
     public PerformanceBuildAction(AbstractBuild<?, ?> pBuild, PrintStream logger, List<GenericReportParser> parsers) {
@@ -67,7 +64,9 @@ public class PerformanceBuildAction implements Action, StaplerProxy {
     }
 
     public SlingPerformanceReportMap getTarget() {
-        return getPerformanceReportMap();
+        SlingPerformanceReportMap reportMap = ReportMapCache.get().get(build);
+        // pages of a single report do not need to load every report of the build
+        return reportMap != null ? reportMap : SlingPerformanceReportMap.createLazy(this);
     }
 
     public AbstractBuild<?, ?> getBuild() {
@@ -79,25 +78,27 @@ public class PerformanceBuildAction implements Action, StaplerProxy {
     }
 
     public SlingPerformanceReportMap getPerformanceReportMap() {
-        SlingPerformanceReportMap reportMap = null;
-        WeakReference<SlingPerformanceReportMap> wr = this.performanceReportMap;
-        if (wr != null) {
-            reportMap = wr.get();
+        ReportMapCache cache = ReportMapCache.get();
+        SlingPerformanceReportMap reportMap = cache.get(build);
+        if (reportMap != null) { return reportMap; }
+
+        // concurrent requests for the same build wait for a single load
+        synchronized (this) {
+            // the miss was counted above
+            reportMap = cache.peek(build);
             if (reportMap != null) { return reportMap; }
+            try {
+                reportMap = SlingPerformanceReportMap.load(this, new StreamTaskListener(System.err), Id);
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Error creating new PerformanceReportMap()", e);
+                return null;
+            }
+            cache.put(build, reportMap);
         }
-
-        try {
-            reportMap = new SlingPerformanceReportMap(this, new StreamTaskListener(System.err), Id);
-        } catch (IOException e) {
-            logger.log(Level.SEVERE, "Error creating new PerformanceReportMap()", e);
-        }
-        this.performanceReportMap = new WeakReference<SlingPerformanceReportMap>(
-                reportMap);
         return reportMap;
     }
 
-    public void setPerformanceReportMap(
-            WeakReference<SlingPerformanceReportMap> performanceReportMap) {
-        this.performanceReportMap = performanceReportMap;
+    public void setPerformanceReportMap(SlingPerformanceReportMap performanceReportMap) {
+        ReportMapCache.get().put(build, performanceReportMap);
     }
 }
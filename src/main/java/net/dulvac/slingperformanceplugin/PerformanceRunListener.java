@@ -0,0 +1,50 @@
+package net.dulvac.slingperformanceplugin;
+
+import hudson.Extension;
+import hudson.model.AbstractBuild;
+import hudson.model.listeners.RunListener;
+
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the per-project performance data in sync when builds are deleted, manually or by log rotation.
+ */
+@Extension
+public class PerformanceRunListener extends RunListener<AbstractBuild> {
+
+    private static final Logger LOGGER = Logger.getLogger(PerformanceRunListener.class.getName());
+
+    public PerformanceRunListener() {
+        super(AbstractBuild.class);
+    }
+
+    @Override
+    public void onDeleted(AbstractBuild build) {
+        PerformanceBuildAction action = build.getAction(PerformanceBuildAction.class);
+        if (action == null) {
+            return;
+        }
+        TrendIndex trendIndex = TrendIndex.getIfExists(build.getProject());
+        ReportCatalog catalog = ReportCatalog.getIfExists(build.getProject());
+        if (catalog != null && trendIndex != null) {
+            // before the build leaves the trend index, which tells which reports it recorded
+            try {
+                catalog.remove(build.number, trendIndex);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Unable to remove " + build + " from the performance report catalog", e);
+            }
+        }
+        if (trendIndex != null) {
+            try {
+                trendIndex.remove(build.number);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Unable to remove " + build + " from the performance trend index", e);
+            }
+        }
+        ReportMapCache.get().remove(build);
+        ChartCache.get().invalidate(build.getProject());
+        BuildComparison.invalidate(build.getProject());
+    }
+}
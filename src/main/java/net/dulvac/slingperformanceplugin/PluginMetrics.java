@@ -0,0 +1,193 @@
+package net.dulvac.slingperformanceplugin;
+
+import hudson.model.Hudson;
+import net.dulvac.slingperformanceplugin.stats.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Timers and counters of the plugin's own work, like copying and parsing reports, loading report maps and rendering
+ * charts, shown on the {@link PluginStatusLink} page.
+ *
+ * <p> Timers keep a {@link LatencyHistogram} of their durations in microseconds. Every duration and count is also
+ * passed on to the registered {@link MetricsSink}s. Metrics are kept per JVM: reports parsed on an agent are counted
+ * by the agent, and only reach the sinks of the controller through the publish and copy timers. </p>
+ */
+public final class PluginMetrics {
+
+    public static final String PUBLISH = "publish";
+    public static final String COPY_REPORTS = "copyReports";
+    public static final String PARSE = "parse";
+    public static final String LOAD_REPORT_MAP = "loadReportMap";
+    public static final String RENDER_CHART = "renderChart";
+
+    public static final String BYTES_COPIED = "bytesCopied";
+    public static final String ROWS_PARSED = "rowsParsed";
+    public static final String PARSE_FAILURES = "parseFailures";
+    public static final String REPORT_MAPS_PARSED = "reportMapsParsed";
+    public static final String REPORT_MAP_CACHE_HITS = "reportMapCache.hits";
+    public static final String REPORT_MAP_CACHE_MISSES = "reportMapCache.misses";
+    public static final String CHART_CACHE_HITS = "chartCache.hits";
+    public static final String CHART_CACHE_MISSES = "chartCache.misses";
+
+    private static final Logger LOGGER = Logger.getLogger(PluginMetrics.class.getName());
+
+    private static final PluginMetrics INSTANCE = new PluginMetrics();
+
+    private final ConcurrentMap<String, Timer> timers = new ConcurrentSkipListMap<String, Timer>();
+    private final ConcurrentMap<String, AtomicLong> counters = new ConcurrentSkipListMap<String, AtomicLong>();
+
+    PluginMetrics() {
+    }
+
+    public static PluginMetrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Records the time passed since <code>start</code>, as returned by {@link System#nanoTime()}.
+     */
+    public void time(String timer, long start) {
+        long nanos = System.nanoTime() - start;
+        getTimer(timer).record(nanos);
+        for (MetricsSink sink : sinks()) {
+            try {
+                sink.recordTime(timer, nanos);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Metrics sink " + sink.getClass().getName() + " failed", e);
+            }
+        }
+    }
+
+    public void count(String counter, long delta) {
+        AtomicLong value = counters.get(counter);
+        if (value == null) {
+            AtomicLong created = new AtomicLong();
+            value = counters.putIfAbsent(counter, created);
+            if (value == null) {
+                value = created;
+            }
+        }
+        value.addAndGet(delta);
+        for (MetricsSink sink : sinks()) {
+            try {
+                sink.recordCount(counter, delta);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Metrics sink " + sink.getClass().getName() + " failed", e);
+            }
+        }
+    }
+
+    /**
+     * @return the timers, sorted by name
+     */
+    public List<Timer> getTimers() {
+        return new ArrayList<Timer>(timers.values());
+    }
+
+    /**
+     * @return the counters, sorted by name
+     */
+    public List<Counter> getCounters() {
+        List<Counter> result = new ArrayList<Counter>();
+        for (String name : counters.keySet()) {
+            result.add(new Counter(name, counters.get(name).get()));
+        }
+        return result;
+    }
+
+    private Timer getTimer(String name) {
+        Timer timer = timers.get(name);
+        if (timer == null) {
+            Timer created = new Timer(name);
+            timer = timers.putIfAbsent(name, created);
+            if (timer == null) {
+                timer = created;
+            }
+        }
+        return timer;
+    }
+
+    private static List<MetricsSink> sinks() {
+        // there is no Jenkins instance on agents
+        Hudson hudson = Hudson.getInstance();
+        if (hudson == null) {
+            return new ArrayList<MetricsSink>();
+        }
+        return MetricsSink.all();
+    }
+
+    /**
+     * Durations of one stage.
+     */
+    public static final class Timer {
+
+        private final String name;
+        private final LatencyHistogram micros = new LatencyHistogram();
+        private long totalNanos;
+
+        Timer(String name) {
+            this.name = name;
+        }
+
+        synchronized void record(long nanos) {
+            micros.record(Math.max(nanos, 0) / 1000);
+            totalNanos += nanos;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public synchronized long getCount() {
+            return micros.getCount();
+        }
+
+        public synchronized double getTotalMillis() {
+            return totalNanos / 1e6;
+        }
+
+        public synchronized double getMeanMillis() {
+            return micros.getCount() == 0 ? 0 : totalNanos / 1e6 / micros.getCount();
+        }
+
+        /**
+         * @param percentile between 0 and 100
+         */
+        public synchronized double getPercentileMillis(double percentile) {
+            return micros.getCount() == 0 ? 0 : micros.getValueAtPercentile(percentile) / 1e3;
+        }
+
+        public synchronized double getMaxMillis() {
+            return micros.getCount() == 0 ? 0 : micros.getMax() / 1e3;
+        }
+    }
+
+    /**
+     * Value of a counter at the time it was read.
+     */
+    public static final class Counter {
+
+        private final String name;
+        private final long value;
+
+        Counter(String name, long value) {
+            this.name = name;
+            this.value = value;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getValue() {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package net.dulvac.slingperformanceplugin;
+
+import hudson.Extension;
+import hudson.model.ManagementLink;
+
+import java.util.Locale;
+
+/**
+ * Status page of the plugin under "Manage Jenkins", showing its {@link PluginMetrics} and the state of its caches.
+ * It tells whether a slow project page spends its time loading report maps or rendering charts.
+ */
+@Extension
+public class PluginStatusLink extends ManagementLink {
+
+    public String getIconFileName() {
+        return "monitor.png";
+    }
+
+    public String getDisplayName() {
+        return Messages.PluginStatusLink_DisplayName();
+    }
+
+    @Override
+    public String getDescription() {
+        return Messages.PluginStatusLink_Description();
+    }
+
+    public String getUrlName() {
+        return "sling-performance";
+    }
+
+    public PluginMetrics getMetrics() {
+        return PluginMetrics.get();
+    }
+
+    public ReportMapCache getReportMapCache() {
+        return ReportMapCache.get();
+    }
+
+    public ChartCache getChartCache() {
+        return ChartCache.get();
+    }
+
+    public ReportWarmUp getWarmUp() {
+        return ReportWarmUp.get();
+    }
+
+    public String formatMillis(double millis) {
+        return String.format(Locale.ENGLISH, "%.2f", millis);
+    }
+
+    public String formatBytes(long bytes) {
+        return String.format(Locale.ENGLISH, "%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+}
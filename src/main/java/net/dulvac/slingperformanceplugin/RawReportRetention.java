@@ -0,0 +1,103 @@
+package net.dulvac.slingperformanceplugin;
+
+import hudson.Util;
+import hudson.model.AbstractBuild;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+
+/**
+ * Drops the archived raw reports of older builds once their parsed results are kept in a {@link ReportSnapshot}.
+ *
+ * <p> The raw reports of the newest builds are kept, so they can still be looked at or parsed again. Older builds
+ * without a readable snapshot, like builds recorded before snapshots existed, get one written from their report map
+ * first, which parses their raw reports if needed. Builds are looked at oldest first, and the {@link ReportCatalog}
+ * remembers the newest build up to which all builds were looked at, so every build only walks the builds recorded
+ * since. A build whose results could not be saved keeps its raw reports, and is looked at again by the next
+ * build. </p>
+ *
+ * <p> Only so many builds have their raw reports dropped per build, 10 by default, so the first build after the
+ * retention was turned on does not parse the whole history of the project. The others follow with the next builds.
+ * The number can be set with the <code>net.dulvac.slingperformanceplugin.RawReportRetention.buildsPerPublish</code>
+ * system property. </p>
+ */
+final class RawReportRetention {
+
+    static final int BUILDS_PER_PUBLISH =
+            Math.max(1, Integer.getInteger(RawReportRetention.class.getName() + ".buildsPerPublish", 10));
+
+    private RawReportRetention() {
+    }
+
+    /**
+     * Drops the raw reports of the builds before the newest <code>buildsToKeep</code> builds, counting the given one.
+     */
+    static void apply(AbstractBuild<?, ?> build, int buildsToKeep, PrintStream logger) throws IOException {
+        // the oldest build to keep
+        AbstractBuild<?, ?> kept = build;
+        for (int position = 1; position < buildsToKeep && kept != null; position++) {
+            kept = kept.getPreviousBuild();
+        }
+        if (kept == null) {
+            return;
+        }
+        ReportCatalog catalog = ReportCatalog.get(build.getProject());
+        int newestChecked = 0;
+        boolean retry = false;
+        int visited = 0;
+        int dropped = 0;
+        AbstractBuild<?, ?> first = build.getProject().getNearestBuild(catalog.getRawReportsCheckedBuild() + 1);
+        for (AbstractBuild<?, ?> older = first;
+             older != null && older.number < kept.number && visited < BUILDS_PER_PUBLISH;
+             older = older.getNextBuild()) {
+            File dir = new File(older.getRootDir(), SlingPerformanceReportMap.getPerformanceReportDirRelativePath());
+            if (dir.isDirectory() && older.getAction(PerformanceBuildAction.class) != null) {
+                visited++;
+                if (drop(older, dir, logger)) {
+                    dropped++;
+                } else {
+                    // look at it again next time
+                    retry = true;
+                }
+            }
+            if (!retry) {
+                newestChecked = older.number;
+            }
+        }
+        if (dropped > 0) {
+            logger.println("Performance: Dropped the raw reports of " + dropped + " builds, keeping the last "
+                    + buildsToKeep);
+        }
+        if (newestChecked > 0) {
+            catalog.setRawReportsCheckedBuild(newestChecked);
+        }
+    }
+
+    /**
+     * Drops the raw reports of a build, unless its results cannot be kept otherwise.
+     *
+     * @return whether the raw reports were dropped
+     */
+    private static boolean drop(AbstractBuild<?, ?> build, File dir, PrintStream logger) throws IOException {
+        File snapshot = ReportSnapshot.getSnapshotFile(build);
+        if (!ReportSnapshot.isReadable(snapshot)) {
+            PerformanceBuildAction action = build.getAction(PerformanceBuildAction.class);
+            if (action == null) {
+                return false;
+            }
+            SlingPerformanceReportMap reportMap = action.getPerformanceReportMap();
+            if (reportMap != null && !ReportSnapshot.isReadable(snapshot)) {
+                // the report map was already loaded, or it was parsed but its snapshot could not be written then
+                reportMap.saveSnapshot();
+            }
+            if (!ReportSnapshot.isReadable(snapshot)) {
+                logger.println("Performance: Keeping the raw reports of build #" + build.number
+                        + ", since its results could not be saved");
+                return false;
+            }
+        }
+        Util.deleteRecursive(dir);
+        return true;
+    }
+}
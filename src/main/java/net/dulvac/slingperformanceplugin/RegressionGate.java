@@ -0,0 +1,216 @@
+package net.dulvac.slingperformanceplugin;
+
+import hudson.model.AbstractBuild;
+import hudson.model.Result;
+import net.dulvac.slingperformanceplugin.reports.PerformanceReport;
+import net.dulvac.slingperformanceplugin.stats.MannWhitneyU;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Finds the tests of a build that got slower than in the previous successful builds.
+ *
+ * <p> The median and the 90th percentile of every test are compared with the values the same test had in the
+ * baseline builds, as recorded in the {@link TrendIndex}. A test regressed if its current value, which for
+ * multi-sample reports is that of all samples merged, exceeds the median of its baseline values by more than both the
+ * relative and the absolute threshold. When the baseline has at least {@link #MIN_SAMPLES} builds and the report at
+ * least as many samples, the increase must also be significant in a one-sided {@link MannWhitneyU} test of the
+ * samples against the baseline builds, so noisy tests do not fail the build by chance. </p>
+ *
+ * <p> The two sides of the test are not the same kind of value: the trend index keeps one value per baseline build,
+ * merged from all samples of that build, while the current build contributes one value per sample. The test
+ * therefore asks whether the samples of the current build are typically higher than whole baseline builds, with the
+ * spread between builds standing in for the noise. A sample of a build varies more than the merged value of a build,
+ * so the test errs towards not significant, which keeps the gate from failing builds on noise. Keeping the samples of
+ * the baseline builds to compare sample with sample would mean loading every baseline build. </p>
+ */
+public final class RegressionGate {
+
+    static final int MIN_SAMPLES = 3;
+
+    private static final DataFilter[] METRICS = { DataFilter.MEDIAN, DataFilter.NINENTY_PERCENT };
+
+    /**
+     * Builds without performance results or with another result are skipped, but only so many.
+     */
+    private static final int MAX_SCANNED_BUILDS_PER_BASELINE_BUILD = 10;
+
+    private final int baselineBuilds;
+    private final double relativeThreshold;
+    private final long absoluteThreshold;
+    private final double significance;
+
+    /**
+     * @param baselineBuilds    the number of previous successful builds to compare with
+     * @param relativeThreshold the smallest increase that counts, in percent of the baseline
+     * @param absoluteThreshold the smallest increase that counts, in milliseconds
+     * @param significance      the p-value below which an increase is significant
+     */
+    public RegressionGate(int baselineBuilds, double relativeThreshold, long absoluteThreshold, double significance) {
+        this.baselineBuilds = baselineBuilds;
+        this.relativeThreshold = relativeThreshold;
+        this.absoluteThreshold = absoluteThreshold;
+        this.significance = significance;
+    }
+
+    /**
+     * @return the regressions of the build, ordered by test name
+     */
+    public List<Regression> check(AbstractBuild<?, ?> build, SlingPerformanceReportMap reportMap) {
+        List<Integer> baseline = getBaselineBuilds(build);
+        if (baseline.isEmpty()) {
+            return Collections.emptyList();
+        }
+        TrendIndex trendIndex = TrendIndex.get(build.getProject());
+        List<Regression> regressions = new ArrayList<Regression>();
+        for (PerformanceReport report : reportMap.getPerformanceListOrdered()) {
+            TrendIndex.Series series = trendIndex.getSeries(report.getTestId());
+            if (series == null) {
+                continue;
+            }
+            for (DataFilter metric : METRICS) {
+                double[] baselineValues = getValues(series, baseline, metric);
+                if (baselineValues.length == 0) {
+                    continue;
+                }
+                double current = metric == DataFilter.MEDIAN ? report.getMedian() : report.get90Percentile();
+                Regression regression = compare(report.getReportName(), metric, baselineValues,
+                        getValues(report, metric), current);
+                if (regression != null) {
+                    regressions.add(regression);
+                }
+            }
+        }
+        return regressions;
+    }
+
+    /**
+     * @param baseline     the values of the baseline builds, one per build, merged from all samples of the build
+     * @param current      the values of the samples of the current build
+     * @param currentValue the value of the current build, merged from all samples
+     * @return the regression, or <code>null</code> if the current values are not significantly worse
+     */
+    Regression compare(String testName, DataFilter metric, double[] baseline, double[] current,
+                       double currentValue) {
+        if (current.length == 0) {
+            return null;
+        }
+        double baselineMedian = median(baseline);
+        double currentMedian = currentValue;
+        double increase = currentMedian - baselineMedian;
+        if (increase <= absoluteThreshold || increase <= baselineMedian * relativeThreshold / 100) {
+            return null;
+        }
+        double p = Double.NaN;
+        if (baseline.length >= MIN_SAMPLES && current.length >= MIN_SAMPLES) {
+            p = MannWhitneyU.pGreater(baseline, current);
+            if (p >= significance) {
+                return null;
+            }
+        }
+        return new Regression(testName, metric, baselineMedian, currentMedian, p);
+    }
+
+    /**
+     * @return the numbers of the last successful builds before the given one that recorded performance results
+     */
+    private List<Integer> getBaselineBuilds(AbstractBuild<?, ?> build) {
+        List<Integer> result = new ArrayList<Integer>();
+        int scanned = 0;
+        for (AbstractBuild<?, ?> b = build.getPreviousBuild();
+             b != null && result.size() < baselineBuilds
+                     && scanned < baselineBuilds * MAX_SCANNED_BUILDS_PER_BASELINE_BUILD;
+             b = b.getPreviousBuild()) {
+            scanned++;
+            if (b.getResult() == Result.SUCCESS && b.getAction(PerformanceBuildAction.class) != null) {
+                result.add(b.number);
+            }
+        }
+        return result;
+    }
+
+    private static double[] getValues(TrendIndex.Series series, List<Integer> builds, DataFilter metric) {
+        double[] values = new double[builds.size()];
+        int count = 0;
+        for (int buildNumber : builds) {
+            int row = series.indexOf(buildNumber);
+            if (row >= 0) {
+                values[count++] = series.getValue(metric, row);
+            }
+        }
+        return Arrays.copyOf(values, count);
+    }
+
+    private static double[] getValues(PerformanceReport report, DataFilter metric) {
+        List<SlingReportSample> samples = report.getReportSamples();
+        double[] values = new double[samples.size()];
+        for (int i = 0; i < values.length; i++) {
+            SlingReportSample sample = samples.get(i);
+            values[i] = metric == DataFilter.MEDIAN ? sample.getMedian() : sample.get90Percentile();
+        }
+        return values;
+    }
+
+    static double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int middle = sorted.length / 2;
+        return sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2;
+    }
+
+    /**
+     * A test that got slower.
+     */
+    public static final class Regression {
+
+        private final String testName;
+        private final DataFilter metric;
+        private final double baseline;
+        private final double current;
+        private final double pValue;
+
+        Regression(String testName, DataFilter metric, double baseline, double current, double pValue) {
+            this.testName = testName;
+            this.metric = metric;
+            this.baseline = baseline;
+            this.current = current;
+            this.pValue = pValue;
+        }
+
+        public String getTestName() {
+            return testName;
+        }
+
+        public DataFilter getMetric() {
+            return metric;
+        }
+
+        public double getBaseline() {
+            return baseline;
+        }
+
+        public double getCurrent() {
+            return current;
+        }
+
+        /**
+         * @return the p-value of the test, or NaN if there were too few values to test
+         */
+        public double getPValue() {
+            return pValue;
+        }
+
+        @Override
+        public String toString() {
+            String change = baseline > 0 ? String.format(Locale.ENGLISH, " (+%.1f%%)", (current - baseline) * 100
+                    / baseline) : "";
+            String p = Double.isNaN(pValue) ? "" : String.format(Locale.ENGLISH, ", p=%.4f", pValue);
+            return String.format(Locale.ENGLISH, "%s: %s %.0f ms -> %.0f ms%s%s", testName, metric, baseline,
+                    current, change, p);
+        }
+    }
+}
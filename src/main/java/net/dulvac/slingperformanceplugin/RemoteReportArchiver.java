@@ -0,0 +1,101 @@
+package net.dulvac.slingperformanceplugin;
+
+import hudson.FilePath;
+import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+import org.apache.commons.io.IOUtils;
+import org.apache.tools.tar.TarEntry;
+import org.apache.tools.tar.TarOutputStream;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Sends the report files of a parser from the node the workspace lives on as a single gzip compressed tar stream.
+ *
+ * <p> The files are located on that node, and written to the stream one after the other, so copying any number of
+ * reports takes a single remote call instead of several per file. Entries are named after the files only, the way
+ * reports are stored in the build. </p>
+ */
+final class RemoteReportArchiver extends MasterToSlaveFileCallable<List<String>> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String glob;
+    private final List<String> paths;
+    private final TaskListener listener;
+    private final OutputStream out;
+
+    /**
+     * @param glob the pattern of the report files, used if no paths are given
+     * @param paths the workspace relative paths of the report files, or <code>null</code>
+     * @param out the stream to write the tar to, usually the remote end of a pipe; it is closed when done
+     */
+    RemoteReportArchiver(String glob, List<String> paths, TaskListener listener, OutputStream out) {
+        this.glob = glob;
+        this.paths = paths == null ? null : new ArrayList<String>(paths);
+        this.listener = listener;
+        this.out = out;
+    }
+
+    /**
+     * @return the workspace relative paths of the sent files, or <code>null</code> if no report files were found
+     */
+    public List<String> invoke(File workspace, VirtualChannel channel) throws IOException, InterruptedException {
+        TarOutputStream tar = new TarOutputStream(new GZIPOutputStream(new BufferedOutputStream(out, 64 * 1024)));
+        try {
+            tar.setLongFileMode(TarOutputStream.LONGFILE_GNU);
+            List<File> files = locate(workspace);
+            if (files == null) {
+                return null;
+            }
+            List<String> sent = new ArrayList<String>();
+            String base = workspace.getAbsolutePath();
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    listener.getLogger().println("Performance: File '" + file.getName()
+                            + "' is a directory, not a Performance Report");
+                    continue;
+                }
+                TarEntry entry = new TarEntry(file.getName());
+                entry.setSize(file.length());
+                entry.setModTime(file.lastModified());
+                tar.putNextEntry(entry);
+                InputStream in = new FileInputStream(file);
+                try {
+                    IOUtils.copyLarge(in, tar);
+                } finally {
+                    in.close();
+                }
+                tar.closeEntry();
+                sent.add(file.getAbsolutePath().substring(base.length() + 1));
+            }
+            return sent;
+        } finally {
+            // an empty stream still has to be ended, so the reading side does not wait for it
+            tar.close();
+        }
+    }
+
+    private List<File> locate(File workspace) throws IOException, InterruptedException {
+        List<File> files = new ArrayList<File>();
+        if (paths != null) {
+            for (String path : paths) {
+                files.add(new File(workspace, path));
+            }
+            return files;
+        }
+        for (FilePath src : SlingPerformancePublisher.locatePerformanceReports(new FilePath(workspace), glob)) {
+            files.add(new File(src.getRemote()));
+        }
+        return files.isEmpty() ? null : files;
+    }
+}
@@ -0,0 +1,110 @@
+package net.dulvac.slingperformanceplugin;
+
+import hudson.FilePath;
+import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+import net.dulvac.slingperformanceplugin.parsers.GenericReportParser;
+import net.dulvac.slingperformanceplugin.reports.PerformanceReport;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Locates and parses the performance reports of a parser in the workspace, on the node the workspace lives on.
+ *
+ * <p> Only the parsed reports, in the compressed {@link ReportSnapshot} format, and the paths of the parsed files are
+ * sent back, so neither the parsing nor the transfer of the raw files burdens the controller. </p>
+ */
+final class RemoteReportParser extends MasterToSlaveFileCallable<RemoteReportParser.Result> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final GenericReportParser parser;
+    private final TaskListener listener;
+
+    RemoteReportParser(GenericReportParser parser, TaskListener listener) {
+        this.parser = parser;
+        this.listener = listener;
+    }
+
+    public Result invoke(File workspace, VirtualChannel channel) throws IOException, InterruptedException {
+        List<FilePath> files = SlingPerformancePublisher.locatePerformanceReports(new FilePath(workspace), parser.glob);
+        if (files.isEmpty()) {
+            return null;
+        }
+        List<String> paths = new ArrayList<String>();
+        List<File> reports = new ArrayList<File>();
+        String base = workspace.getAbsolutePath();
+        for (FilePath src : files) {
+            if (src.isDirectory()) {
+                listener.getLogger().println("Performance: File '" + src.getName()
+                        + "' is a directory, not a Performance Report");
+                continue;
+            }
+            File report = new File(src.getRemote());
+            reports.add(report);
+            paths.add(report.getAbsolutePath().substring(base.length() + 1));
+        }
+        if (reports.isEmpty()) {
+            return new Result(paths, null);
+        }
+
+        // there is no build on the agent; parsers only need the report files
+        Collection<PerformanceReport> parsed = ParallelReportParser.parse(parser, null, reports, listener);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(new GZIPOutputStream(bytes));
+        try {
+            ReportSnapshot.writeReports(out, parsed);
+        } finally {
+            out.close();
+        }
+        return new Result(paths, bytes.toByteArray());
+    }
+
+    /**
+     * The parsed reports of one parser and the workspace relative paths of the files they were parsed from.
+     */
+    static final class Result implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<String> paths;
+        private final byte[] reports;
+
+        Result(List<String> paths, byte[] reports) {
+            this.paths = paths;
+            this.reports = reports;
+        }
+
+        List<String> getPaths() {
+            return paths;
+        }
+
+        List<PerformanceReport> getReports() throws IOException {
+            if (reports == null) {
+                return new ArrayList<PerformanceReport>();
+            }
+            DataInputStream in = new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(reports)));
+            try {
+                List<PerformanceReport> result = ReportSnapshot.readReports(in);
+                if (result == null) {
+                    throw new IOException("Reports were parsed by another version of the plugin");
+                }
+                return result;
+            } finally {
+                in.close();
+            }
+        }
+    }
+}
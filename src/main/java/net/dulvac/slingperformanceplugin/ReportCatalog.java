@@ -0,0 +1,212 @@
+package net.dulvac.slingperformanceplugin;
+
+import hudson.XmlFile;
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import net.dulvac.slingperformanceplugin.reports.PerformanceReport;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Persisted catalog of the report files and report names recorded by the builds of a project.
+ *
+ * <p> The catalog is updated when a build records its results and when a build is deleted, so the project page does
+ * not have to list the performance reports directory of every build to know which reports exist. Each report keeps
+ * the number of builds that recorded it, and disappears from the catalog with the last of them. </p>
+ */
+public final class ReportCatalog {
+
+    public static final String CATALOG_FILE_NAME = "performance-catalog.xml";
+
+    private static final Logger LOGGER = Logger.getLogger(ReportCatalog.class.getName());
+
+    private static final ConcurrentMap<String, ReportCatalog> CATALOGS = new ConcurrentHashMap<String, ReportCatalog>();
+
+    private transient File file;
+
+    /**
+     * Number of builds recording each report, keyed by report file name and report name.
+     */
+    private final TreeMap<String, LinkedHashMap<String, Integer>> reports =
+            new TreeMap<String, LinkedHashMap<String, Integer>>();
+
+    /**
+     * Numbers of the builds included in the catalog.
+     */
+    private final TreeSet<Integer> builds = new TreeSet<Integer>();
+
+    /**
+     * Number of the newest build whose raw reports {@link RawReportRetention} already looked at; older builds are not
+     * looked at again.
+     */
+    private int rawReportsCheckedBuild;
+
+    private ReportCatalog(File file) {
+        this.file = file;
+    }
+
+    public static File getCatalogFile(AbstractProject<?, ?> project) {
+        return new File(project.getRootDir(), CATALOG_FILE_NAME);
+    }
+
+    /**
+     * Returns the catalog of a project. When the project has no catalog yet, it is created from the project's
+     * {@link TrendIndex}. While the index is still being built, the catalog of the builds indexed so far is returned,
+     * and neither kept nor written.
+     */
+    public static ReportCatalog get(AbstractProject<?, ?> project) {
+        File file = getCatalogFile(project);
+        ReportCatalog catalog = CATALOGS.get(file.getPath());
+        if (catalog != null) {
+            return catalog;
+        }
+        catalog = read(file);
+        if (catalog == null) {
+            catalog = new ReportCatalog(file);
+            if (!TrendIndex.get(project).collectReports(catalog)) {
+                catalog.file = null;
+                return catalog;
+            }
+            try {
+                catalog.save();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Unable to write performance report catalog " + file, e);
+            }
+        }
+        ReportCatalog existing = CATALOGS.putIfAbsent(file.getPath(), catalog);
+        return existing != null ? existing : catalog;
+    }
+
+    /**
+     * Returns the catalog of a project only if it has one, without creating it.
+     */
+    static ReportCatalog getIfExists(AbstractProject<?, ?> project) {
+        File file = getCatalogFile(project);
+        if (!CATALOGS.containsKey(file.getPath()) && !file.isFile()) {
+            return null;
+        }
+        return get(project);
+    }
+
+    private static ReportCatalog read(File file) {
+        XmlFile xmlFile = new XmlFile(file);
+        if (!xmlFile.exists()) {
+            return null;
+        }
+        try {
+            ReportCatalog catalog = (ReportCatalog) xmlFile.read();
+            catalog.file = file;
+            return catalog;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to read performance report catalog " + file + ", recreating it", e);
+            return null;
+        }
+    }
+
+    /**
+     * Adds the reports of a build. Builds that are already in the catalog are ignored.
+     */
+    public synchronized void record(AbstractBuild<?, ?> build, SlingPerformanceReportMap reportMap)
+            throws IOException {
+        if (!builds.add(build.number)) {
+            return;
+        }
+        for (PerformanceReport report : reportMap.getPerformanceReportMap().values()) {
+            add(report.getReportFileName(), report.getReportName(), 1);
+        }
+        save();
+    }
+
+    /**
+     * Removes the reports of a deleted build. They are taken from the {@link TrendIndex}, which must still hold the
+     * build, so the reports of the build do not have to be loaded.
+     */
+    public synchronized void remove(int buildNumber, TrendIndex trendIndex) throws IOException {
+        if (!builds.remove(buildNumber)) {
+            return;
+        }
+        trendIndex.removeReports(buildNumber, this);
+        save();
+    }
+
+    /**
+     * @return the names of the report files, sorted
+     */
+    public synchronized List<String> getReportFileNames() {
+        return new ArrayList<String>(reports.keySet());
+    }
+
+    /**
+     * @return the names of the reports recorded from the given report file
+     */
+    public synchronized List<String> getReportNames(String reportFileName) {
+        Map<String, Integer> names = reports.get(reportFileName);
+        if (names == null) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<String>(names.keySet());
+    }
+
+    synchronized int getRawReportsCheckedBuild() {
+        return rawReportsCheckedBuild;
+    }
+
+    synchronized void setRawReportsCheckedBuild(int buildNumber) throws IOException {
+        if (buildNumber > rawReportsCheckedBuild) {
+            rawReportsCheckedBuild = buildNumber;
+            save();
+        }
+    }
+
+    /**
+     * Adds a build to the catalog while it is created.
+     */
+    void addBuild(int buildNumber) {
+        builds.add(buildNumber);
+    }
+
+    /**
+     * Changes the number of builds recording a report.
+     */
+    void add(String reportFileName, String reportName, int delta) {
+        if (reportFileName == null) {
+            reportFileName = "";
+        }
+        LinkedHashMap<String, Integer> names = reports.get(reportFileName);
+        if (names == null) {
+            if (delta <= 0) {
+                return;
+            }
+            names = new LinkedHashMap<String, Integer>();
+            reports.put(reportFileName, names);
+        }
+        Integer count = names.get(reportName);
+        int newCount = (count == null ? 0 : count) + delta;
+        if (newCount > 0) {
+            names.put(reportName, newCount);
+        } else {
+            names.remove(reportName);
+            if (names.isEmpty()) {
+                reports.remove(reportFileName);
+            }
+        }
+    }
+
+    private void save() throws IOException {
+        if (file != null) {
+            new XmlFile(file).write(this);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package net.dulvac.slingperformanceplugin;
+
+import hudson.model.AbstractBuild;
+import net.dulvac.slingperformanceplugin.reports.PerformanceReport;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Controller-wide cache of loaded {@link SlingPerformanceReportMap}s, bounded by an estimate of their heap size.
+ *
+ * <p> The least recently used report maps are evicted once the estimated size of all cached maps exceeds the budget.
+ * The budget defaults to an eighth of the maximum heap, at most 64 MB, and can be set in bytes with the
+ * <code>net.dulvac.slingperformanceplugin.ReportMapCache.maxBytes</code> system property. A report map larger than
+ * the whole budget is not cached. </p>
+ *
+ * <p> The budget only counts the reports of the cached maps. Each map also keeps its build loaded, through its
+ * {@link PerformanceBuildAction}, which is not counted: its size depends on the other actions of the build, and the
+ * build is shared with the pages and the build history that show it. </p>
+ */
+public final class ReportMapCache {
+
+    private static final Logger LOGGER = Logger.getLogger(ReportMapCache.class.getName());
+
+    private static final long DEFAULT_MAX_BYTES = Math.min(64L * 1024 * 1024, Runtime.getRuntime().maxMemory() / 8);
+
+    private static final ReportMapCache INSTANCE =
+            new ReportMapCache(Long.getLong(ReportMapCache.class.getName() + ".maxBytes", DEFAULT_MAX_BYTES));
+
+    /**
+     * Estimated size of the map itself and of a map entry, in bytes.
+     */
+    private static final long MAP_OVERHEAD = 120;
+    private static final long ENTRY_OVERHEAD = 64;
+
+    private final long maxBytes;
+
+    /**
+     * Cached report maps keyed by build directory, in access order.
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+    private long size;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    ReportMapCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public static ReportMapCache get() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return the cached report map of the build, or <code>null</code> if it has to be loaded
+     */
+    public SlingPerformanceReportMap get(AbstractBuild<?, ?> build) {
+        return get(getKey(build));
+    }
+
+    SlingPerformanceReportMap get(String key) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry == null) {
+                misses++;
+            } else {
+                hits++;
+            }
+        }
+        // sinks are called outside of the lock
+        PluginMetrics.get().count(entry == null ? PluginMetrics.REPORT_MAP_CACHE_MISSES
+                : PluginMetrics.REPORT_MAP_CACHE_HITS, 1);
+        return entry == null ? null : entry.reportMap;
+    }
+
+    /**
+     * Like {@link #get(AbstractBuild)}, without counting a hit or a miss. Used to check the cache again, when a miss
+     * was counted already.
+     */
+    SlingPerformanceReportMap peek(AbstractBuild<?, ?> build) {
+        return peek(getKey(build));
+    }
+
+    synchronized SlingPerformanceReportMap peek(String key) {
+        Entry entry = entries.get(key);
+        return entry == null ? null : entry.reportMap;
+    }
+
+    /**
+     * Caches the report map of a build, replacing the one cached before.
+     */
+    public void put(AbstractBuild<?, ?> build, SlingPerformanceReportMap reportMap) {
+        put(getKey(build), reportMap);
+    }
+
+    synchronized void put(String key, SlingPerformanceReportMap reportMap) {
+        remove(key);
+        long entrySize = estimateSize(reportMap);
+        if (entrySize > maxBytes) {
+            LOGGER.log(Level.FINE, "Report map of {0} is too large to be cached: {1} bytes",
+                    new Object[]{key, entrySize});
+            return;
+        }
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (size + entrySize > maxBytes && eldest.hasNext()) {
+            size -= eldest.next().size;
+            eldest.remove();
+            evictions++;
+        }
+        entries.put(key, new Entry(reportMap, entrySize));
+        size += entrySize;
+    }
+
+    /**
+     * Drops the report map of a build, e.g. because the build was deleted.
+     */
+    public synchronized void remove(AbstractBuild<?, ?> build) {
+        remove(getKey(build));
+    }
+
+    synchronized void remove(String key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            size -= entry.size;
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @return the estimated size of the cached report maps, in bytes
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    public synchronized int getCount() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    private static String getKey(AbstractBuild<?, ?> build) {
+        return build.getRootDir().getPath();
+    }
+
+    static long estimateSize(SlingPerformanceReportMap reportMap) {
+        Map<String, PerformanceReport> reports = reportMap.getPerformanceReportMap();
+        long result = MAP_OVERHEAD;
+        for (PerformanceReport report : reports.values()) {
+            result += ENTRY_OVERHEAD + report.estimateSize();
+        }
+        return result;
+    }
+
+    private static final class Entry {
+
+        final SlingPerformanceReportMap reportMap;
+        final long size;
+
+        Entry(SlingPerformanceReportMap reportMap, long size) {
+            this.reportMap = reportMap;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package net.dulvac.slingperformanceplugin;
+
+import hudson.model.AbstractBuild;
+import net.dulvac.slingperformanceplugin.reports.PerformanceReport;
+import net.dulvac.slingperformanceplugin.stats.LatencyHistogram;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact, versioned binary form of the parsed {@link PerformanceReport}s of a build.
+ *
+ * <p> The snapshot is written once by the publisher, so loading a build's report map does not need to parse the
+ * archived text reports again. Strings are written once per report and referenced by index afterwards, since test
+ * names repeat in every sample of a report. </p>
+ *
+ * <p> The reports are followed by a table of contents with the name, the report file name and the offset of every
+ * report, and the snapshot ends with the offset of the table. Since every report has its own strings, single reports
+ * can be read without reading the reports before them. </p>
+ */
+public final class ReportSnapshot {
+
+    /**
+     * Name of the snapshot file in the build root directory. It must not live under the performance reports
+     * directory, where every plain file is treated as a text report.
+     */
+    public static final String SNAPSHOT_FILE_NAME = "performance-reports.bin";
+
+    private static final int MAGIC = 0x53504652;
+
+    /**
+     * Bump whenever the layout changes; snapshots with another version are ignored and the reports are re-parsed.
+     * Builds whose raw reports were dropped by {@link RawReportRetention} cannot be re-parsed, so a new version must
+     * keep reading the snapshots written before it.
+     */
+    static final int VERSION = 1;
+
+    private static final int NEW_STRING = -1;
+    private static final int NULL_STRING = -2;
+
+    private ReportSnapshot() {
+    }
+
+    public static File getSnapshotFile(AbstractBuild<?, ?> build) {
+        return new File(build.getRootDir(), SNAPSHOT_FILE_NAME);
+    }
+
+    /**
+     * Writes the reports to the given file, through an {@link AtomicFileOutput}, so readers never see a partially
+     * written snapshot.
+     */
+    public static void write(File file, Collection<PerformanceReport> reports) throws IOException {
+        AtomicFileOutput output = new AtomicFileOutput(file);
+        try {
+            writeReports(output.getStream(), reports);
+            output.commit();
+        } finally {
+            output.abort();
+        }
+    }
+
+    /**
+     * Reads the reports from the given file.
+     *
+     * @return the reports, or <code>null</code> if there is no snapshot or it was written in another format version
+     */
+    public static List<PerformanceReport> read(File file) throws IOException {
+        if (!file.isFile()) {
+            return null;
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            return readReports(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * @return whether the given file is a snapshot in a format version that can be read
+     */
+    public static boolean isReadable(File file) {
+        if (!file.isFile()) {
+            return false;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new FileInputStream(file));
+            try {
+                if (in.readInt() != MAGIC) {
+                    return false;
+                }
+                return in.readInt() == VERSION;
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Reads the reports with the given name or from the given report file, using the table of contents.
+     *
+     * @param reportName     the name of the reports to read, or <code>null</code> for any name
+     * @param reportFileName the report file of the reports to read, or <code>null</code> for any report file
+     * @return the reports, or <code>null</code> if there is no snapshot or it was written in another format version
+     */
+    public static List<PerformanceReport> read(File file, String reportName, String reportFileName)
+            throws IOException {
+        if (!file.isFile()) {
+            return null;
+        }
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a performance report snapshot");
+            }
+            if (in.readInt() != VERSION) {
+                return null;
+            }
+            in.seek(in.length() - 4);
+            in.seek(in.readInt());
+            DataInputStream contents = openAt(in);
+            int reportCount = contents.readInt();
+            List<Integer> offsets = new ArrayList<Integer>();
+            for (int i = 0; i < reportCount; i++) {
+                String name = readNullableString(contents);
+                String fileName = readNullableString(contents);
+                int offset = contents.readInt();
+                if ((reportName == null || reportName.equals(name))
+                        && (reportFileName == null || reportFileName.equals(fileName))) {
+                    offsets.add(offset);
+                }
+            }
+            List<PerformanceReport> reports = new ArrayList<PerformanceReport>(offsets.size());
+            for (int offset : offsets) {
+                in.seek(offset);
+                reports.add(readReport(openAt(in)));
+            }
+            return reports;
+        } finally {
+            in.close();
+        }
+    }
+
+    public static void writeReports(DataOutputStream out, Collection<PerformanceReport> reports) throws IOException {
+        int start = out.size();
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(reports.size());
+        int[] offsets = new int[reports.size()];
+        int i = 0;
+        for (PerformanceReport report : reports) {
+            offsets[i++] = out.size() - start;
+            writeReport(out, report);
+        }
+        int contents = out.size() - start;
+        out.writeInt(reports.size());
+        i = 0;
+        for (PerformanceReport report : reports) {
+            writeNullableString(out, report.getReportName());
+            writeNullableString(out, report.getReportFileName());
+            out.writeInt(offsets[i++]);
+        }
+        out.writeInt(contents);
+    }
+
+    /**
+     * @return the reports, or <code>null</code> if the stream holds another format version
+     */
+    public static List<PerformanceReport> readReports(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a performance report snapshot");
+        }
+        if (in.readInt() != VERSION) {
+            return null;
+        }
+        int reportCount = in.readInt();
+        List<PerformanceReport> reports = new ArrayList<PerformanceReport>(reportCount);
+        for (int i = 0; i < reportCount; i++) {
+            reports.add(readReport(in));
+        }
+        return reports;
+    }
+
+    /**
+     * Positions a buffered stream at the current offset of the file.
+     */
+    private static DataInputStream openAt(RandomAccessFile file) {
+        // the stream reads ahead, so it is only valid until the next seek
+        return new DataInputStream(new BufferedInputStream(Channels.newInputStream(file.getChannel())));
+    }
+
+    private static void writeReport(DataOutputStream out, PerformanceReport report) throws IOException {
+        Map<String, Integer> strings = new HashMap<String, Integer>();
+        writeString(out, strings, report.getReportName());
+        writeString(out, strings, report.getReportFileName());
+        out.writeBoolean(report.isMultipleSampleReport());
+        List<SlingReportSample> samples = report.getReportSamples();
+        out.writeInt(samples.size());
+        for (SlingReportSample sample : samples) {
+            writeSample(out, strings, sample);
+        }
+    }
+
+    private static PerformanceReport readReport(DataInputStream in) throws IOException {
+        List<String> strings = new ArrayList<String>();
+        PerformanceReport report = new PerformanceReport();
+        report.setReportName(readString(in, strings));
+        report.setReportFileName(readString(in, strings));
+        report.setMultipleSampleReport(in.readBoolean());
+        int sampleCount = in.readInt();
+        for (int j = 0; j < sampleCount; j++) {
+            SlingReportSample sample = readSample(in, strings);
+            if (j == 0) {
+                report.setReportSample(sample);
+            }
+            report.addSample(sample);
+        }
+        return report;
+    }
+
+    private static void writeSample(DataOutputStream out, Map<String, Integer> strings, SlingReportSample sample)
+            throws IOException {
+        out.writeInt(sample.getSampleId());
+        out.writeLong(sample.getMin());
+        out.writeLong(sample.get10Percentile());
+        out.writeLong(sample.getMedian());
+        out.writeLong(sample.get90Percentile());
+        out.writeLong(sample.getMax());
+        out.writeBoolean(sample.isSuccessful());
+        out.writeLong(sample.getDate() == null ? -1 : sample.getDate().getTime());
+        writeString(out, strings, sample.getTestName());
+        writeString(out, strings, sample.getTestSuite());
+        writeString(out, strings, sample.getTestClass());
+        writeString(out, strings, sample.getTestCase());
+        LatencyHistogram histogram = sample.getHistogram();
+        out.writeBoolean(histogram != null);
+        if (histogram != null) {
+            histogram.write(out);
+        }
+    }
+
+    private static SlingReportSample readSample(DataInputStream in, List<String> strings) throws IOException {
+        SlingReportSample sample = new SlingReportSample();
+        sample.setSampleId(in.readInt());
+        sample.setMin(in.readLong());
+        sample.set10Percentile(in.readLong());
+        sample.setMedian(in.readLong());
+        sample.set90Percentile(in.readLong());
+        sample.setMax(in.readLong());
+        sample.setSuccessful(in.readBoolean());
+        long date = in.readLong();
+        if (date >= 0) {
+            sample.setDate(new Date(date));
+        }
+        sample.setTestName(readString(in, strings));
+        sample.setTestSuite(readString(in, strings));
+        sample.setTestClass(readString(in, strings));
+        sample.setTestCase(readString(in, strings));
+        if (in.readBoolean()) {
+            sample.setHistogram(LatencyHistogram.read(in));
+        }
+        return sample;
+    }
+
+    private static void writeString(DataOutputStream out, Map<String, Integer> strings, String value)
+            throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_STRING);
+            return;
+        }
+        Integer index = strings.get(value);
+        if (index != null) {
+            out.writeInt(index);
+        } else {
+            strings.put(value, strings.size());
+            out.writeInt(NEW_STRING);
+            out.writeUTF(value);
+        }
+    }
+
+    private static void writeNullableString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullableString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static String readString(DataInputStream in, List<String> strings) throws IOException {
+        int index = in.readInt();
+        if (index == NULL_STRING) {
+            return null;
+        }
+        if (index == NEW_STRING) {
+            String value = in.readUTF();
+            strings.add(value);
+            return value;
+        }
+        return strings.get(index);
+    }
+}
@@ -0,0 +1,208 @@
+package net.dulvac.slingperformanceplugin;
+
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.matrix.MatrixConfiguration;
+import hudson.matrix.MatrixProject;
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.model.Hudson;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Optional background warm-up of the performance data of recent builds after the controller started.
+ *
+ * <p> Once all jobs are loaded, the trend index and the report catalog of every project recording performance
+ * reports, and the report maps of its last builds, are loaded on a small pool of low-priority threads. Missing trend
+ * indexes and report catalogs are left to be built when first asked for, since building them reads every build. The
+ * first visits to the performance pages then find them loaded, instead of all parsing reports at the same time. The
+ * warm-up is off by default; it is turned on by setting the number of builds per project with the
+ * <code>net.dulvac.slingperformanceplugin.ReportWarmUp.builds</code> system property. It uses one thread, or as many
+ * as the <code>net.dulvac.slingperformanceplugin.ReportWarmUp.threads</code> system property says. The loaded report
+ * maps are kept by the {@link ReportMapCache}, within its budget. Its progress is shown on the
+ * {@link PluginStatusLink} page. </p>
+ */
+public final class ReportWarmUp {
+
+    static final int BUILDS = Integer.getInteger(ReportWarmUp.class.getName() + ".builds", 0);
+
+    static final int THREADS = Integer.getInteger(ReportWarmUp.class.getName() + ".threads", 1);
+
+    private static final Logger LOGGER = Logger.getLogger(ReportWarmUp.class.getName());
+
+    private static final ReportWarmUp INSTANCE = new ReportWarmUp();
+
+    private int buildsPerProject;
+    private int projectCount;
+    private int projectsDone;
+    private int buildsLoaded;
+    private int failures;
+    private long started;
+    private long finished;
+
+    ReportWarmUp() {
+    }
+
+    public static ReportWarmUp get() {
+        return INSTANCE;
+    }
+
+    @Initializer(after = InitMilestone.JOB_LOADED)
+    public static void startAfterJobsLoaded() {
+        if (BUILDS <= 0) {
+            return;
+        }
+        INSTANCE.start(Hudson.getInstance().getAllItems(AbstractProject.class), BUILDS);
+    }
+
+    /**
+     * Starts warming up the projects among the given ones that record performance reports. The active
+     * configurations of matrix projects are warmed up in their place, since their data makes up the matrix project's
+     * pages. Configurations among the given projects are skipped, since they come with their matrix project.
+     */
+    void start(List<AbstractProject> projects, int builds) {
+        List<AbstractProject<?, ?>> warmUp = new ArrayList<AbstractProject<?, ?>>();
+        for (AbstractProject<?, ?> project : projects) {
+            if (project instanceof MatrixConfiguration) {
+                continue;
+            }
+            if (project.getPublishersList() == null
+                    || project.getPublishersList().get(SlingPerformancePublisher.class) == null) {
+                continue;
+            }
+            if (project instanceof MatrixProject) {
+                warmUp.addAll(((MatrixProject) project).getActiveConfigurations());
+            } else {
+                warmUp.add(project);
+            }
+        }
+        synchronized (this) {
+            buildsPerProject = builds;
+            projectCount = warmUp.size();
+            projectsDone = 0;
+            buildsLoaded = 0;
+            failures = 0;
+            started = System.currentTimeMillis();
+            finished = warmUp.isEmpty() ? started : 0;
+        }
+        if (warmUp.isEmpty()) {
+            return;
+        }
+        LOGGER.log(Level.INFO, "Warming up the performance data of {0} projects", warmUp.size());
+
+        ThreadPoolExecutor executor = createExecutor();
+        for (final AbstractProject<?, ?> project : warmUp) {
+            executor.execute(new Runnable() {
+                public void run() {
+                    warmUp(project);
+                }
+            });
+        }
+        // the threads end once the queue is done
+        executor.shutdown();
+    }
+
+    private static ThreadPoolExecutor createExecutor() {
+        int threads = Math.max(1, THREADS);
+        final ThreadFactory threadFactory =
+                new NamingThreadFactory(new DaemonThreadFactory(), "Performance data warm-up");
+        return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    public Thread newThread(Runnable r) {
+                        Thread thread = threadFactory.newThread(r);
+                        // requests and builds go first
+                        thread.setPriority(Thread.MIN_PRIORITY);
+                        return thread;
+                    }
+                });
+    }
+
+    private void warmUp(AbstractProject<?, ?> project) {
+        int loaded = 0;
+        boolean warmedUp = false;
+        try {
+            TrendIndex.getIfExists(project);
+            ReportCatalog.getIfExists(project);
+            int builds = 0;
+            for (AbstractBuild<?, ?> build : project.getBuilds()) {
+                if (builds++ >= buildsPerProject) {
+                    break;
+                }
+                PerformanceBuildAction action = build.getAction(PerformanceBuildAction.class);
+                if (action != null && action.getPerformanceReportMap() != null) {
+                    loaded++;
+                }
+            }
+            warmedUp = true;
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Unable to warm up the performance data of " + project, e);
+        } finally {
+            // errors are counted too, or the warm-up would never finish
+            done(loaded, !warmedUp);
+        }
+    }
+
+    private synchronized void done(int loaded, boolean failed) {
+        buildsLoaded += loaded;
+        if (failed) {
+            failures++;
+        }
+        projectsDone++;
+        if (projectsDone == projectCount) {
+            finished = System.currentTimeMillis();
+            LOGGER.log(Level.INFO, "Warmed up the performance data of {0} builds of {1} projects in {2} ms",
+                    new Object[]{buildsLoaded, projectCount, finished - started});
+        }
+    }
+
+    /**
+     * @return whether a warm-up was started since the controller started
+     */
+    public synchronized boolean isStarted() {
+        return started > 0;
+    }
+
+    public synchronized boolean isRunning() {
+        return started > 0 && finished == 0;
+    }
+
+    public synchronized int getBuildsPerProject() {
+        return buildsPerProject;
+    }
+
+    public synchronized int getProjectCount() {
+        return projectCount;
+    }
+
+    public synchronized int getProjectsDone() {
+        return projectsDone;
+    }
+
+    public synchronized int getBuildsLoaded() {
+        return buildsLoaded;
+    }
+
+    public synchronized int getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return the time the warm-up took so far, in milliseconds
+     */
+    public synchronized long getDurationMillis() {
+        if (started == 0) {
+            return 0;
+        }
+        return (finished == 0 ? System.currentTimeMillis() : finished) - started;
+    }
+}
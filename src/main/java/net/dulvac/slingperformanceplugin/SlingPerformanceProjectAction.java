@@ -1,15 +1,15 @@
 package net.dulvac.slingperformanceplugin;
 
+import hudson.matrix.Axis;
 import hudson.matrix.MatrixConfiguration;
 import hudson.matrix.MatrixProject;
-import hudson.matrix.MatrixRun;
-import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
 import hudson.model.Action;
 import hudson.util.ChartUtil;
 import hudson.util.DataSetBuilder;
 import hudson.util.ShiftedCategoryAxis;
-import net.dulvac.slingperformanceplugin.reports.PerformanceReport;
+import org.jfree.chart.ChartFactory;
+import org.jfree.chart.ChartUtilities;
 import org.jfree.chart.JFreeChart;
 import org.jfree.chart.annotations.CategoryAnnotation;
 import org.jfree.chart.axis.AxisLocation;
@@ -23,13 +23,15 @@ import org.jfree.chart.plot.PlotOrientation;
 import org.jfree.chart.renderer.category.CategoryItemRenderer;
 import org.jfree.chart.renderer.category.LineAndShapeRenderer;
 import org.jfree.data.category.CategoryDataset;
+import org.jfree.data.category.DefaultCategoryDataset;
 import org.jfree.text.TextUtilities;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
 
+import javax.servlet.http.HttpServletResponse;
 import java.awt.*;
 import java.awt.geom.*;
-import java.io.File;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
@@ -38,14 +40,15 @@ import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
+import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -55,6 +58,8 @@ public final class SlingPerformanceProjectAction implements Action {
     private static final String CONFIGURE_LINK = "configure";
     private static final String TRENDREPORT_LINK = "trendReport";
     private static final String TESTSUITE_LINK = "testsuiteReport";
+    private static final String API_LINK = "api";
+    private static final String COMPARE_LINK = "compare";
 
     private static final String PLUGIN_NAME = "performance";
 
@@ -67,6 +72,7 @@ public final class SlingPerformanceProjectAction implements Action {
     private static final Logger LOGGER = Logger.getLogger(SlingPerformanceProjectAction.class.getName());
     public static final int CHART_DEFAULT_W = 1000;
     public static final int CHART_DEFAULT_H = 300;
+    private static final int MAX_CHART_DIMENSION = 10000;
 
     public final AbstractProject<?, ?> project;
 
@@ -217,32 +223,101 @@ public final class SlingPerformanceProjectAction implements Action {
             return;
         }
         List<DataFilter> dataFilter = Arrays.asList(DataFilter.NINENTY_PERCENT);
-        Map<String, DataSetBuilder<String, CustomNumberOnlyBuildLabel>> datasetBuilders = 
-                new HashMap<String, DataSetBuilder<String, CustomNumberOnlyBuildLabel>>();
-
-        // Add data to dataset builders for each configuration
-        Collection<MatrixConfiguration> configs = ((MatrixProject) this.project).getItems();
-        LOGGER.info("Getting builds... ");
-        for (MatrixConfiguration config : configs) {
-            // the builds to use
-            List<? extends AbstractBuild<?, ?>> builds = config.getBuilds();
-            // DEBUG
-            for (AbstractBuild build : builds) {
-                LOGGER.info("config: " + config.getDisplayName() + " -- build: " + build.getId());
-            }
+        ChartCache.Key key = getChartKey(request, "matrix", dataFilter);
+        ChartCache.Chart chart = ChartCache.get().get(key);
+        if (chart != null) {
+            ChartCache.send(request, response, chart);
+            return;
+        }
+        Map<Integer, DataSetBuilder<String, CustomNumberOnlyBuildLabel>> datasetBuilders =
+                new HashMap<Integer, DataSetBuilder<String, CustomNumberOnlyBuildLabel>>();
+
+        // the request is the same for every configuration, read it once
+        String reportName = getSelectedReportName(request);
+        if (reportName != null) {
+            GraphConfigurationDetail graphConf = (GraphConfigurationDetail) createUserConfiguration(request);
+            int testId = TestDictionary.get(project).getId(reportName);
             // add items to the dataset builders; use project names as suffix for legend labels
-            addToDatasetBuilders(request, response, dataFilter, builds, datasetBuilders, true);
+            for (MatrixTrend.ConfigurationSeries series
+                    : MatrixTrend.getSeries(((MatrixProject) this.project).getActiveConfigurations(), reportName)) {
+                addToDatasetBuilders(graphConf, dataFilter, testId, series.getBuilds(), series.getSeries(),
+                        datasetBuilders, " [" + series.getConfiguration().getName() + "]");
+            }
         }
         List<CategoryDataset> datasetList = new ArrayList<CategoryDataset>();
         for (DataSetBuilder dataSetBuilder : datasetBuilders.values()) {
             datasetList.add(dataSetBuilder.build());
         }
-        LOGGER.info("Plotting " + datasetList.size() + " datasets: ");
-        for (CategoryDataset ds : datasetList) {
-            LOGGER.info("ds: " + ds.toString());
+        chart = ChartCache.get().put(key, renderChart(request, createRespondingTimeChart(datasetList),
+                CHART_DEFAULT_W, datasetList.size() * CHART_DEFAULT_H));
+        ChartCache.send(request, response, chart);
+    }
+
+    /**
+     * Draws the value of a metric of one report at one build of a matrix project for every value of a matrix axis,
+     * as selected with the <code>axis</code>, <code>metric</code> and <code>build</code> parameters. The metric
+     * defaults to the median and the build to the newest one.
+     */
+    public void doRespondingTimeGraphAxis(StaplerRequest request, StaplerResponse response) throws IOException {
+        if (ChartUtil.awtProblemCause != null) {
+            // not available. send out error message
+            response.sendRedirect2(request.getContextPath() + "/images/headless.png");
+            return;
+        }
+        String axis = request.getParameter("axis");
+        if (!(this.project instanceof MatrixProject) || axis == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
         }
-        ChartUtil.generateGraph(request, response,
-                createRespondingTimeChart(datasetList), CHART_DEFAULT_W, datasetList.size() * CHART_DEFAULT_H);
+        DataFilter metric = DataFilter.MEDIAN;
+        if (request.getParameter("metric") != null) {
+            try {
+                metric = DataFilter.valueOf(request.getParameter("metric").toUpperCase(Locale.ENGLISH));
+            } catch (IllegalArgumentException e) {
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+                        "Unknown metric " + request.getParameter("metric"));
+                return;
+            }
+        }
+        int buildNumber = -1;
+        if (request.getParameter("build") != null) {
+            try {
+                buildNumber = Integer.parseInt(request.getParameter("build"));
+            } catch (NumberFormatException e) {
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+                        "Not a build number: " + request.getParameter("build"));
+                return;
+            }
+        }
+        ChartCache.Key key = getChartKey(request, "axis|" + axis + '|' + buildNumber,
+                Arrays.asList(metric));
+        ChartCache.Chart chart = ChartCache.get().get(key);
+        if (chart != null) {
+            ChartCache.send(request, response, chart);
+            return;
+        }
+
+        MatrixProject matrixProject = (MatrixProject) this.project;
+        DefaultCategoryDataset dataset = new DefaultCategoryDataset();
+        String reportName = getSelectedReportName(request);
+        if (reportName != null) {
+            List<MatrixTrend.ConfigurationSeries> series =
+                    MatrixTrend.getSeries(matrixProject.getActiveConfigurations(), reportName);
+            if (buildNumber < 0) {
+                buildNumber = MatrixTrend.getLastBuildNumber(series);
+            }
+            Axis matrixAxis = matrixProject.getAxes().find(axis);
+            List<String> axisValues = matrixAxis == null ? new ArrayList<String>() : matrixAxis.getValues();
+            for (Map.Entry<String, Long> value
+                    : MatrixTrend.getValuesByAxis(series, axis, axisValues, buildNumber, metric).entrySet()) {
+                dataset.addValue(value.getValue(), getMetricLabel(metric), value.getKey());
+            }
+        }
+        String metricLabel = getMetricLabel(metric);
+        JFreeChart axisChart = ChartFactory.createBarChart(metricLabel + " per " + axis + " #" + buildNumber,
+                axis, metricLabel, dataset, PlotOrientation.VERTICAL, false, true, false);
+        chart = ChartCache.get().put(key, renderChart(request, axisChart, CHART_DEFAULT_W, CHART_DEFAULT_H));
+        ChartCache.send(request, response, chart);
     }
 
     public void doRespondingTimeGraphCustom(StaplerRequest request,
@@ -254,119 +329,163 @@ public final class SlingPerformanceProjectAction implements Action {
             return;
         }
 
-        Map<String, DataSetBuilder<String, CustomNumberOnlyBuildLabel>> datasetBuilders =
-                new HashMap<String, DataSetBuilder<String, CustomNumberOnlyBuildLabel>>();
+        ChartCache.Key key = getChartKey(request, "custom", dataFilter);
+        ChartCache.Chart chart = ChartCache.get().get(key);
+        if (chart != null) {
+            ChartCache.send(request, response, chart);
+            return;
+        }
 
-        // the builds to use; in this case, all project builds
-        List<? extends AbstractBuild<?, ?>> builds = getProject().getBuilds();
+        Map<Integer, DataSetBuilder<String, CustomNumberOnlyBuildLabel>> datasetBuilders =
+                new HashMap<Integer, DataSetBuilder<String, CustomNumberOnlyBuildLabel>>();
 
         // add items to the dataset builders; don't use project names for legend labels
-        addToDatasetBuilders(request, response, dataFilter, builds, datasetBuilders, false);
+        addToDatasetBuilders(request, dataFilter, getProject(), datasetBuilders, false);
 
         List<CategoryDataset> datasetList = new ArrayList<CategoryDataset>();
         for (DataSetBuilder dataSetBuilder : datasetBuilders.values()) {
             datasetList.add(dataSetBuilder.build());
         }
-        ChartUtil.generateGraph(request, response,
-                createRespondingTimeChart(datasetList), CHART_DEFAULT_W, datasetList.size() * CHART_DEFAULT_H);
+        chart = ChartCache.get().put(key, renderChart(request, createRespondingTimeChart(datasetList),
+                CHART_DEFAULT_W, datasetList.size() * CHART_DEFAULT_H));
+        ChartCache.send(request, response, chart);
     }
 
     /**
-     * Add items to data set builders based on builds results
+     * Creates the cache key of a chart, from everything in the request that changes the rendered chart: the selected
+     * report, the data filters, the graph configuration, which determines the range of builds, and the size.
      */
-    private void addToDatasetBuilders(StaplerRequest request, StaplerResponse response, List<DataFilter> dataFilter, 
-                                      List<? extends AbstractBuild<?, ?>> builds, Map<String, DataSetBuilder<String, 
+    private ChartCache.Key getChartKey(StaplerRequest request, String graph, List<DataFilter> dataFilter) {
+        PerformanceReportPosition performanceReportPosition = new PerformanceReportPosition();
+        request.bindParameters(performanceReportPosition);
+        GraphConfigurationDetail graphConf = (GraphConfigurationDetail) createUserConfiguration(request);
+        String chart = graph + '|' + performanceReportPosition.getPerformanceReportPosition()
+                + '|' + performanceReportPosition.getReportName()
+                + '|' + dataFilter
+                + '|' + graphConf.serializeToString(graphConf.getConfigType(), graphConf.getBuildCount(),
+                        graphConf.getFirstDayCount(), graphConf.getLastDayCount(), graphConf.getBuildStep())
+                + '|' + request.getParameter("width") + 'x' + request.getParameter("height");
+        return ChartCache.get().getKey(project, chart);
+    }
+
+    /**
+     * Renders a chart as PNG, in the size requested with the <code>width</code> and <code>height</code> parameters
+     * like {@link ChartUtil#generateGraph} does, or in the default size.
+     */
+    private static byte[] renderChart(StaplerRequest request, JFreeChart chart, int defaultWidth, int defaultHeight)
+            throws IOException {
+        long start = System.nanoTime();
+        int width = getDimension(request, "width", defaultWidth);
+        // a chart without any dataset still needs some height
+        int height = getDimension(request, "height", Math.max(defaultHeight, CHART_DEFAULT_H));
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ChartUtilities.writeChartAsPNG(png, chart, width, height);
+        PluginMetrics.get().time(PluginMetrics.RENDER_CHART, start);
+        return png.toByteArray();
+    }
+
+    private static int getDimension(StaplerRequest request, String parameter, int defaultValue) {
+        String value = request.getParameter(parameter);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            int dimension = Integer.parseInt(value);
+            return dimension > 0 && dimension <= MAX_CHART_DIMENSION ? dimension : defaultValue;
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Add items to data set builders based on builds results, as recorded in the {@link TrendIndex} of the project
+     */
+    void addToDatasetBuilders(StaplerRequest request, List<DataFilter> dataFilter,
+                              AbstractProject<?, ?> project, Map<Integer, DataSetBuilder<String,
             CustomNumberOnlyBuildLabel>> datasetBuilders, boolean useCustomLabelSuffix) {
-        Range buildsLimits = getFirstAndLastBuild(request, builds);
-        int nbBuildsToAnalyze = builds.size();
+        String reportName = getSelectedReportName(request);
+        if (reportName == null) {
+            return;
+        }
+
+        int testId = TestDictionary.get(project).getId(reportName);
+        TrendIndex trendIndex = TrendIndex.get(project);
+        GraphConfigurationDetail graphConf = (GraphConfigurationDetail) createUserConfiguration(request);
+        // use an optional custom label suffix with project name
+        String customLabelSuffix = (useCustomLabelSuffix) ? " [" + project.getName() + "]" : "";
+        addToDatasetBuilders(graphConf, dataFilter, testId, trendIndex.getBuilds(), trendIndex.getSeries(testId),
+                datasetBuilders, customLabelSuffix);
+    }
 
+    /**
+     * @return the name of the report selected by the request, or <code>null</code> if no report file is selected
+     *         and the project has more than one
+     */
+    private String getSelectedReportName(StaplerRequest request) {
         PerformanceReportPosition performanceReportPosition = new PerformanceReportPosition();
         request.bindParameters(performanceReportPosition);
-        String performanceReportNameFile = performanceReportPosition.getPerformanceReportPosition();
-        String reportName = performanceReportPosition.getReportName();
-        if (performanceReportNameFile == null) {
-            if (getPerformanceReportFileList().size() == 1) {
-                performanceReportNameFile = getPerformanceReportFileList().get(0);
-            } else {
-                return;
-            }
+        if (performanceReportPosition.getPerformanceReportPosition() == null
+                && getPerformanceReportFileList().size() != 1) {
+            return null;
         }
+        return performanceReportPosition.getReportName();
+    }
+
+    /**
+     * Add the values of one test in the given builds of a project to the data set builders
+     */
+    private void addToDatasetBuilders(GraphConfigurationDetail graphConf, List<DataFilter> dataFilter, int testId,
+                                      List<TrendIndex.BuildEntry> builds, TrendIndex.Series series,
+                                      Map<Integer, DataSetBuilder<String, CustomNumberOnlyBuildLabel>> datasetBuilders,
+                                      String customLabelSuffix) {
+        if (series == null) {
+            return;
+        }
+        Range buildsLimits = getFirstAndLastBuild(graphConf, builds);
+        int nbBuildsToAnalyze = builds.size();
 
         // create dataSet for each build
-        for (AbstractBuild<?, ?> build : builds) {
+        for (TrendIndex.BuildEntry build : builds) {
             if (buildsLimits.in(nbBuildsToAnalyze)) {
 
-                if (!buildsLimits.includedByStep(build.number)) {
-                    continue;
-                }
-
-                CustomNumberOnlyBuildLabel label = new CustomNumberOnlyBuildLabel(build);
-                PerformanceBuildAction performanceBuildAction = build.getAction(PerformanceBuildAction.class);
-                if (performanceBuildAction == null) {
+                if (!buildsLimits.includedByStep(build.getNumber())) {
                     continue;
                 }
 
-                PerformanceReport performanceReport = performanceBuildAction.getPerformanceReportMap().getPerformanceReport(reportName);
-                if (null == performanceReport) {
+                CustomNumberOnlyBuildLabel label = new CustomNumberOnlyBuildLabel(build.getNumber());
+                int row = series.indexOf(build.getNumber());
+                if (row < 0) {
                     nbBuildsToAnalyze--;
                     continue;
                 }
 
                 // For each report in this report file, add to the respective dataset builder
-                DataSetBuilder<String, CustomNumberOnlyBuildLabel> dataSetBuilder =
-                        datasetBuilders.get(performanceReport.getReportName());
+                DataSetBuilder<String, CustomNumberOnlyBuildLabel> dataSetBuilder = datasetBuilders.get(testId);
                 if (dataSetBuilder == null) {
                     dataSetBuilder = new DataSetBuilder<String, CustomNumberOnlyBuildLabel>();
-                    datasetBuilders.put(performanceReport.getReportName(), dataSetBuilder);
+                    datasetBuilders.put(testId, dataSetBuilder);
                 }
 
-                // use an optional custom label suffix with project name
-                String customLabelSuffix = (useCustomLabelSuffix) ? " [" + build.getProject().getName() + "]" : "";
-
+                // multi-sample reports are merged into one row per build
                 if (dataFilter.contains(DataFilter.MEDIAN)) {
-                    if (performanceReport.isMultipleSampleReport()) {
-                        for (SlingReportSample sample : performanceReport.getReportSamples()) {
-                            dataSetBuilder.add(sample.getMedian(), Messages.ProjectAction_Median() + customLabelSuffix, label);
-                        }
-                    } else {
-                        dataSetBuilder.add(performanceReport.getMedian(), Messages.ProjectAction_Median() + customLabelSuffix, label);
-                    }
+                    dataSetBuilder.add(series.getValue(DataFilter.MEDIAN, row),
+                            Messages.ProjectAction_Median() + customLabelSuffix, label);
                 }
                 if (dataFilter.contains(DataFilter.MAX)) {
-                    if (performanceReport.isMultipleSampleReport()) {
-                        for (SlingReportSample sample : performanceReport.getReportSamples()) {
-                            dataSetBuilder.add(sample.getMax(), Messages.ProjectAction_Maximum() + customLabelSuffix, label);
-                        }
-                    } else {
-                        dataSetBuilder.add(performanceReport.getMax(), Messages.ProjectAction_Maximum() + customLabelSuffix, label);
-                    }
+                    dataSetBuilder.add(series.getValue(DataFilter.MAX, row),
+                            Messages.ProjectAction_Maximum() + customLabelSuffix, label);
                 }
                 if (dataFilter.contains(DataFilter.MIN)) {
-                    if (performanceReport.isMultipleSampleReport()) {
-                        for (SlingReportSample sample : performanceReport.getReportSamples()) {
-                            dataSetBuilder.add(sample.getMin(), Messages.ProjectAction_Minimum() + customLabelSuffix, label);
-                        }
-                    } else {
-                        dataSetBuilder.add(performanceReport.getMin(), Messages.ProjectAction_Minimum() + customLabelSuffix, label);
-                    }
+                    dataSetBuilder.add(series.getValue(DataFilter.MIN, row),
+                            Messages.ProjectAction_Minimum() + customLabelSuffix, label);
                 }
                 if (dataFilter.contains(DataFilter.TEN_PERCENT)) {
-                    if (performanceReport.isMultipleSampleReport()) {
-                        for (SlingReportSample sample : performanceReport.getReportSamples()) {
-                            dataSetBuilder.add(sample.get10Percentile(), Messages.ProjectAction_Line10() + customLabelSuffix, label);
-                        }
-                    } else {
-                        dataSetBuilder.add(performanceReport.get10Percentile(), Messages.ProjectAction_Line10() + customLabelSuffix, label);
-                    }
+                    dataSetBuilder.add(series.getValue(DataFilter.TEN_PERCENT, row),
+                            Messages.ProjectAction_Line10() + customLabelSuffix, label);
                 }
                 if (dataFilter.contains(DataFilter.NINENTY_PERCENT)) {
-                    if (performanceReport.isMultipleSampleReport()) {
-                        for (SlingReportSample sample : performanceReport.getReportSamples()) {
-                            dataSetBuilder.add(sample.get90Percentile(), Messages.ProjectAction_Line90() + customLabelSuffix, label);
-                        }
-                    } else {
-                        dataSetBuilder.add(performanceReport.get90Percentile(), Messages.ProjectAction_Line90() + customLabelSuffix, label);
-                    }
+                    dataSetBuilder.add(series.getValue(DataFilter.NINENTY_PERCENT, row),
+                            Messages.ProjectAction_Line90() + customLabelSuffix, label);
                 }
 
             }
@@ -379,12 +498,14 @@ public final class SlingPerformanceProjectAction implements Action {
     /**
      * <p> give a list of two Integer : the smallest build to use and the biggest. </p>
      *
+     * @param builds the builds to choose from, newest first
      * @return outList
      */
-    private Range getFirstAndLastBuild(StaplerRequest request, List<?> builds) {
-        Range range = new Range();
-        GraphConfigurationDetail graphConf = (GraphConfigurationDetail) createUserConfiguration(request);
+    private Range getFirstAndLastBuild(StaplerRequest request, List<TrendIndex.BuildEntry> builds) {
+        return getFirstAndLastBuild((GraphConfigurationDetail) createUserConfiguration(request), builds);
+    }
 
+    private Range getFirstAndLastBuild(GraphConfigurationDetail graphConf, List<TrendIndex.BuildEntry> builds) {
         if (graphConf.isNone()) {
             return all(builds);
         }
@@ -421,14 +542,12 @@ public final class SlingPerformanceProjectAction implements Action {
                 } catch (ParseException e) {
                     LOGGER.log(Level.SEVERE, "Error during the manage of the Calendar", e);
                 }
-                for (Iterator<?> iterator = builds.iterator(); iterator.hasNext(); ) {
-                    AbstractBuild<?, ?> currentBuild = (AbstractBuild<?, ?>) iterator.next();
-                    GregorianCalendar buildDate = new GregorianCalendar();
-                    buildDate.setTime(currentBuild.getTimestamp().getTime());
-                    if (firstDate.getTime().before(buildDate.getTime())) {
+                for (TrendIndex.BuildEntry currentBuild : builds) {
+                    Date buildDate = new Date(currentBuild.getTimestamp());
+                    if (firstDate.getTime().before(buildDate)) {
                         firstBuild = var;
                     }
-                    if (lastBuild < 0 && lastDate.getTime().after(buildDate.getTime())) {
+                    if (lastBuild < 0 && lastDate.getTime().after(buildDate)) {
                         lastBuild = var;
                     }
                     var--;
@@ -461,67 +580,15 @@ public final class SlingPerformanceProjectAction implements Action {
         }
 
         if (this.project instanceof MatrixProject) {
-
             Collection<MatrixConfiguration> configs = ((MatrixProject) this.project).getActiveConfigurations();
-            for (MatrixConfiguration config : configs) {
-                for (MatrixRun matrixRun : config.getBuilds()) {
-                    if (matrixRun == null) {
-                        return performanceReportFileList;
-                    }
-
-                    File rootDir = matrixRun.getRootDir();
-
-                    if (rootDir == null) {
-                        return performanceReportFileList;
-                    }
-
-                    File file = new File(rootDir, SlingPerformanceReportMap.getPerformanceReportDirRelativePath());
-
-                    if (!file.isDirectory()) {
-                        return performanceReportFileList;
-                    }
-
-                    for (File entry : file.listFiles()) {
-                        if (entry.isDirectory()) {
-                            for (File e : entry.listFiles()) {
-                                if (!this.performanceReportFileList.contains(e.getName())) {
-                                    this.performanceReportFileList.add(e.getName());
-                                }
-                            }
-                        } else {
-                            if (!this.performanceReportFileList.contains(entry.getName())) {
-                                this.performanceReportFileList.add(entry.getName());
-                            }
-                        }
-                    }
-                }
-
+            try {
+                this.performanceReportFileList.addAll(new TreeSet<String>(MatrixTrend.getReportFileNames(configs)));
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Unable to list the performance reports of " + project, e);
             }
         } else {
-            for (AbstractBuild build : this.project.getBuilds()) {
-                File file = new File(build.getRootDir(), SlingPerformanceReportMap.getPerformanceReportDirRelativePath());
-
-                if (!file.isDirectory()) {
-                    return performanceReportFileList;
-                }
-
-                for (File entry : file.listFiles()) {
-                    if (entry.isDirectory()) {
-                        for (File e : entry.listFiles()) {
-                            if (!this.performanceReportFileList.contains(e.getName())) {
-                                this.performanceReportFileList.add(e.getName());
-                            }
-                        }
-                    } else {if (!this.performanceReportFileList.contains(entry.getName())) {
-                        this.performanceReportFileList.add(entry.getName());
-                    }
-                    }
-
-                }
-            }
+            this.performanceReportFileList.addAll(ReportCatalog.get(this.project).getReportFileNames());
         }
-
-        Collections.sort(performanceReportFileList);
         return this.performanceReportFileList;
     }
 
@@ -535,36 +602,13 @@ public final class SlingPerformanceProjectAction implements Action {
         // if this is a matrix project, get all the report names from all configurations
         if (this.project instanceof MatrixProject) {
             Collection<MatrixConfiguration> configs = ((MatrixProject) this.project).getActiveConfigurations();
-            for (MatrixConfiguration config : configs) {
-                for (MatrixRun matrixRun : config.getBuilds()) {
-                    if (matrixRun == null) {
-                        continue;
-                    }
-                    PerformanceBuildAction performanceBuildAction = matrixRun.getAction(PerformanceBuildAction.class);
-                    if (performanceBuildAction == null) {
-                        continue;
-                    }
-                    List<PerformanceReport> performanceReports = performanceBuildAction.getPerformanceReportMap()
-                            .getPerformanceReportsByFilename(performanceReportFile);
-
-                    for (PerformanceReport report : performanceReports) {
-                        performanceReportNames.add(report.getReportName());
-                    }
-                }
+            try {
+                performanceReportNames.addAll(MatrixTrend.getReportNames(configs, performanceReportFile));
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Unable to list the performance reports of " + project, e);
             }
         } else {
-            for (AbstractBuild build : this.project.getBuilds()) {
-                PerformanceBuildAction performanceBuildAction = build.getAction(PerformanceBuildAction.class);
-                if (performanceBuildAction == null) {
-                    return new ArrayList(performanceReportNames);
-                }
-                List<PerformanceReport> performanceReports = performanceBuildAction.getPerformanceReportMap().
-                        getPerformanceReportsByFilename(performanceReportFile);
-
-                for (PerformanceReport report : performanceReports) {
-                    performanceReportNames.add(report.getReportName());
-                }
-            }
+            performanceReportNames.addAll(ReportCatalog.get(this.project).getReportNames(performanceReportFile));
         }
 
         return new ArrayList(performanceReportNames);
@@ -592,6 +636,10 @@ public final class SlingPerformanceProjectAction implements Action {
             return createUserConfiguration(request);
         } else if (TRENDREPORT_LINK.equals(link)) {
             return createTrendReport(request);
+        } else if (API_LINK.equals(link)) {
+            return new TrendApi(project);
+        } else if (COMPARE_LINK.equals(link)) {
+            return new BuildComparisonDetail(project, request);
         } else {
             return null;
         }
@@ -635,51 +683,63 @@ public final class SlingPerformanceProjectAction implements Action {
         return performanceReportPosition.getPerformanceReportPosition();
     }
 
-    private DataSetBuilder getTrendReportData(final StaplerRequest request, String performanceReportName) {
+    DataSetBuilder getTrendReportData(final StaplerRequest request, String performanceReportName) {
         DataSetBuilder<String, CustomNumberOnlyBuildLabel> dataSet =
                 new DataSetBuilder<String, CustomNumberOnlyBuildLabel>();
 
         // Add builds depending on project type (single or matrix)
-        List<? extends AbstractBuild<?, ?>> builds = new ArrayList<AbstractBuild<?, ?>>();
+        List<TrendIndex.BuildEntry> builds = new ArrayList<TrendIndex.BuildEntry>();
+        List<AbstractProject<?, ?>> buildProjects = new ArrayList<AbstractProject<?, ?>>();
+        List<TrendIndex.Series> buildSeries = new ArrayList<TrendIndex.Series>();
         boolean useCustomLabelSuffix = false;
         if (this.project instanceof MatrixProject) {
             // Add data to dataset builders for each configuration
-            Collection<MatrixConfiguration> configs = ((MatrixProject) this.project).getActiveConfigurations();
-            for (MatrixConfiguration config : configs) {
-                // the builds to use
-                builds.addAll((Collection) config.getBuilds());
+            try {
+                for (MatrixTrend.ConfigurationSeries series : MatrixTrend.getSeries(
+                        ((MatrixProject) this.project).getActiveConfigurations(), performanceReportName)) {
+                    for (TrendIndex.BuildEntry build : series.getBuilds()) {
+                        builds.add(build);
+                        buildProjects.add(series.getConfiguration());
+                        buildSeries.add(series.getSeries());
+                    }
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Unable to read the performance trend of " + project, e);
             }
             useCustomLabelSuffix = true;
         } else {
-            builds.addAll((Collection) getProject().getBuilds());
-            useCustomLabelSuffix = false;
+            TrendIndex trendIndex = TrendIndex.get(getProject());
+            int testId = TestDictionary.get(getProject()).getId(performanceReportName);
+            TrendIndex.Series series = trendIndex.getSeries(testId);
+            for (TrendIndex.BuildEntry build : trendIndex.getBuilds()) {
+                builds.add(build);
+                buildProjects.add(getProject());
+                buildSeries.add(series);
+            }
         }
         Range buildsLimits = getFirstAndLastBuild(request, builds);
 
         int nbBuildsToAnalyze = builds.size();
-        for (AbstractBuild<?, ?> currentBuild : builds) {
+        for (int i = 0; i < builds.size(); i++) {
+            TrendIndex.BuildEntry currentBuild = builds.get(i);
             if (buildsLimits.in(nbBuildsToAnalyze)) {
                 String customLabelSuffix =
-                        (useCustomLabelSuffix) ? " [" + currentBuild.getProject().getName() + "]" : "";
-                CustomNumberOnlyBuildLabel label = new CustomNumberOnlyBuildLabel(currentBuild);
+                        (useCustomLabelSuffix) ? " [" + buildProjects.get(i).getName() + "]" : "";
+                CustomNumberOnlyBuildLabel label = new CustomNumberOnlyBuildLabel(currentBuild.getNumber());
                 label.setCustomSuffix(customLabelSuffix);
 
-                PerformanceBuildAction performanceBuildAction = currentBuild.getAction(PerformanceBuildAction.class);
-                if (performanceBuildAction == null) {
-                    continue;
-                }
-                PerformanceReport report = null;
-                report = performanceBuildAction.getPerformanceReportMap().getPerformanceReport(performanceReportName);
-                if (report == null) {
+                TrendIndex.Series series = buildSeries.get(i);
+                int row = series == null ? -1 : series.indexOf(currentBuild.getNumber());
+                if (row < 0) {
                     nbBuildsToAnalyze--;
                     continue;
                 }
 
-                dataSet.add(Math.round(report.getMedian()), Messages.ProjectAction_Median(), label);
-                dataSet.add(Math.round(report.getMin()), Messages.ProjectAction_Minimum(), label);
-                dataSet.add(Math.round(report.getMax()), Messages.ProjectAction_Maximum(), label);
-                dataSet.add(Math.round(report.get10Percentile()), Messages.ProjectAction_Line10(), label);
-                dataSet.add(Math.round(report.get90Percentile()), Messages.ProjectAction_Line90(), label);
+                dataSet.add(series.getValue(DataFilter.MEDIAN, row), Messages.ProjectAction_Median(), label);
+                dataSet.add(series.getValue(DataFilter.MIN, row), Messages.ProjectAction_Minimum(), label);
+                dataSet.add(series.getValue(DataFilter.MAX, row), Messages.ProjectAction_Maximum(), label);
+                dataSet.add(series.getValue(DataFilter.TEN_PERCENT, row), Messages.ProjectAction_Line10(), label);
+                dataSet.add(series.getValue(DataFilter.NINENTY_PERCENT, row), Messages.ProjectAction_Line90(), label);
             }
             nbBuildsToAnalyze--;
         }
@@ -694,6 +754,37 @@ public final class SlingPerformanceProjectAction implements Action {
         return (this.project instanceof MatrixProject ? true : false);
     }
 
+    /**
+     * @return the names of the axes of a matrix project, or an empty list for other projects
+     */
+    public List<String> getMatrixAxisNames() {
+        List<String> names = new ArrayList<String>();
+        if (this.project instanceof MatrixProject) {
+            for (Axis axis : ((MatrixProject) this.project).getAxes()) {
+                names.add(axis.getName());
+            }
+        }
+        return names;
+    }
+
+    /**
+     * @return the label of a metric in the charts
+     */
+    private static String getMetricLabel(DataFilter metric) {
+        switch (metric) {
+            case MIN:
+                return Messages.ProjectAction_Minimum();
+            case MAX:
+                return Messages.ProjectAction_Maximum();
+            case TEN_PERCENT:
+                return Messages.ProjectAction_Line10();
+            case NINENTY_PERCENT:
+                return Messages.ProjectAction_Line90();
+            default:
+                return Messages.ProjectAction_Median();
+        }
+    }
+
     public static class Range {
 
         public int first;
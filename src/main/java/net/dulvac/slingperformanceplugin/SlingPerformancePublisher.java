@@ -8,6 +8,7 @@ import hudson.model.BuildListener;
 import hudson.model.Result;
 import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
+import hudson.remoting.Pipe;
 import net.dulvac.slingperformanceplugin.parsers.GenericReportParser;
 import net.dulvac.slingperformanceplugin.parsers.PerformanceReportParserDescriptor;
 import net.dulvac.slingperformanceplugin.reports.PerformanceReport;
@@ -15,17 +16,33 @@ import hudson.tasks.BuildStepDescriptor;
 import hudson.tasks.BuildStepMonitor;
 import hudson.tasks.Publisher;
 import hudson.tasks.Recorder;
+import hudson.util.ListBoxModel;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
-
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.tools.tar.TarEntry;
+import org.apache.tools.tar.TarInputStream;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 
 public class SlingPerformancePublisher extends Recorder {
 
@@ -54,6 +71,13 @@ public class SlingPerformancePublisher extends Recorder {
         public boolean isApplicable(Class<? extends AbstractProject> jobType) {
             return true;
         }
+
+        public ListBoxModel doFillRegressionResultItems() {
+            ListBoxModel items = new ListBoxModel();
+            items.add(Messages.Publisher_RegressionResult_Unstable(), Result.UNSTABLE.toString());
+            items.add(Messages.Publisher_RegressionResult_Failure(), Result.FAILURE.toString());
+            return items;
+        }
     }
 
 
@@ -62,13 +86,76 @@ public class SlingPerformancePublisher extends Recorder {
      */
     private List<GenericReportParser> parsers;
 
+    /**
+     * Parse the reports on the node the workspace lives on, and send only the parsed results to the controller.
+     */
+    private boolean parseOnAgent;
+
+    /**
+     * Copy the raw report files to the build when they are parsed on the agent. Reports parsed on the controller are
+     * always copied.
+     */
+    private boolean archiveRawReports;
+
+    /**
+     * Store the copied raw report files gzip compressed.
+     */
+    private boolean compressRawReports;
+
+    /**
+     * Number of builds, counting the newest, whose raw report files are kept; older builds only keep the parsed
+     * results. 0 keeps the raw reports of every build.
+     */
+    private int rawReportBuildsToKeep;
+
+    /**
+     * Number of previous successful builds the results are compared with; 0 disables the regression check.
+     */
+    private int baselineBuilds;
+
+    /**
+     * Smallest increase over the baseline that counts as a regression, in percent. Boxed, since 0 is a valid
+     * threshold and jobs saved before it existed read it as <code>null</code>.
+     */
+    private Double relativeThreshold = DEFAULT_RELATIVE_THRESHOLD;
+
+    /**
+     * Smallest increase over the baseline that counts as a regression, in milliseconds.
+     */
+    private long absoluteThreshold;
+
+    /**
+     * Significance level of the test telling regressions from noise.
+     */
+    private double significance = DEFAULT_SIGNIFICANCE;
+
+    /**
+     * Result of a build with regressions.
+     */
+    private String regressionResult = Result.UNSTABLE.toString();
+
+    private static final double DEFAULT_SIGNIFICANCE = 0.05;
+
+    private static final double DEFAULT_RELATIVE_THRESHOLD = 10;
+
+    /**
+     * How long to wait for the agent side to fail, once the stream of reports it sends broke.
+     */
+    private static final int FAILURE_WAIT_SECONDS = 10;
 
-    @DataBoundConstructor
     public SlingPerformancePublisher(List<? extends GenericReportParser> parsers) {
+        this(parsers, false, true);
+    }
+
+    @DataBoundConstructor
+    public SlingPerformancePublisher(List<? extends GenericReportParser> parsers, boolean parseOnAgent,
+                                     boolean archiveRawReports) {
         if (parsers == null) {
             parsers = Collections.emptyList();
         }
         this.parsers = new ArrayList<GenericReportParser>(parsers);
+        this.parseOnAgent = parseOnAgent;
+        this.archiveRawReports = archiveRawReports;
     }
 
     // Get the parsed configured for performance report parsing
@@ -76,6 +163,78 @@ public class SlingPerformancePublisher extends Recorder {
         return parsers;
     }
 
+    public boolean isParseOnAgent() {
+        return parseOnAgent;
+    }
+
+    public boolean isArchiveRawReports() {
+        return archiveRawReports;
+    }
+
+    public boolean isCompressRawReports() {
+        return compressRawReports;
+    }
+
+    @DataBoundSetter
+    public void setCompressRawReports(boolean compressRawReports) {
+        this.compressRawReports = compressRawReports;
+    }
+
+    public int getRawReportBuildsToKeep() {
+        return rawReportBuildsToKeep;
+    }
+
+    @DataBoundSetter
+    public void setRawReportBuildsToKeep(int rawReportBuildsToKeep) {
+        this.rawReportBuildsToKeep = Math.max(rawReportBuildsToKeep, 0);
+    }
+
+    public int getBaselineBuilds() {
+        return baselineBuilds;
+    }
+
+    @DataBoundSetter
+    public void setBaselineBuilds(int baselineBuilds) {
+        this.baselineBuilds = Math.max(0, baselineBuilds);
+    }
+
+    public double getRelativeThreshold() {
+        return relativeThreshold;
+    }
+
+    @DataBoundSetter
+    public void setRelativeThreshold(double relativeThreshold) {
+        this.relativeThreshold = relativeThreshold;
+    }
+
+    public long getAbsoluteThreshold() {
+        return absoluteThreshold;
+    }
+
+    @DataBoundSetter
+    public void setAbsoluteThreshold(long absoluteThreshold) {
+        this.absoluteThreshold = absoluteThreshold;
+    }
+
+    public double getSignificance() {
+        return significance;
+    }
+
+    @DataBoundSetter
+    public void setSignificance(double significance) {
+        this.significance = significance > 0 && significance < 1 ? significance : DEFAULT_SIGNIFICANCE;
+    }
+
+    public String getRegressionResult() {
+        return regressionResult;
+    }
+
+    @DataBoundSetter
+    public void setRegressionResult(String regressionResult) {
+        this.regressionResult = Result.FAILURE.toString().equals(regressionResult) ? Result.FAILURE.toString()
+                : Result.UNSTABLE.toString();
+    }
+
     public static File getPerformanceReport(AbstractBuild<?, ?> build, String parserDisplayName, String performanceReportName) {
         return new File(build.getRootDir(),
                 SlingPerformanceReportMap.getPerformanceReportFileRelativePath(parserDisplayName, performanceReportName));
@@ -130,26 +289,43 @@ public class SlingPerformancePublisher extends Recorder {
     @Override
     public boolean perform(AbstractBuild<?, ?> build, Launcher launcher,
                            BuildListener listener) throws InterruptedException, IOException {
+        long start = System.nanoTime();
+        try {
+            return publish(build, listener);
+        } finally {
+            PluginMetrics.get().time(PluginMetrics.PUBLISH, start);
+        }
+    }
 
+    private boolean publish(AbstractBuild<?, ?> build, BuildListener listener)
+            throws InterruptedException, IOException {
         if (build.getResult().isWorseThan(Result.FAILURE)) {
             return true;
         }
         PrintStream logger = listener.getLogger();
 
-        logger.println("Performance: No condition configured for making the build " + Result.FAILURE.toString().toLowerCase());
+        if (baselineBuilds == 0) {
+            logger.println("Performance: No condition configured for making the build " + Result.FAILURE.toString().toLowerCase());
+        }
 
         // add the report to the build object.
         PerformanceBuildAction a = new PerformanceBuildAction(build, logger, parsers);
         build.addAction(a);
+        SlingPerformanceReportMap reportMap = new SlingPerformanceReportMap(a);
 
         for (GenericReportParser parser : parsers) {
             String glob = parser.glob;
 
             logger.println("Performance: Recording " + parser.getReportName() + " reports '" + glob + "'");
 
-            List<FilePath> files = locatePerformanceReports(build.getWorkspace(), glob);
+            Collection<PerformanceReport> parsedReports;
+            if (parseOnAgent) {
+                parsedReports = parseOnAgent(build, listener, parser);
+            } else {
+                parsedReports = parseOnMaster(build, listener, parser);
+            }
 
-            if (files.isEmpty()) {
+            if (parsedReports == null) {
                 if (build.getResult().isWorseThan(Result.FAILURE)) {
                     return true;
                 }
@@ -162,37 +338,238 @@ public class SlingPerformancePublisher extends Recorder {
                 return true;
             }
 
-            List<File> localReports = copyReportsToMaster(build, logger, files, parser.getDescriptor().getDisplayName());
-            Collection<PerformanceReport> parsedReports = parser.parse(build, localReports, listener);
+            reportMap.addReports(parsedReports, a.getId());
+        }
+
+        // keep the parsed results, so loading the report map does not need to parse the reports again
+        try {
+            reportMap.saveSnapshot();
+        } catch (IOException e) {
+            logger.println("Performance: Unable to write the report snapshot: " + e.getMessage());
+        }
+        a.setPerformanceReportMap(reportMap);
 
-            for (PerformanceReport r : parsedReports) {
-                r.setBuildAction(a);
+        try {
+            TrendIndex.get(build.getProject()).record(build, reportMap);
+        } catch (IOException e) {
+            logger.println("Performance: Unable to update the trend index: " + e.getMessage());
+        }
+        try {
+            ReportCatalog.get(build.getProject()).record(build, reportMap);
+        } catch (IOException e) {
+            logger.println("Performance: Unable to update the report catalog: " + e.getMessage());
+        }
+        ChartCache.get().invalidate(build.getProject());
+
+        if (rawReportBuildsToKeep > 0) {
+            try {
+                RawReportRetention.apply(build, rawReportBuildsToKeep, logger);
+            } catch (IOException e) {
+                logger.println("Performance: Unable to drop the raw reports of older builds: " + e.getMessage());
             }
         }
 
+        if (baselineBuilds > 0) {
+            checkRegressions(build, logger, reportMap);
+        }
+        try {
+            BaselineStore.get(build.getProject()).saveForBuild(build, reportMap);
+        } catch (IOException e) {
+            logger.println("Performance: Unable to keep the baseline with the build: " + e.getMessage());
+        }
+        // only successful builds make up the baseline, so a regression does not become the new normal
+        if (build.getResult() == Result.SUCCESS) {
+            try {
+                BaselineStore.get(build.getProject()).record(build, reportMap);
+            } catch (IOException e) {
+                logger.println("Performance: Unable to update the baseline: " + e.getMessage());
+            }
+        }
         return true;
     }
 
-    private List<File> copyReportsToMaster(AbstractBuild<?, ?> build, PrintStream logger, List<FilePath> files, String parserDisplayName)
+    /**
+     * Compares the results with the baseline builds, and sets the configured result if any test got slower.
+     */
+    private void checkRegressions(AbstractBuild<?, ?> build, PrintStream logger,
+                                  SlingPerformanceReportMap reportMap) {
+        RegressionGate gate = new RegressionGate(baselineBuilds, relativeThreshold, absoluteThreshold, significance);
+        List<RegressionGate.Regression> regressions = gate.check(build, reportMap);
+        if (regressions.isEmpty()) {
+            logger.println("Performance: No regressions compared with the last " + baselineBuilds
+                    + " successful builds");
+            return;
+        }
+        Result result = Result.fromString(regressionResult);
+        logger.println("Performance: " + regressions.size() + " regressions compared with the last "
+                + baselineBuilds + " successful builds. Setting Build to " + result);
+        for (RegressionGate.Regression regression : regressions) {
+            logger.println("Performance:   " + regression);
+        }
+        build.setResult(result);
+    }
+
+    /**
+     * Copies the reports to the build and parses them on the controller.
+     *
+     * @return the parsed reports, or <code>null</code> if no report files were found
+     */
+    private Collection<PerformanceReport> parseOnMaster(AbstractBuild<?, ?> build, BuildListener listener,
+                                                        GenericReportParser parser)
+            throws IOException, InterruptedException {
+        List<File> localReports = copyReportsToMaster(build, listener, parser, null);
+        if (localReports == null) {
+            return null;
+        }
+        return ParallelReportParser.parse(parser, build, localReports, listener);
+    }
+
+    /**
+     * Parses the reports where the workspace lives, and copies the raw reports to the build only if they should be
+     * archived.
+     *
+     * @return the parsed reports, or <code>null</code> if no report files were found
+     */
+    private Collection<PerformanceReport> parseOnAgent(AbstractBuild<?, ?> build, BuildListener listener,
+                                                       GenericReportParser parser)
             throws IOException, InterruptedException {
-        List<File> localReports = new ArrayList<File>();
-        for (FilePath src : files) {
-            final File localReport = getPerformanceReport(build, parserDisplayName, src.getName());
-            if (src.isDirectory()) {
-                logger.println("Performance: File '" + src.getName()
-                        + "' is a directory, not a Performance Report");
-                continue;
+        FilePath workspace = build.getWorkspace();
+        RemoteReportParser.Result result = workspace.act(new RemoteReportParser(parser, listener));
+        if (result == null) {
+            return null;
+        }
+        if (archiveRawReports && !result.getPaths().isEmpty()) {
+            copyReportsToMaster(build, listener, parser, result.getPaths());
+        }
+        return result.getReports();
+    }
+
+    /**
+     * Copies the report files of a parser to the build, as a single compressed tar stream sent by the node the
+     * workspace lives on.
+     *
+     * @param paths the workspace relative paths of the report files, or <code>null</code> to locate them by the
+     *              parser's glob
+     * @return the copied reports, or <code>null</code> if no report files were found
+     */
+    private List<File> copyReportsToMaster(AbstractBuild<?, ?> build, BuildListener listener,
+                                           GenericReportParser parser, List<String> paths)
+            throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        try {
+            return receiveReports(build, listener, parser, paths);
+        } finally {
+            PluginMetrics.get().time(PluginMetrics.COPY_REPORTS, start);
+        }
+    }
+
+    private List<File> receiveReports(AbstractBuild<?, ?> build, BuildListener listener,
+                                      GenericReportParser parser, List<String> paths)
+            throws IOException, InterruptedException {
+        String parserDisplayName = parser.getDescriptor().getDisplayName();
+        Pipe pipe = Pipe.createRemoteToLocal();
+        Future<List<String>> sent = build.getWorkspace().actAsync(
+                new RemoteReportArchiver(parser.glob, paths, listener, pipe.getOut()));
+        // reports with the same name in different directories overwrite each other, like before
+        Set<File> localReports = new LinkedHashSet<File>();
+        String message = "Unable to copy the " + parser.getReportName() + " reports from the workspace";
+        boolean received = false;
+        try {
+            TarInputStream tar = new TarInputStream(new GZIPInputStream(pipe.getIn()));
+            try {
+                TarEntry entry;
+                while ((entry = tar.getNextEntry()) != null) {
+                    String name = checkReportFileName(entry.getName());
+                    localReports.add(copyToBuild(tar, getPerformanceReport(build, parserDisplayName, name)));
+                }
+            } finally {
+                tar.close();
+            }
+            List<String> archived = sent.get();
+            received = true;
+            if (archived == null) {
+                return null;
+            }
+        } catch (ExecutionException e) {
+            throw new IOException(message, e.getCause());
+        } catch (IOException e) {
+            // a failure on the agent breaks the stream; it tells more than the broken stream
+            Throwable failure = getFailure(sent);
+            throw new IOException(message, failure != null ? failure : e);
+        } finally {
+            if (!received) {
+                sent.cancel(true);
+            }
+        }
+        return new ArrayList<File>(localReports);
+    }
+
+    /**
+     * Checks the name of a report file sent by the agent, which must not lead out of the directory of the parser.
+     *
+     * @return the name
+     */
+    static String checkReportFileName(String name) throws IOException {
+        if (name.length() == 0 || name.equals(".") || name.equals("..") || name.indexOf('/') >= 0
+                || name.indexOf('\\') >= 0) {
+            throw new IOException("Invalid report file name from the workspace: " + name);
+        }
+        return name;
+    }
+
+    /**
+     * @return the exception the agent side failed with, or <code>null</code> if it did not fail or is still running
+     *         after a short wait
+     */
+    private static Throwable getFailure(Future<?> sent) throws InterruptedException {
+        try {
+            sent.get(FAILURE_WAIT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            return e.getCause();
+        } catch (TimeoutException e) {
+            // the stream broke for another reason
+        }
+        return null;
+    }
+
+    /**
+     * Writes a report to the build, gzip compressed if configured.
+     *
+     * @return the written file
+     */
+    private File copyToBuild(InputStream in, File localReport) throws IOException {
+        boolean compress = compressRawReports
+                && !localReport.getName().endsWith(GenericReportParser.COMPRESSED_SUFFIX);
+        if (compress) {
+            localReport = new File(localReport.getParentFile(),
+                    localReport.getName() + GenericReportParser.COMPRESSED_SUFFIX);
+        }
+        localReport.getParentFile().mkdirs();
+        OutputStream out = new FileOutputStream(localReport);
+        try {
+            if (compress) {
+                out = new GZIPOutputStream(out, 64 * 1024);
             }
-            src.copyTo(new FilePath(localReport));
-            localReports.add(localReport);
+            PluginMetrics.get().count(PluginMetrics.BYTES_COPIED, IOUtils.copyLarge(in, out));
+        } finally {
+            out.close();
         }
-        return localReports;
+        return localReport;
     }
 
     public Object readResolve() {
         // data format migration
         if (parsers == null)
             parsers = new ArrayList<GenericReportParser>();
+        if (significance <= 0) {
+            significance = DEFAULT_SIGNIFICANCE;
+        }
+        if (relativeThreshold == null) {
+            relativeThreshold = DEFAULT_RELATIVE_THRESHOLD;
+        }
+        if (regressionResult == null) {
+            regressionResult = Result.UNSTABLE.toString();
+        }
     /*if (filename != null) {
       parsers.add(new SlingPerformanceParser(filename));
       filename = null;
@@ -10,14 +10,19 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.StringTokenizer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import hudson.model.AbstractBuild;
 import hudson.model.ModelObject;
 import hudson.model.TaskListener;
+import hudson.util.StreamTaskListener;
 import net.dulvac.slingperformanceplugin.parsers.GenericReportParser;
 import net.dulvac.slingperformanceplugin.parsers.SlingTextFormatReportParser;
 import net.dulvac.slingperformanceplugin.reports.PerformanceReport;
@@ -39,8 +44,27 @@ public class SlingPerformanceReportMap implements ModelObject {
      * Test names are arbitrary human-readable and URL-safe string that identifies an individual report.
      */
     private Map<String, PerformanceReport> performanceReportMap = new LinkedHashMap<String, PerformanceReport>();
+
+    /**
+     * The same reports keyed by {@link PerformanceReport#getTestId()}, created when first asked for.
+     */
+    private transient Map<Integer, PerformanceReport> reportsByTestId;
+
+    /**
+     * Whether the reports are only loaded when asked for, see {@link #createLazy}.
+     */
+    private transient boolean lazy;
+
+    /**
+     * The baselines kept with the build, keyed by test id, read when first asked for; see
+     * {@link BaselineStore#saveForBuild}.
+     */
+    private transient Map<Integer, BaselineStore.Baseline> buildBaselines;
+    private transient boolean buildBaselinesRead;
     private static final String PERFORMANCE_REPORTS_DIRECTORY = "performance-reports";
 
+    private static final Logger LOGGER = Logger.getLogger(SlingPerformanceReportMap.class.getName());
+
     private static AbstractBuild<?, ?> currentBuild = null;
 
     public boolean isMergeSamples() {
@@ -53,6 +77,13 @@ public class SlingPerformanceReportMap implements ModelObject {
 
     private boolean mergeSamples = true;
 
+    /**
+     * Creates an empty {@link SlingPerformanceReportMap}, to be filled with already parsed reports.
+     */
+    SlingPerformanceReportMap(final PerformanceBuildAction buildAction) {
+        this.buildAction = buildAction;
+    }
+
     /**
      * Parses the reports and build a {@link SlingPerformanceReportMap}.
      *
@@ -60,44 +91,133 @@ public class SlingPerformanceReportMap implements ModelObject {
      */
     SlingPerformanceReportMap(final PerformanceBuildAction buildAction, TaskListener listener, int Id)
             throws IOException {
+        this(buildAction, listener, Id, null);
+    }
+
+    /**
+     * Parses the reports of one report file, or of all files if <code>filename</code> is <code>null</code>.
+     *
+     * @throws IOException If a report fails to parse.
+     */
+    private SlingPerformanceReportMap(final PerformanceBuildAction buildAction, TaskListener listener, int Id,
+            String filename) throws IOException {
 
         this.buildAction = buildAction;
         parseReports(getBuild(), listener, new PerformanceReportCollector() {
 
             public void addAll(Collection<PerformanceReport> reports, boolean shouldMergeSamples, int Id) {
-                final String REGEX = ".* \\[\\d{5}\\]";
-                for (PerformanceReport r : reports) {
-                    r.setBuildAction(buildAction);
-                    String reportName = r.getReportName();
-                    PerformanceReport report = performanceReportMap.get(reportName);
-                    if (null != report) {
-                        // merge datasets from the two samples in a single report
-                        if (shouldMergeSamples) {
-                            // the report is multi-sample, add the sample
-                            report.setMultipleSampleReport(true);
-                            SlingReportSample newSample = r.getReportSample();
-                            newSample.setSampleId(Id);
-                            report.addSample(r.getReportSample());
-                        // create unique key for each report (change report name)
-                        } else {
-                            if (reportName.matches(REGEX)) {
-                                int number = Integer.parseInt(
-                                        reportName.substring(reportName.length() - 6, reportName.length() - 1));
-                                number++;
-                                reportName =
-                                        reportName.substring(0, reportName.length() - 7) + String.format("[%05d]", number);
-                            } else {
-                                reportName += " [00001]";
-                            }
-                            r.setReportName(reportName);
-                            performanceReportMap.put(reportName, r);
-                        }
+                mergeReports(reports, shouldMergeSamples, Id);
+            }
+        }, filename, Id);
+        identifyTests();
+    }
+
+    /**
+     * Creates a report map that loads single reports, or the reports of a single report file, when they are asked
+     * for, read from the table of contents of the build's snapshot. All reports are only loaded when the whole map is
+     * asked for. It serves the pages of a build whose report map is not loaded, which often show a single report.
+     */
+    static SlingPerformanceReportMap createLazy(PerformanceBuildAction buildAction) {
+        SlingPerformanceReportMap reportMap = new SlingPerformanceReportMap(buildAction);
+        reportMap.lazy = true;
+        return reportMap;
+    }
+
+    /**
+     * Loads the report map of a build from its binary snapshot. Builds recorded before snapshots existed, or with a
+     * snapshot in an older format, fall back to parsing the archived reports; the snapshot is then written so the
+     * next load is fast.
+     */
+    static SlingPerformanceReportMap load(PerformanceBuildAction buildAction, TaskListener listener, int Id)
+            throws IOException {
+        long start = System.nanoTime();
+        try {
+            return loadReportMap(buildAction, listener, Id);
+        } finally {
+            PluginMetrics.get().time(PluginMetrics.LOAD_REPORT_MAP, start);
+        }
+    }
+
+    private static SlingPerformanceReportMap loadReportMap(PerformanceBuildAction buildAction, TaskListener listener,
+                                                           int Id) throws IOException {
+        File snapshot = ReportSnapshot.getSnapshotFile(buildAction.getBuild());
+        try {
+            List<PerformanceReport> reports = ReportSnapshot.read(snapshot);
+            if (reports != null) {
+                SlingPerformanceReportMap reportMap = new SlingPerformanceReportMap(buildAction);
+                reportMap.addAll(reports);
+                reportMap.identifyTests();
+                return reportMap;
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unreadable performance report snapshot " + snapshot + ", parsing reports", e);
+        }
+
+        SlingPerformanceReportMap reportMap = new SlingPerformanceReportMap(buildAction, listener, Id);
+        PluginMetrics.get().count(PluginMetrics.REPORT_MAPS_PARSED, 1);
+        try {
+            reportMap.saveSnapshot();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to write performance report snapshot " + snapshot, e);
+        }
+        return reportMap;
+    }
+
+    /**
+     * Writes the binary snapshot of this report map to the build directory.
+     */
+    void saveSnapshot() throws IOException {
+        ReportSnapshot.write(ReportSnapshot.getSnapshotFile(getBuild()), performanceReportMap.values());
+    }
+
+    /**
+     * Adds freshly parsed reports, merging samples of reports with the same name like the parsing constructor does.
+     */
+    void addReports(Collection<PerformanceReport> reports, int Id) {
+        mergeReports(reports, this.mergeSamples, Id);
+        identifyTests();
+    }
+
+    /**
+     * Gives every report the id of its test in the {@link TestDictionary} of the project.
+     */
+    private void identifyTests() {
+        TestDictionary.get(getBuild().getProject()).identifyAll(performanceReportMap.values());
+        reportsByTestId = null;
+    }
+
+    private void mergeReports(Collection<PerformanceReport> reports, boolean shouldMergeSamples, int Id) {
+        final String REGEX = ".* \\[\\d{5}\\]";
+        for (PerformanceReport r : reports) {
+            r.setBuildAction(buildAction);
+            String reportName = r.getReportName();
+            PerformanceReport report = performanceReportMap.get(reportName);
+            if (null != report) {
+                // merge datasets from the two samples in a single report
+                if (shouldMergeSamples) {
+                    // the report is multi-sample, add the sample
+                    report.setMultipleSampleReport(true);
+                    SlingReportSample newSample = r.getReportSample();
+                    newSample.setSampleId(Id);
+                    report.addSample(r.getReportSample());
+                // create unique key for each report (change report name)
+                } else {
+                    if (reportName.matches(REGEX)) {
+                        int number = Integer.parseInt(
+                                reportName.substring(reportName.length() - 6, reportName.length() - 1));
+                        number++;
+                        reportName =
+                                reportName.substring(0, reportName.length() - 7) + String.format("[%05d]", number);
                     } else {
-                        performanceReportMap.put(reportName, r);
+                        reportName += " [00001]";
                     }
+                    r.setReportName(reportName);
+                    performanceReportMap.put(reportName, r);
                 }
+            } else {
+                performanceReportMap.put(reportName, r);
             }
-        }, null, Id);
+        }
     }
 
     private void addAll(Collection<PerformanceReport> reports) {
@@ -127,6 +247,11 @@ public class SlingPerformanceReportMap implements ModelObject {
     }
 
     public Map<String, PerformanceReport> getPerformanceReportMap() {
+        if (lazy) {
+            SlingPerformanceReportMap reportMap = buildAction.getPerformanceReportMap();
+            return reportMap == null ? new LinkedHashMap<String, PerformanceReport>()
+                    : reportMap.getPerformanceReportMap();
+        }
         return performanceReportMap;
     }
 
@@ -134,9 +259,38 @@ public class SlingPerformanceReportMap implements ModelObject {
      * <p> Give the Performance report with the parameter for name in Bean </p>
      */
     public PerformanceReport getPerformanceReport(String performanceReportName) {
+        if (lazy) {
+            synchronized (this) {
+                // reports loaded before are kept, since pages ask for the same report several times
+                if (!performanceReportMap.containsKey(performanceReportName)) {
+                    List<PerformanceReport> reports = loadReports(performanceReportName, null);
+                    performanceReportMap.put(performanceReportName, reports.isEmpty() ? null : reports.get(0));
+                }
+                return performanceReportMap.get(performanceReportName);
+            }
+        }
         return performanceReportMap.get(performanceReportName);
     }
 
+    /**
+     * @return the report of the test with the given {@link TestDictionary} id, or <code>null</code>
+     */
+    public PerformanceReport getPerformanceReport(int testId) {
+        if (lazy) {
+            SlingPerformanceReportMap reportMap = buildAction.getPerformanceReportMap();
+            return reportMap == null ? null : reportMap.getPerformanceReport(testId);
+        }
+        Map<Integer, PerformanceReport> reports = reportsByTestId;
+        if (reports == null) {
+            reports = new HashMap<Integer, PerformanceReport>();
+            for (PerformanceReport report : performanceReportMap.values()) {
+                reports.put(report.getTestId(), report);
+            }
+            reportsByTestId = reports;
+        }
+        return reports.get(testId);
+    }
+
     /**
      * Get a URI report within a Performance report file
      *
@@ -154,8 +308,11 @@ public class SlingPerformanceReportMap implements ModelObject {
             }
             StringTokenizer st = new StringTokenizer(uriReportDecoded,
                     GraphConfigurationDetail.SEPARATOR);
-            return getPerformanceReportMap().get(st.nextToken()).getUriReportMap().get(
-                    st.nextToken());
+            if (st.countTokens() < 2) {
+                return null;
+            }
+            PerformanceReport report = getPerformanceReport(st.nextToken());
+            return report == null ? null : report.getUriReportMap().get(st.nextToken());
         } else {
             return null;
         }
@@ -172,6 +329,7 @@ public class SlingPerformanceReportMap implements ModelObject {
     public void setPerformanceReportMap(
             Map<String, PerformanceReport> performanceReportMap) {
         this.performanceReportMap = performanceReportMap;
+        this.reportsByTestId = null;
     }
 
     public static String getPerformanceReportFileRelativePath(
@@ -221,6 +379,61 @@ public class SlingPerformanceReportMap implements ModelObject {
         return getPerformanceReport(performanceReportName).get90Percentile();
     }
 
+    /**
+     * @return the given percentile of the report in milliseconds, with up to three decimals
+     */
+    public String formatPercentile(PerformanceReport report, double percentile) {
+        return String.format(Locale.ENGLISH, "%.3f", report.getPercentile(percentile)).replaceAll("\\.?0+$", "");
+    }
+
+    /**
+     * Returns the baseline the report was published against. Builds published before baselines were kept with the
+     * build use the current baseline of the project, as long as it does not include the build or later builds yet.
+     *
+     * @return the baseline of the report's test, or <code>null</code> if there is none
+     */
+    public synchronized BaselineStore.Baseline getBaseline(PerformanceReport report) {
+        if (!buildBaselinesRead) {
+            buildBaselines = BaselineStore.readBaselines(BaselineStore.getBuildFile(getBuild()),
+                    TestDictionary.get(getBuild().getProject()));
+            buildBaselinesRead = true;
+        }
+        if (buildBaselines != null) {
+            return buildBaselines.get(report.getTestId());
+        }
+        BaselineStore store = BaselineStore.getIfExists(getBuild().getProject());
+        if (store == null || store.getLastBuild() >= getBuild().number) {
+            return null;
+        }
+        return store.getBaseline(report.getTestId());
+    }
+
+    /**
+     * Describes how a value of the report differs from the baseline, like <code>+12 ms (+8.5%) against 141 &plusmn; 6
+     * ms</code>.
+     *
+     * @param metric <code>MEDIAN</code> or <code>NINENTY_PERCENT</code>
+     * @return the difference, or an empty string if the test has no baseline
+     */
+    public String getBaselineDiff(PerformanceReport report, String metric) {
+        BaselineStore.Baseline baseline = getBaseline(report);
+        if (baseline == null) {
+            return "";
+        }
+        DataFilter filter = DataFilter.valueOf(metric);
+        long value = filter == DataFilter.MEDIAN ? report.getMedian() : report.get90Percentile();
+        double mean = baseline.getMean(filter);
+        double diff = value - mean;
+        StringBuilder sb = new StringBuilder();
+        sb.append(diff >= 0 ? "+" : "").append(Math.round(diff)).append(" ms");
+        if (mean > 0) {
+            sb.append(String.format(Locale.ENGLISH, " (%+.1f%%)", diff * 100 / mean));
+        }
+        sb.append(" against ").append(Math.round(mean)).append(" \u00b1 ")
+                .append(Math.round(baseline.getStandardDeviation(filter))).append(" ms");
+        return sb.toString();
+    }
+
     private void parseReports(AbstractBuild<?, ?> build, TaskListener listener, PerformanceReportCollector collector,
             final String filename, int Id) throws IOException {
         File repo = new File(build.getRootDir(),
@@ -230,12 +443,14 @@ public class SlingPerformanceReportMap implements ModelObject {
         File[] files = repo.listFiles(new FileFilter() {
 
             public boolean accept(File f) {
-                return !f.isDirectory();
+                return !f.isDirectory() && isReportFile(f.getName(), filename);
             }
         });
         // this may fail, if the build itself failed, we need to recover gracefully
         if (files != null) {
-            addAll(new SlingTextFormatReportParser("").parse(build, Arrays.asList(files), listener));
+            List<PerformanceReport> reports = ParallelReportParser.parse(new SlingTextFormatReportParser(""), build,
+                    Arrays.asList(files), listener);
+            addAll(reports);
         }
 
         // otherwise subdirectory name designates the parser ID.
@@ -247,27 +462,101 @@ public class SlingPerformanceReportMap implements ModelObject {
         });
         // this may fail, if the build itself failed, we need to recover gracefully
         if (dirs != null) {
+            Arrays.sort(dirs);
             for (File dir : dirs) {
                 GenericReportParser p = buildAction.getParserByDisplayName(dir.getName());
                 if (p != null) {
                     File[] listFiles = dir.listFiles(new FilenameFilter() {
                         public boolean accept(File dir, String name) {
-                            if (filename == null) {
-                                return true;
-                            }
-                            if (name.equals(filename)) {
-                                return true;
-                            }
-                            return false;
+                            return isReportFile(name, filename);
                         }
                     });
-                    collector.addAll(p.parse(build, Arrays.asList(listFiles), listener), this.mergeSamples, Id);
+                    // the directory may be gone, or not readable
+                    if (listFiles != null) {
+                        List<PerformanceReport> reports =
+                                ParallelReportParser.parse(p, build, Arrays.asList(listFiles), listener);
+                        collector.addAll(reports, this.mergeSamples, Id);
+                    }
                 }
             }
         }
     }
 
+    /**
+     * @return whether the file of the given name holds the reports of the given report file name, or any reports if
+     *         the report file name is <code>null</code>
+     */
+    private static boolean isReportFile(String name, String filename) {
+        if (filename == null) {
+            return true;
+        }
+        if (name.equals(filename)
+                || name.equals(filename + GenericReportParser.COMPRESSED_SUFFIX)) {
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Loads the reports of a lazy report map with the given name or from the given report file. They are read from
+     * the table of contents of the snapshot. Builds without a snapshot parse the reports of a report file from that
+     * file alone, and take a single report from the whole report map.
+     */
+    private List<PerformanceReport> loadReports(String reportName, String reportFileName) {
+        SlingPerformanceReportMap loaded = ReportMapCache.get().get(getBuild());
+        if (loaded == null) {
+            List<PerformanceReport> reports = readSnapshotReports(reportName, reportFileName);
+            if (reports != null) {
+                for (PerformanceReport report : reports) {
+                    report.setBuildAction(buildAction);
+                }
+                TestDictionary.get(getBuild().getProject()).identifyAll(reports);
+                return reports;
+            }
+            if (reportName == null) {
+                try {
+                    loaded = new SlingPerformanceReportMap(buildAction, new StreamTaskListener(System.err),
+                            buildAction.getId(), reportFileName);
+                } catch (IOException e) {
+                    LOGGER.log(Level.SEVERE, "Error parsing the performance reports of " + reportFileName, e);
+                    return new ArrayList<PerformanceReport>();
+                }
+            } else {
+                loaded = buildAction.getPerformanceReportMap();
+                if (loaded == null) {
+                    return new ArrayList<PerformanceReport>();
+                }
+            }
+        }
+        List<PerformanceReport> reports = new ArrayList<PerformanceReport>();
+        for (PerformanceReport report : loaded.performanceReportMap.values()) {
+            if ((reportName == null || reportName.equals(report.getReportName()))
+                    && (reportFileName == null || reportFileName.equals(report.getReportFileName()))) {
+                reports.add(report);
+            }
+        }
+        return reports;
+    }
+
+    /**
+     * @return the reports read from the snapshot, or <code>null</code> if it is missing or in another format version
+     */
+    private List<PerformanceReport> readSnapshotReports(String reportName, String reportFileName) {
+        File snapshot = ReportSnapshot.getSnapshotFile(getBuild());
+        try {
+            return ReportSnapshot.read(snapshot, reportName, reportFileName);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unreadable performance report snapshot " + snapshot, e);
+            return null;
+        }
+    }
+
     public List<PerformanceReport> getPerformanceReportsByFilename(String performanceReportFileName) {
+        if (lazy) {
+            List<PerformanceReport> reports = loadReports(null, performanceReportFileName);
+            Collections.sort(reports);
+            return reports;
+        }
         ArrayList<PerformanceReport> performanceList = new ArrayList<PerformanceReport>();
         for (PerformanceReport report : this.getPerformanceListOrdered()) {
             if (report.getReportFileName().equals(performanceReportFileName)) {
@@ -1,5 +1,7 @@
 package net.dulvac.slingperformanceplugin;
 
+import net.dulvac.slingperformanceplugin.stats.LatencyHistogram;
+
 import java.util.Date;
 
 /**
@@ -19,6 +21,11 @@ public class SlingReportSample implements Comparable<SlingReportSample> {
     private String testClass = "";
     private String testCase = "";
 	private String testSuite = "";
+    /**
+     * Latencies of the test in microseconds, for reports parsed from raw timings; <code>null</code> for reports with
+     * only the aggregated values.
+     */
+    private LatencyHistogram histogram;
 
     public int getSampleId() {
         return sampleId;
@@ -121,6 +128,39 @@ public class SlingReportSample implements Comparable<SlingReportSample> {
     	this.date = time;
     }
 
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+
+    public void setHistogram(LatencyHistogram histogram) {
+        this.histogram = histogram;
+    }
+
+    /**
+     * Returns the latency below which the given percentage of the test's iterations lie, in milliseconds. Without a
+     * histogram, the value is interpolated linearly between min, 10%, median, 90% and max, so tail percentiles are
+     * only rough estimates.
+     *
+     * @param percentile between 0 and 100
+     */
+    public double getPercentile(double percentile) {
+        if (histogram != null && histogram.getCount() > 0) {
+            return histogram.getValueAtPercentile(percentile) / 1000.0;
+        }
+        double[] percentiles = { 0, 10, 50, 90, 100 };
+        long[] values = { min, percentile10, median, percentile90, max };
+        if (percentile <= 0) {
+            return min;
+        }
+        for (int i = 1; i < percentiles.length; i++) {
+            if (percentile <= percentiles[i]) {
+                double fraction = (percentile - percentiles[i - 1]) / (percentiles[i] - percentiles[i - 1]);
+                return values[i - 1] + fraction * (values[i] - values[i - 1]);
+            }
+        }
+        return max;
+    }
+
     public int compareTo(SlingReportSample o) {
     	return (int) (getMedian() - o.getMedian());
     }
@@ -0,0 +1,309 @@
+package net.dulvac.slingperformanceplugin;
+
+import hudson.model.AbstractProject;
+import net.dulvac.slingperformanceplugin.reports.PerformanceReport;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Append-only, per-project dictionary that gives every distinct test a stable integer id.
+ *
+ * <p> Reports and trend data refer to tests by id instead of by their long names, and reports of all builds share
+ * the names kept here. The configurations of a matrix project share the dictionary of the matrix project, so the same
+ * test has the same id in every configuration. </p>
+ *
+ * <p> Every dictionary file has a random token. Data stored with ids, like the {@link TrendIndex}, records the token
+ * and is rebuilt when the dictionary had to be recreated and the ids changed. </p>
+ */
+public final class TestDictionary {
+
+    public static final String DICTIONARY_FILE_NAME = "performance-tests.dict";
+
+    private static final Logger LOGGER = Logger.getLogger(TestDictionary.class.getName());
+
+    private static final int MAGIC = 0x53505444;
+    private static final int VERSION = 1;
+
+    /**
+     * Bytes before the first test: magic, version and token.
+     */
+    private static final int HEADER_SIZE = 4 + 4 + 8;
+
+    private static final byte RECORD_TEST = 1;
+
+    private static final ConcurrentMap<String, TestDictionary> DICTIONARIES =
+            new ConcurrentHashMap<String, TestDictionary>();
+
+    private final File file;
+    private long token;
+
+    private final List<TestIdentifier> identifiers = new ArrayList<TestIdentifier>();
+    private final Map<TestIdentifier, TestIdentifier> byTest = new HashMap<TestIdentifier, TestIdentifier>();
+    private final Map<String, TestIdentifier> byName = new HashMap<String, TestIdentifier>();
+
+    TestDictionary(File file) {
+        this.file = file;
+    }
+
+    public static File getDictionaryFile(AbstractProject<?, ?> project) {
+        return new File(project.getRootProject().getRootDir(), DICTIONARY_FILE_NAME);
+    }
+
+    public static TestDictionary get(AbstractProject<?, ?> project) {
+        return get(getDictionaryFile(project));
+    }
+
+    static TestDictionary get(File file) {
+        TestDictionary dictionary = DICTIONARIES.get(file.getPath());
+        if (dictionary != null) {
+            return dictionary;
+        }
+        dictionary = new TestDictionary(file);
+        // other threads wait on the lock until the dictionary is loaded
+        synchronized (dictionary) {
+            TestDictionary existing = DICTIONARIES.putIfAbsent(file.getPath(), dictionary);
+            if (existing != null) {
+                return existing;
+            }
+            if (!file.isFile() || !dictionary.load()) {
+                dictionary.create();
+            }
+        }
+        return dictionary;
+    }
+
+    /**
+     * @return the token of the dictionary file, which changes whenever the ids may have changed
+     */
+    public synchronized long getToken() {
+        return token;
+    }
+
+    public synchronized int size() {
+        return identifiers.size();
+    }
+
+    /**
+     * @return the test with the given id, or <code>null</code> if there is none
+     */
+    public synchronized TestIdentifier get(int id) {
+        return id >= 0 && id < identifiers.size() ? identifiers.get(id) : null;
+    }
+
+    /**
+     * @return the test with the given report name, or <code>null</code> if there is none
+     */
+    public synchronized TestIdentifier get(String name) {
+        return name == null ? null : byName.get(name);
+    }
+
+    /**
+     * @return the id of the test with the given report name, or -1 if there is none
+     */
+    public int getId(String name) {
+        TestIdentifier test = get(name);
+        return test == null ? -1 : test.getId();
+    }
+
+    /**
+     * Returns the identifier of the test of a report, adding it to the dictionary if it is new.
+     *
+     * <p> The test is identified by the report file and the suite, class and case of the report's sample. Reports
+     * that were renamed with a <code>[00001]</code> suffix, because their name was taken, carry the suffix as part
+     * of their test case. Reports whose name is not derived from their sample are identified by their name. </p>
+     */
+    public synchronized TestIdentifier identify(PerformanceReport report) {
+        List<TestIdentifier> added = new ArrayList<TestIdentifier>(1);
+        TestIdentifier test = identify(report, added);
+        append(added);
+        return test;
+    }
+
+    /**
+     * Sets the identifier of the test of every report, like {@link #identify(PerformanceReport)}. The new tests are
+     * written to the file together, once all reports are identified.
+     */
+    public synchronized void identifyAll(Collection<PerformanceReport> reports) {
+        List<TestIdentifier> added = new ArrayList<TestIdentifier>();
+        for (PerformanceReport report : reports) {
+            report.setTestIdentifier(identify(report, added));
+        }
+        append(added);
+    }
+
+    /**
+     * @param added the tests added to the dictionary, which still have to be written to the file
+     */
+    private TestIdentifier identify(PerformanceReport report, List<TestIdentifier> added) {
+        String name = report.getReportName() == null ? "" : report.getReportName();
+        String fileName = report.getReportFileName();
+        SlingReportSample sample = report.getReportSample();
+        TestIdentifier key;
+        if (sample != null && sample.getTestName() != null && name.startsWith(sample.getTestName())) {
+            String suffix = name.substring(sample.getTestName().length());
+            String testCase = suffix.length() == 0 ? sample.getTestCase() : sample.getTestCase() + suffix;
+            key = new TestIdentifier(-1, name, fileName, sample.getTestSuite(), sample.getTestClass(), testCase);
+        } else {
+            key = new TestIdentifier(-1, name, fileName, null, null, name);
+        }
+        TestIdentifier test = byTest.get(key);
+        if (test != null) {
+            return test;
+        }
+        test = new TestIdentifier(identifiers.size(), name, fileName, key.getTestSuite(), key.getTestClass(),
+                key.getTestCase());
+        add(test);
+        added.add(test);
+        return test;
+    }
+
+    /**
+     * Appends new tests to the file. If the file has no header, because it could not be written before, the whole
+     * dictionary is written instead.
+     */
+    private void append(List<TestIdentifier> added) {
+        if (added.isEmpty()) {
+            return;
+        }
+        try {
+            if (file.length() < HEADER_SIZE) {
+                writeAll();
+                return;
+            }
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+            try {
+                for (TestIdentifier test : added) {
+                    writeIdentifier(out, test);
+                }
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            // ids beyond the end of the file are detected by the users of the dictionary
+            LOGGER.log(Level.WARNING, "Unable to write performance test dictionary " + file, e);
+        }
+    }
+
+    private void add(TestIdentifier test) {
+        identifiers.add(test);
+        byTest.put(test, test);
+        if (!byName.containsKey(test.getName())) {
+            byName.put(test.getName(), test);
+        }
+    }
+
+    /**
+     * @return <code>false</code> if the file could not be read and the dictionary has to be recreated
+     */
+    boolean load() {
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            boolean complete = true;
+            try {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    return false;
+                }
+                token = in.readLong();
+                while (true) {
+                    int type = in.read();
+                    if (type < 0) {
+                        break;
+                    }
+                    try {
+                        TestIdentifier test = readIdentifier(in);
+                        if (type != RECORD_TEST || test.getId() != identifiers.size()) {
+                            throw new IOException("Corrupt performance test dictionary " + file);
+                        }
+                        add(test);
+                    } catch (EOFException e) {
+                        complete = false;
+                        break;
+                    }
+                }
+            } finally {
+                in.close();
+            }
+            if (!complete) {
+                // drop the partially written tail, keeping the token since the ids did not change
+                writeAll();
+            }
+            return true;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to read performance test dictionary " + file + ", recreating it", e);
+            identifiers.clear();
+            byTest.clear();
+            byName.clear();
+            return false;
+        }
+    }
+
+    private void create() {
+        token = new Random().nextLong();
+        try {
+            writeAll();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to write performance test dictionary " + file, e);
+        }
+    }
+
+    private void writeAll() throws IOException {
+        AtomicFileOutput output = new AtomicFileOutput(file);
+        try {
+            DataOutputStream out = output.getStream();
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(token);
+            for (TestIdentifier test : identifiers) {
+                writeIdentifier(out, test);
+            }
+            output.commit();
+        } finally {
+            output.abort();
+        }
+    }
+
+    private static void writeIdentifier(DataOutputStream out, TestIdentifier test) throws IOException {
+        out.writeByte(RECORD_TEST);
+        out.writeInt(test.getId());
+        out.writeUTF(test.getName());
+        writeString(out, test.getFileName());
+        writeString(out, test.getTestSuite());
+        writeString(out, test.getTestClass());
+        writeString(out, test.getTestCase());
+    }
+
+    private static TestIdentifier readIdentifier(DataInputStream in) throws IOException {
+        int id = in.readInt();
+        String name = in.readUTF();
+        return new TestIdentifier(id, name, readString(in), readString(in), readString(in), readString(in));
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
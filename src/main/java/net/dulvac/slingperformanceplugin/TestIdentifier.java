@@ -0,0 +1,90 @@
+package net.dulvac.slingperformanceplugin;
+
+/**
+ * Identifies a test across the builds of a project: the report file it was recorded in, and its suite, class and
+ * case. The name is the report name shown on the pages, which for Sling reports is composed of the same parts.
+ *
+ * <p> Identifiers are created and numbered by the {@link TestDictionary} of a project. </p>
+ */
+public final class TestIdentifier {
+
+    private final int id;
+    private final String name;
+    private final String fileName;
+    private final String testSuite;
+    private final String testClass;
+    private final String testCase;
+    private final int hash;
+
+    TestIdentifier(int id, String name, String fileName, String testSuite, String testClass, String testCase) {
+        this.id = id;
+        this.name = name;
+        this.fileName = fileName;
+        this.testSuite = testSuite;
+        this.testClass = testClass;
+        this.testCase = testCase;
+        this.hash = hash(fileName, testSuite, testClass, testCase);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public String getTestSuite() {
+        return testSuite;
+    }
+
+    public String getTestClass() {
+        return testClass;
+    }
+
+    public String getTestCase() {
+        return testCase;
+    }
+
+    /**
+     * Identifiers are equal if they have the same file, suite, class and case; the id and name are not compared.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TestIdentifier)) {
+            return false;
+        }
+        TestIdentifier other = (TestIdentifier) o;
+        return hash == other.hash && equal(fileName, other.fileName) && equal(testSuite, other.testSuite)
+                && equal(testClass, other.testClass) && equal(testCase, other.testCase);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return id + ":" + name;
+    }
+
+    private static int hash(String... parts) {
+        int result = 1;
+        for (String part : parts) {
+            result = 31 * result + (part == null ? 0 : part.hashCode());
+        }
+        return result;
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
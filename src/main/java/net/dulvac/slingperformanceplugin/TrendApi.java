@@ -0,0 +1,428 @@
+package net.dulvac.slingperformanceplugin;
+
+import hudson.matrix.MatrixConfiguration;
+import hudson.matrix.MatrixProject;
+import hudson.model.AbstractProject;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Machine-readable trend data of a project, served below <code>performance/api</code>.
+ *
+ * <p> <code>performance/api/trend</code> returns the values of one report across the builds of the project, from the
+ * {@link TrendIndex}. It takes these parameters: </p>
+ * <ul>
+ * <li><code>report</code>: the report name, required</li>
+ * <li><code>format</code>: <code>json</code> (default) or <code>csv</code></li>
+ * <li><code>metrics</code>: comma separated {@link DataFilter} names, all by default</li>
+ * <li><code>from</code>, <code>to</code>: the first and last build number to include</li>
+ * <li><code>points</code>: the maximum number of points per series; longer series are downsampled</li>
+ * <li><code>downsample</code>: <code>lttb</code> (default), which keeps the shape of the series, or
+ * <code>minmax</code>, which keeps the lowest and highest values</li>
+ * </ul>
+ * <p> Matrix projects return one series per active configuration. Downsampling picks points by the median, or by
+ * the first requested metric if the median is not requested. </p>
+ *
+ * <p> <code>performance/api/compare</code> returns the per-test differences between two builds, see
+ * {@link BuildComparison#get(AbstractProject, String, String)}. It takes these parameters: </p>
+ * <ul>
+ * <li><code>build</code>: the compared build, the last build with performance results by default</li>
+ * <li><code>with</code>: the build to compare with, or <code>baseline</code>; the build before by default</li>
+ * <li><code>format</code>: <code>json</code> (default) or <code>csv</code></li>
+ * <li><code>metric</code>, <code>order</code>: sort by the change of this {@link DataFilter}, <code>absolute</code>
+ * (default) or <code>relative</code>; by test id otherwise</li>
+ * </ul>
+ */
+public class TrendApi {
+
+    private final AbstractProject<?, ?> project;
+
+    public TrendApi(AbstractProject<?, ?> project) {
+        this.project = project;
+    }
+
+    public void doTrend(StaplerRequest request, StaplerResponse response) throws IOException {
+        String reportName = request.getParameter("report");
+        if (reportName == null) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Missing parameter: report");
+            return;
+        }
+        List<DataFilter> metrics;
+        int from;
+        int to;
+        int points;
+        try {
+            metrics = parseMetrics(request.getParameter("metrics"));
+            from = parseInt(request.getParameter("from"), Integer.MIN_VALUE);
+            to = parseInt(request.getParameter("to"), Integer.MAX_VALUE);
+            points = parseInt(request.getParameter("points"), 0);
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        }
+        String downsample = request.getParameter("downsample");
+        if (downsample != null && !downsample.equals("lttb") && !downsample.equals("minmax")) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Unknown downsampling: " + downsample);
+            return;
+        }
+        boolean csv = "csv".equals(request.getParameter("format"));
+
+        int testId = TestDictionary.get(project).getId(reportName);
+        DataFilter primary = metrics.contains(DataFilter.MEDIAN) ? DataFilter.MEDIAN : metrics.get(0);
+        List<TrendData> series = new ArrayList<TrendData>();
+        for (AbstractProject<?, ?> p : getProjects()) {
+            TrendData data = TrendData.create(p.getName(), TrendIndex.get(p), testId, from, to);
+            if (points > 0 && data.rows.length > points) {
+                data.downsample(primary, points, "minmax".equals(downsample));
+            }
+            series.add(data);
+        }
+
+        response.setCharacterEncoding("UTF-8");
+        if (csv) {
+            response.setContentType("text/csv;charset=UTF-8");
+            writeCsv(response.getWriter(), metrics, series);
+        } else {
+            response.setContentType("application/json;charset=UTF-8");
+            writeJson(response.getWriter(), reportName, metrics, series);
+        }
+    }
+
+    public void doCompare(StaplerRequest request, StaplerResponse response) throws IOException {
+        BuildComparison comparison;
+        List<BuildComparison.Row> rows;
+        try {
+            comparison = BuildComparison.get(project, request.getParameter("build"), request.getParameter("with"));
+            String metric = request.getParameter("metric");
+            if (metric == null || metric.length() == 0) {
+                rows = comparison.getRows();
+            } else {
+                DataFilter filter = parseMetric(metric);
+                rows = comparison.getRows(filter, "relative".equals(request.getParameter("order")));
+            }
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        }
+
+        response.setCharacterEncoding("UTF-8");
+        if ("csv".equals(request.getParameter("format"))) {
+            response.setContentType("text/csv;charset=UTF-8");
+            writeCsv(response.getWriter(), rows);
+        } else {
+            response.setContentType("application/json;charset=UTF-8");
+            writeJson(response.getWriter(), comparison, rows);
+        }
+    }
+
+    private List<AbstractProject<?, ?>> getProjects() {
+        List<AbstractProject<?, ?>> projects = new ArrayList<AbstractProject<?, ?>>();
+        if (project instanceof MatrixProject) {
+            for (MatrixConfiguration config : ((MatrixProject) project).getActiveConfigurations()) {
+                projects.add(config);
+            }
+        } else {
+            projects.add(project);
+        }
+        return projects;
+    }
+
+    /**
+     * @return the metrics named in a comma separated list, or all metrics if the list is missing or blank
+     * @throws IllegalArgumentException if a name is unknown, or the list has only empty names
+     */
+    static List<DataFilter> parseMetrics(String value) {
+        if (value == null || value.trim().length() == 0) {
+            return Arrays.asList(DataFilter.values());
+        }
+        List<DataFilter> metrics = new ArrayList<DataFilter>();
+        for (String name : value.split(",")) {
+            name = name.trim();
+            if (name.length() == 0) {
+                continue;
+            }
+            try {
+                DataFilter metric = DataFilter.valueOf(name.toUpperCase(Locale.ENGLISH));
+                if (!metrics.contains(metric)) {
+                    metrics.add(metric);
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown metric: " + name);
+            }
+        }
+        if (metrics.isEmpty()) {
+            throw new IllegalArgumentException("No metrics: " + value);
+        }
+        return metrics;
+    }
+
+    /**
+     * @return the single metric named by the parameter
+     * @throws IllegalArgumentException if the parameter does not name exactly one known metric
+     */
+    static DataFilter parseMetric(String value) {
+        List<DataFilter> metrics = parseMetrics(value);
+        if (metrics.size() != 1) {
+            throw new IllegalArgumentException("Expected a single metric: " + value);
+        }
+        return metrics.get(0);
+    }
+
+    private static int parseInt(String value, int defaultValue) {
+        if (value == null || value.length() == 0) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number: " + value);
+        }
+    }
+
+    private static void writeJson(PrintWriter out, String reportName, List<DataFilter> metrics,
+                                  List<TrendData> series) {
+        out.print("{\"report\":");
+        writeJsonString(out, reportName);
+        out.print(",\"metrics\":[");
+        for (int m = 0; m < metrics.size(); m++) {
+            out.print(m == 0 ? "\"" : ",\"");
+            out.print(metrics.get(m).name());
+            out.print('"');
+        }
+        out.print("],\"series\":[");
+        for (int s = 0; s < series.size(); s++) {
+            TrendData data = series.get(s);
+            out.print(s == 0 ? "{\"name\":" : ",{\"name\":");
+            writeJsonString(out, data.name);
+            out.print(",\"builds\":[");
+            for (int i = 0; i < data.rows.length; i++) {
+                if (i > 0) {
+                    out.print(',');
+                }
+                out.print(data.series.getBuildNumber(data.rows[i]));
+            }
+            out.print("],\"timestamps\":[");
+            for (int i = 0; i < data.rows.length; i++) {
+                if (i > 0) {
+                    out.print(',');
+                }
+                out.print(data.timestamps[i]);
+            }
+            out.print(']');
+            for (DataFilter metric : metrics) {
+                out.print(",\"");
+                out.print(metric.name());
+                out.print("\":[");
+                for (int i = 0; i < data.rows.length; i++) {
+                    if (i > 0) {
+                        out.print(',');
+                    }
+                    out.print(data.series.getValue(metric, data.rows[i]));
+                }
+                out.print(']');
+            }
+            out.print('}');
+        }
+        out.print("]}");
+        out.flush();
+    }
+
+    private static void writeJsonString(PrintWriter out, String value) {
+        out.print('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.print('\\');
+                out.print(c);
+            } else if (c < 0x20) {
+                out.print(String.format("\\u%04x", (int) c));
+            } else {
+                out.print(c);
+            }
+        }
+        out.print('"');
+    }
+
+    private static void writeCsv(PrintWriter out, List<DataFilter> metrics, List<TrendData> series) {
+        out.print("series,build,timestamp");
+        for (DataFilter metric : metrics) {
+            out.print(',');
+            out.print(metric.name());
+        }
+        out.print("\r\n");
+        for (TrendData data : series) {
+            String name = data.name.replace("\"", "\"\"");
+            for (int i = 0; i < data.rows.length; i++) {
+                out.print('"');
+                out.print(name);
+                out.print("\",");
+                out.print(data.series.getBuildNumber(data.rows[i]));
+                out.print(',');
+                out.print(data.timestamps[i]);
+                for (DataFilter metric : metrics) {
+                    out.print(',');
+                    out.print(data.series.getValue(metric, data.rows[i]));
+                }
+                out.print("\r\n");
+            }
+        }
+        out.flush();
+    }
+
+    private static void writeJson(PrintWriter out, BuildComparison comparison, List<BuildComparison.Row> rows) {
+        out.print("{\"base\":");
+        writeJsonString(out, comparison.getBaseName());
+        out.print(",\"target\":");
+        writeJsonString(out, comparison.getTargetName());
+        out.print(",\"tests\":[");
+        for (int r = 0; r < rows.size(); r++) {
+            BuildComparison.Row row = rows.get(r);
+            out.print(r == 0 ? "{\"id\":" : ",{\"id\":");
+            out.print(row.getTestId());
+            out.print(",\"name\":");
+            writeJsonString(out, row.getName());
+            out.print(",\"file\":");
+            writeJsonString(out, row.getFileName() == null ? "" : row.getFileName());
+            for (DataFilter metric : BuildComparison.METRICS) {
+                out.print(",\"");
+                out.print(metric.name());
+                out.print("\":{\"base\":");
+                writeJsonNumber(out, row.getBase(metric));
+                out.print(",\"target\":");
+                writeJsonNumber(out, row.getTarget(metric));
+                out.print(",\"delta\":");
+                writeJsonNumber(out, row.getDelta(metric));
+                out.print(",\"relativeDelta\":");
+                writeJsonNumber(out, row.getRelativeDelta(metric));
+                out.print('}');
+            }
+            out.print('}');
+        }
+        out.print("]}");
+        out.flush();
+    }
+
+    private static void writeJsonNumber(PrintWriter out, double value) {
+        if (Double.isNaN(value)) {
+            out.print("null");
+        } else if (value == Math.rint(value)) {
+            out.print((long) value);
+        } else {
+            out.print(String.format(Locale.ENGLISH, "%.3f", value));
+        }
+    }
+
+    private static void writeCsv(PrintWriter out, List<BuildComparison.Row> rows) {
+        out.print("id,test,file");
+        for (DataFilter metric : BuildComparison.METRICS) {
+            out.print(',');
+            out.print(metric.name());
+            out.print("_base,");
+            out.print(metric.name());
+            out.print("_target,");
+            out.print(metric.name());
+            out.print("_delta,");
+            out.print(metric.name());
+            out.print("_relative_delta");
+        }
+        out.print("\r\n");
+        for (BuildComparison.Row row : rows) {
+            out.print(row.getTestId());
+            out.print(",\"");
+            out.print(row.getName().replace("\"", "\"\""));
+            out.print("\",\"");
+            out.print(row.getFileName() == null ? "" : row.getFileName().replace("\"", "\"\""));
+            out.print('"');
+            for (DataFilter metric : BuildComparison.METRICS) {
+                writeCsvNumber(out, row.getBase(metric));
+                writeCsvNumber(out, row.getTarget(metric));
+                writeCsvNumber(out, row.getDelta(metric));
+                writeCsvNumber(out, row.getRelativeDelta(metric));
+            }
+            out.print("\r\n");
+        }
+        out.flush();
+    }
+
+    private static void writeCsvNumber(PrintWriter out, double value) {
+        out.print(',');
+        if (!Double.isNaN(value)) {
+            out.print(value == Math.rint(value) ? String.valueOf((long) value)
+                    : String.format(Locale.ENGLISH, "%.3f", value));
+        }
+    }
+
+    /**
+     * The rows of a series within the requested builds, with the timestamps of their builds.
+     */
+    private static final class TrendData {
+
+        final String name;
+        final TrendIndex.Series series;
+        int[] rows;
+        long[] timestamps;
+
+        private TrendData(String name, TrendIndex.Series series, int[] rows, long[] timestamps) {
+            this.name = name;
+            this.series = series;
+            this.rows = rows;
+            this.timestamps = timestamps;
+        }
+
+        static TrendData create(String name, TrendIndex trendIndex, int testId, int from, int to) {
+            TrendIndex.Series series = trendIndex.getSeries(testId);
+            List<TrendIndex.BuildEntry> builds = trendIndex.getBuilds();
+            if (series == null) {
+                return new TrendData(name, null, new int[0], new long[0]);
+            }
+            // builds are listed newest first
+            int[] buildNumbers = new int[builds.size()];
+            long[] buildTimestamps = new long[builds.size()];
+            for (int i = 0; i < builds.size(); i++) {
+                TrendIndex.BuildEntry build = builds.get(builds.size() - 1 - i);
+                buildNumbers[i] = build.getNumber();
+                buildTimestamps[i] = build.getTimestamp();
+            }
+            int[] rows = new int[series.size()];
+            long[] timestamps = new long[series.size()];
+            int count = 0;
+            for (int row = 0; row < series.size(); row++) {
+                int buildNumber = series.getBuildNumber(row);
+                if (buildNumber < from || buildNumber > to) {
+                    continue;
+                }
+                int build = Arrays.binarySearch(buildNumbers, buildNumber);
+                rows[count] = row;
+                timestamps[count] = build < 0 ? 0 : buildTimestamps[build];
+                count++;
+            }
+            return new TrendData(name, series, Arrays.copyOf(rows, count), Arrays.copyOf(timestamps, count));
+        }
+
+        void downsample(DataFilter metric, int points, boolean minMax) {
+            double[] x = new double[rows.length];
+            double[] y = new double[rows.length];
+            for (int i = 0; i < rows.length; i++) {
+                x[i] = rows[i];
+                y[i] = series.getValue(metric, rows[i]);
+            }
+            int[] selected = minMax ? Downsampling.minMax(y, points) : Downsampling.lttb(x, y, points);
+            int[] selectedRows = new int[selected.length];
+            long[] selectedTimestamps = new long[selected.length];
+            for (int i = 0; i < selected.length; i++) {
+                selectedRows[i] = rows[selected[i]];
+                selectedTimestamps[i] = timestamps[selected[i]];
+            }
+            rows = selectedRows;
+            timestamps = selectedTimestamps;
+        }
+    }
+}
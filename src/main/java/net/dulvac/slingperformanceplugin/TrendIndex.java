@@ -0,0 +1,636 @@
+package net.dulvac.slingperformanceplugin;
+
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import net.dulvac.slingperformanceplugin.reports.PerformanceReport;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Append-only, per-project index of the trend values of every report, keyed by test id, metric and build number.
+ *
+ * <p> The publisher appends the values of each build when it completes, so the trend graphs can be drawn from this
+ * index alone instead of loading the report map of every historical build. The file is read once per project and kept
+ * in memory as one primitive column per metric. </p>
+ *
+ * <p> The file consists of a header followed by records: the values of one build, or the deletion of a build. Reports
+ * are referred to by their id in the {@link TestDictionary} of the project; the header records the token of that
+ * dictionary, and the index is rebuilt if the dictionary was recreated since. </p>
+ *
+ * <p> A project without an index, like a project recorded before the index existed, gets its index built from the
+ * report maps of its builds on a background thread, newest build first, one project at a time. Until then the index
+ * holds the builds added so far, so the trend graphs fill up while it is built, and loading a report map never blocks
+ * the readers of the index. The index is only written once it holds all builds. </p>
+ */
+public final class TrendIndex {
+
+    public static final String INDEX_FILE_NAME = "performance-trend.idx";
+
+    private static final Logger LOGGER = Logger.getLogger(TrendIndex.class.getName());
+
+    private static final int MAGIC = 0x53504654;
+    private static final int VERSION = 1;
+
+    private static final byte RECORD_BUILD = 1;
+    private static final byte RECORD_DELETE = 2;
+
+    /**
+     * Order of the metric columns in the file and in {@link Series}.
+     */
+    private static final DataFilter[] METRICS = {
+            DataFilter.MIN, DataFilter.TEN_PERCENT, DataFilter.MEDIAN, DataFilter.NINENTY_PERCENT, DataFilter.MAX };
+
+    private static final ConcurrentMap<String, TrendIndex> INDEXES = new ConcurrentHashMap<String, TrendIndex>();
+
+    private static final ThreadPoolExecutor BUILDER = createBuilder();
+
+    private final File file;
+    private final TestDictionary dictionary;
+
+    /**
+     * Values of each report, indexed by test id; <code>null</code> for tests this project never recorded.
+     */
+    private final List<Series> series = new ArrayList<Series>();
+
+    /**
+     * Timestamps of the indexed builds, keyed by build number.
+     */
+    private final TreeMap<Integer, Long> builds = new TreeMap<Integer, Long>();
+
+    private int deletedBuilds;
+
+    /**
+     * Whether the index holds all builds of the project; <code>false</code> while it is built.
+     */
+    private boolean complete = true;
+
+    /**
+     * Builds deleted while the index is built, so they are not added afterwards.
+     */
+    private final Set<Integer> deletedWhileBuilding = new HashSet<Integer>();
+
+    TrendIndex(File file, TestDictionary dictionary) {
+        this.file = file;
+        this.dictionary = dictionary;
+    }
+
+    private static ThreadPoolExecutor createBuilder() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new NamingThreadFactory(new DaemonThreadFactory(), "Performance trend index builder"));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    public static File getIndexFile(AbstractProject<?, ?> project) {
+        return new File(project.getRootDir(), INDEX_FILE_NAME);
+    }
+
+    /**
+     * Returns the trend index of a project. When the project has no index yet, it starts being built from the report
+     * maps of the existing builds, see {@link #isComplete()}.
+     */
+    public static TrendIndex get(AbstractProject<?, ?> project) {
+        File file = getIndexFile(project);
+        TrendIndex index = INDEXES.get(file.getPath());
+        if (index != null) {
+            return index;
+        }
+        index = new TrendIndex(file, TestDictionary.get(project));
+        // hold the lock while publishing, so nobody uses the index before it is loaded
+        synchronized (index) {
+            TrendIndex existing = INDEXES.putIfAbsent(file.getPath(), index);
+            if (existing != null) {
+                return existing;
+            }
+            if (!file.isFile() || !index.load()) {
+                index.clear();
+                index.startBuilding(project);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Returns the trend index of a project only if it has one, without building it.
+     */
+    static TrendIndex getIfExists(AbstractProject<?, ?> project) {
+        File file = getIndexFile(project);
+        if (!INDEXES.containsKey(file.getPath()) && !file.isFile()) {
+            return null;
+        }
+        return get(project);
+    }
+
+    /**
+     * Appends the values of a build. Builds that are already indexed are ignored.
+     */
+    public void record(AbstractBuild<?, ?> build, SlingPerformanceReportMap reportMap) throws IOException {
+        record(build.number, build.getTimeInMillis(), reportMap.getPerformanceReportMap().values());
+    }
+
+    synchronized void record(int buildNumber, long timestamp, Collection<PerformanceReport> reports)
+            throws IOException {
+        if (builds.containsKey(buildNumber)) {
+            return;
+        }
+        if (!complete) {
+            // written with all builds once the index is built
+            add(buildNumber, timestamp, reports);
+            return;
+        }
+        DataOutputStream out = openForAppend();
+        try {
+            append(out, buildNumber, timestamp, reports);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Drops a deleted build from the index.
+     */
+    public synchronized void remove(int buildNumber) throws IOException {
+        if (!complete) {
+            deletedWhileBuilding.add(buildNumber);
+        }
+        if (builds.remove(buildNumber) == null) {
+            return;
+        }
+        removeBuild(buildNumber);
+        if (!complete) {
+            return;
+        }
+        deletedBuilds++;
+        if (deletedBuilds > builds.size()) {
+            // mostly tombstones by now, rewrite the file without them
+            writeAll();
+            return;
+        }
+        DataOutputStream out = openForAppend();
+        try {
+            out.writeByte(RECORD_DELETE);
+            out.writeInt(buildNumber);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * @return the indexed builds, newest first like {@link AbstractProject#getBuilds()}
+     */
+    public synchronized List<BuildEntry> getBuilds() {
+        List<BuildEntry> result = new ArrayList<BuildEntry>(builds.size());
+        for (Map.Entry<Integer, Long> entry : builds.descendingMap().entrySet()) {
+            result.add(new BuildEntry(entry.getKey(), entry.getValue()));
+        }
+        return result;
+    }
+
+    /**
+     * @return a copy of the values of a test across all indexed builds, or <code>null</code> if the test has no values
+     */
+    public synchronized Series getSeries(int testId) {
+        if (testId < 0 || testId >= series.size() || series.get(testId) == null) {
+            return null;
+        }
+        return series.get(testId).copy();
+    }
+
+    /**
+     * @return whether the index holds all builds of the project, as opposed to being built from their report maps
+     */
+    public synchronized boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Adds the indexed builds and reports to a newly created {@link ReportCatalog}.
+     *
+     * @return whether the index held all builds of the project
+     */
+    synchronized boolean collectReports(ReportCatalog catalog) {
+        for (Integer buildNumber : builds.keySet()) {
+            catalog.addBuild(buildNumber);
+        }
+        for (int id = 0; id < series.size(); id++) {
+            int buildCount = series.get(id) == null ? 0 : series.get(id).size();
+            if (buildCount > 0) {
+                TestIdentifier test = dictionary.get(id);
+                catalog.add(test.getFileName() == null ? "" : test.getFileName(), test.getName(), buildCount);
+            }
+        }
+        return complete;
+    }
+
+    /**
+     * Removes the reports of an indexed build from a {@link ReportCatalog}.
+     */
+    synchronized void removeReports(int buildNumber, ReportCatalog catalog) {
+        for (int id = 0; id < series.size(); id++) {
+            if (series.get(id) != null && series.get(id).indexOf(buildNumber) >= 0) {
+                TestIdentifier test = dictionary.get(id);
+                catalog.add(test.getFileName() == null ? "" : test.getFileName(), test.getName(), -1);
+            }
+        }
+    }
+
+    private void startBuilding(final AbstractProject<?, ?> project) {
+        complete = false;
+        BUILDER.execute(new Runnable() {
+            public void run() {
+                build(project);
+            }
+        });
+    }
+
+    /**
+     * Adds the builds of the project, newest first. The index is only locked to add a build, since loading a report
+     * map may parse the reports of the build.
+     */
+    private void build(AbstractProject<?, ?> project) {
+        long start = System.currentTimeMillis();
+        int added = 0;
+        try {
+            for (AbstractBuild<?, ?> build : project.getBuilds()) {
+                PerformanceBuildAction action = build.getAction(PerformanceBuildAction.class);
+                if (action == null || isIndexed(build.number)) {
+                    continue;
+                }
+                SlingPerformanceReportMap reportMap = action.getPerformanceReportMap();
+                if (reportMap != null) {
+                    synchronized (this) {
+                        if (!builds.containsKey(build.number) && !deletedWhileBuilding.contains(build.number)) {
+                            add(build.number, build.getTimeInMillis(), reportMap.getPerformanceReportMap().values());
+                            added++;
+                        }
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            // nothing is written, so it is built again after the next controller start
+            LOGGER.log(Level.WARNING, "Unable to build performance trend index " + file, e);
+            return;
+        }
+        synchronized (this) {
+            complete = true;
+            deletedWhileBuilding.clear();
+            try {
+                writeAll();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Unable to write performance trend index " + file, e);
+            }
+        }
+        LOGGER.log(Level.INFO, "Built performance trend index {0} from {1} builds in {2} ms",
+                new Object[]{file, added, System.currentTimeMillis() - start});
+    }
+
+    private synchronized boolean isIndexed(int buildNumber) {
+        return builds.containsKey(buildNumber);
+    }
+
+    /**
+     * @return <code>false</code> if the file could not be read and the index has to be rebuilt
+     */
+    boolean load() {
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            boolean complete;
+            try {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readLong() != dictionary.getToken()) {
+                    return false;
+                }
+                complete = readRecords(in);
+            } finally {
+                in.close();
+            }
+            if (!complete) {
+                // drop the partially written tail
+                writeAll();
+            }
+            return true;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to read performance trend index " + file + ", rebuilding it", e);
+            return false;
+        }
+    }
+
+    private void clear() {
+        series.clear();
+        builds.clear();
+        deletedBuilds = 0;
+    }
+
+    /**
+     * @return <code>false</code> if the file ends with a truncated record
+     */
+    private boolean readRecords(DataInputStream in) throws IOException {
+        while (true) {
+            int type = in.read();
+            if (type < 0) {
+                return true;
+            }
+            try {
+                if (type == RECORD_BUILD) {
+                    int buildNumber = in.readInt();
+                    long timestamp = in.readLong();
+                    int rowCount = in.readInt();
+                    int[] ids = new int[rowCount];
+                    long[][] rows = new long[rowCount][METRICS.length];
+                    for (int i = 0; i < rowCount; i++) {
+                        ids[i] = in.readInt();
+                        if (ids[i] < 0 || ids[i] >= dictionary.size()) {
+                            throw new IOException("Unknown test in performance trend index " + file);
+                        }
+                        for (int m = 0; m < METRICS.length; m++) {
+                            rows[i][m] = in.readLong();
+                        }
+                    }
+                    builds.put(buildNumber, timestamp);
+                    for (int i = 0; i < rowCount; i++) {
+                        getOrCreateSeries(ids[i]).add(buildNumber, rows[i]);
+                    }
+                } else if (type == RECORD_DELETE) {
+                    int buildNumber = in.readInt();
+                    if (builds.remove(buildNumber) != null) {
+                        removeBuild(buildNumber);
+                    }
+                    deletedBuilds++;
+                } else {
+                    throw new IOException("Corrupt performance trend index " + file);
+                }
+            } catch (EOFException e) {
+                return false;
+            }
+        }
+    }
+
+    private Series getOrCreateSeries(int testId) {
+        while (series.size() <= testId) {
+            series.add(null);
+        }
+        Series s = series.get(testId);
+        if (s == null) {
+            s = new Series();
+            series.set(testId, s);
+        }
+        return s;
+    }
+
+    private void removeBuild(int buildNumber) {
+        for (Series s : series) {
+            if (s != null) {
+                s.removeBuild(buildNumber);
+            }
+        }
+    }
+
+    /**
+     * Adds the values of a build in memory and writes the matching records, if a stream is given.
+     */
+    private void append(DataOutputStream out, int buildNumber, long timestamp, Collection<PerformanceReport> reports)
+            throws IOException {
+        List<long[]> rows = new ArrayList<long[]>();
+        List<Integer> ids = new ArrayList<Integer>();
+        for (PerformanceReport report : reports) {
+            int id = report.getTestId();
+            if (id < 0) {
+                id = dictionary.identify(report).getId();
+            }
+            ids.add(id);
+            rows.add(new long[] { report.getMin(), report.get10Percentile(), report.getMedian(),
+                    report.get90Percentile(), report.getMax() });
+        }
+        builds.put(buildNumber, timestamp);
+        for (int i = 0; i < rows.size(); i++) {
+            getOrCreateSeries(ids.get(i)).add(buildNumber, rows.get(i));
+        }
+        if (out != null) {
+            writeBuild(out, buildNumber, timestamp, ids, rows);
+        }
+    }
+
+    private void add(int buildNumber, long timestamp, Collection<PerformanceReport> reports) {
+        try {
+            append(null, buildNumber, timestamp, reports);
+        } catch (IOException e) {
+            // nothing is written without a stream
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void writeBuild(DataOutputStream out, int buildNumber, long timestamp, List<Integer> ids,
+            List<long[]> rows) throws IOException {
+        out.writeByte(RECORD_BUILD);
+        out.writeInt(buildNumber);
+        out.writeLong(timestamp);
+        out.writeInt(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            out.writeInt(ids.get(i));
+            for (long value : rows.get(i)) {
+                out.writeLong(value);
+            }
+        }
+    }
+
+    private DataOutputStream openForAppend() throws IOException {
+        boolean exists = file.isFile();
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+        if (!exists) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(dictionary.getToken());
+        }
+        return out;
+    }
+
+    /**
+     * Rewrites the whole index from memory.
+     */
+    private void writeAll() throws IOException {
+        AtomicFileOutput output = new AtomicFileOutput(file);
+        try {
+            DataOutputStream out = output.getStream();
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(dictionary.getToken());
+            for (Map.Entry<Integer, Long> build : builds.entrySet()) {
+                List<Integer> ids = new ArrayList<Integer>();
+                List<long[]> rows = new ArrayList<long[]>();
+                for (int id = 0; id < series.size(); id++) {
+                    long[] row = series.get(id) == null ? null : series.get(id).getRow(build.getKey());
+                    if (row != null) {
+                        ids.add(id);
+                        rows.add(row);
+                    }
+                }
+                writeBuild(out, build.getKey(), build.getValue(), ids, rows);
+            }
+            output.commit();
+        } finally {
+            output.abort();
+        }
+        deletedBuilds = 0;
+    }
+
+    /**
+     * A build known to the index.
+     */
+    public static final class BuildEntry {
+
+        private final int number;
+        private final long timestamp;
+
+        BuildEntry(int number, long timestamp) {
+            this.number = number;
+            this.timestamp = timestamp;
+        }
+
+        public int getNumber() {
+            return number;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+    }
+
+    /**
+     * The values of one report, one row per build, ordered by build number. The rows of multi-sample reports hold the
+     * values of all samples taken together.
+     */
+    public static final class Series {
+
+        private int size;
+        private int[] buildNumbers;
+        private final long[][] values = new long[METRICS.length][];
+
+        Series() {
+            this(8);
+        }
+
+        private Series(int capacity) {
+            buildNumbers = new int[capacity];
+            for (int m = 0; m < METRICS.length; m++) {
+                values[m] = new long[capacity];
+            }
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public int getBuildNumber(int row) {
+            return buildNumbers[row];
+        }
+
+        public long getValue(DataFilter metric, int row) {
+            return values[column(metric)][row];
+        }
+
+        /**
+         * @return the row of the given build, or -1 if the build has no values for this report
+         */
+        public int indexOf(int buildNumber) {
+            int row = Arrays.binarySearch(buildNumbers, 0, size, buildNumber);
+            return row < 0 ? -1 : row;
+        }
+
+        void add(int buildNumber, long[] row) {
+            if (size == buildNumbers.length) {
+                int capacity = size * 2;
+                buildNumbers = Arrays.copyOf(buildNumbers, capacity);
+                for (int m = 0; m < METRICS.length; m++) {
+                    values[m] = Arrays.copyOf(values[m], capacity);
+                }
+            }
+            // builds usually complete in order, so this is almost always an append
+            int position = size;
+            while (position > 0 && buildNumbers[position - 1] > buildNumber) {
+                position--;
+            }
+            if (position < size) {
+                System.arraycopy(buildNumbers, position, buildNumbers, position + 1, size - position);
+                for (int m = 0; m < METRICS.length; m++) {
+                    System.arraycopy(values[m], position, values[m], position + 1, size - position);
+                }
+            }
+            buildNumbers[position] = buildNumber;
+            for (int m = 0; m < METRICS.length; m++) {
+                values[m][position] = row[m];
+            }
+            size++;
+        }
+
+        void removeBuild(int buildNumber) {
+            int row = indexOf(buildNumber);
+            if (row < 0) {
+                return;
+            }
+            System.arraycopy(buildNumbers, row + 1, buildNumbers, row, size - row - 1);
+            for (int m = 0; m < METRICS.length; m++) {
+                System.arraycopy(values[m], row + 1, values[m], row, size - row - 1);
+            }
+            size--;
+        }
+
+        /**
+         * @return the values of the given build, or <code>null</code> if the build has no values for this report
+         */
+        long[] getRow(int buildNumber) {
+            int row = indexOf(buildNumber);
+            if (row < 0) {
+                return null;
+            }
+            long[] rowValues = new long[METRICS.length];
+            for (int m = 0; m < METRICS.length; m++) {
+                rowValues[m] = values[m][row];
+            }
+            return rowValues;
+        }
+
+        Series copy() {
+            Series copy = new Series(Math.max(size, 1));
+            System.arraycopy(buildNumbers, 0, copy.buildNumbers, 0, size);
+            for (int m = 0; m < METRICS.length; m++) {
+                System.arraycopy(values[m], 0, copy.values[m], 0, size);
+            }
+            copy.size = size;
+            return copy;
+        }
+
+        private static int column(DataFilter metric) {
+            for (int m = 0; m < METRICS.length; m++) {
+                if (METRICS[m] == metric) {
+                    return m;
+                }
+            }
+            throw new IllegalArgumentException("Unknown metric " + metric);
+        }
+    }
+}
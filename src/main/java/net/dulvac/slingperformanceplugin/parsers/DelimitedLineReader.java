@@ -0,0 +1,91 @@
+package net.dulvac.slingperformanceplugin.parsers;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Reads delimiter separated lines from a character stream.
+ *
+ * <p> The reader keeps the current line in its own buffer, which grows if a single line does not fit. </p>
+ */
+final class DelimitedLineReader extends DelimitedLines {
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final Reader reader;
+
+    private char[] buffer = new char[DEFAULT_BUFFER_SIZE];
+    /** End of the valid data in the buffer. */
+    private int limit;
+    /** Start of the next line in the buffer. */
+    private int next;
+    private boolean eof;
+
+    DelimitedLineReader(Reader reader, char delimiter) {
+        super(delimiter);
+        this.reader = reader;
+    }
+
+    @Override
+    boolean next() throws IOException {
+        int position = next;
+        while (true) {
+            while (position < limit && buffer[position] != '\n') {
+                position++;
+            }
+            if (position < limit || eof) {
+                break;
+            }
+            // the line continues past the buffered data
+            position -= next;
+            fill();
+            position += next;
+        }
+        if (position == next && position == limit) {
+            return false;
+        }
+        int lineStart = next;
+        int lineEnd = position;
+        if (lineEnd > lineStart && buffer[lineEnd - 1] == '\r') {
+            lineEnd--;
+        }
+        next = position < limit ? position + 1 : position;
+        setLine(lineStart, lineEnd);
+        return true;
+    }
+
+    @Override
+    int charAt(int position) {
+        return buffer[position];
+    }
+
+    @Override
+    String text(int start, int end) {
+        return new String(buffer, start, end - start);
+    }
+
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * Moves the unread data to the front of the buffer, growing it if a single line fills it, and reads more.
+     */
+    private void fill() throws IOException {
+        int remaining = limit - next;
+        if (next > 0) {
+            System.arraycopy(buffer, next, buffer, 0, remaining);
+        } else if (remaining == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        next = 0;
+        limit = remaining;
+        int read = reader.read(buffer, limit, buffer.length - limit);
+        if (read < 0) {
+            eof = true;
+        } else {
+            limit += read;
+        }
+    }
+}
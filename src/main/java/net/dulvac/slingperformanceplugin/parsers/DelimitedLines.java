@@ -0,0 +1,296 @@
+package net.dulvac.slingperformanceplugin.parsers;
+
+import hudson.Functions;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Delimiter separated lines of a report file, read one line at a time without creating a string per line or per
+ * cell.
+ *
+ * <p> Implementations keep the current line in a buffer, and this class only records where each cell starts and ends.
+ * Cells are trimmed like {@link String#trim()}, and only turned into strings or numbers when asked for. As with
+ * <code>String.split</code>, empty trailing cells are not counted. </p>
+ */
+abstract class DelimitedLines implements Closeable {
+
+    /**
+     * Files of at least this size are memory-mapped instead of read, 16 MB by default.
+     */
+    static final long MAP_THRESHOLD =
+            Long.getLong(DelimitedLines.class.getName() + ".mapThreshold", 16L * 1024 * 1024);
+
+    private final char delimiter;
+
+    private int lineStart;
+    private int lineEnd;
+    private int lineNumber;
+
+    private int cellCount;
+    private int[] cellStarts = new int[16];
+    private int[] cellEnds = new int[16];
+
+    DelimitedLines(char delimiter) {
+        this.delimiter = delimiter;
+    }
+
+    /**
+     * Whether files may be mapped. Windows keeps mapped files locked until the mapping is released, so they are only
+     * mapped there if the mapping can be released when the file is closed.
+     */
+    private static final boolean MAP_FILES = MappedLineReader.canUnmap() || !Functions.isWindows();
+
+    /**
+     * Opens a report file. Compressed files are decompressed while reading. Large files are memory-mapped and scanned
+     * as bytes, if the platform charset, which report files are read with, encodes the delimiters as single ASCII
+     * bytes, and the mapping can be released on Windows.
+     */
+    static DelimitedLines open(File file, char delimiter) throws IOException {
+        if (file.getName().endsWith(GenericReportParser.COMPRESSED_SUFFIX)) {
+            FileInputStream in = new FileInputStream(file);
+            try {
+                return new DelimitedLineReader(new InputStreamReader(new GZIPInputStream(in, 64 * 1024)), delimiter);
+            } catch (IOException e) {
+                in.close();
+                throw e;
+            }
+        }
+        long length = file.length();
+        if (MAP_FILES && length >= MAP_THRESHOLD && length <= Integer.MAX_VALUE
+                && MappedLineReader.isAsciiCompatible(Charset.defaultCharset(), delimiter)) {
+            FileInputStream in = new FileInputStream(file);
+            try {
+                FileChannel channel = in.getChannel();
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                return new MappedLineReader(buffer, delimiter, Charset.defaultCharset());
+            } finally {
+                // the mapping stays valid after the channel is closed
+                in.close();
+            }
+        }
+        return new DelimitedLineReader(new FileReader(file), delimiter);
+    }
+
+    /**
+     * Advances to the next line.
+     *
+     * @return <code>false</code> at the end of the file
+     */
+    abstract boolean next() throws IOException;
+
+    /**
+     * @return the character at the given position of the buffer; only positions of the current line are valid
+     */
+    abstract int charAt(int position);
+
+    /**
+     * @return the text between the given positions of the buffer
+     */
+    abstract String text(int start, int end);
+
+    /**
+     * Records the bounds of the new current line, and splits it into cells.
+     */
+    void setLine(int start, int end) {
+        lineStart = start;
+        lineEnd = end;
+        lineNumber++;
+        splitCells();
+    }
+
+    int getLineNumber() {
+        return lineNumber;
+    }
+
+    String getLine() {
+        return text(lineStart, lineEnd);
+    }
+
+    int getCellCount() {
+        return cellCount;
+    }
+
+    /**
+     * @return the trimmed cell
+     */
+    String getCell(int cell) {
+        int start = trimmedStart(cell);
+        return text(start, trimmedEnd(cell, start));
+    }
+
+    /**
+     * Compares the trimmed cell with a string without decoding the cell, if the string is plain ASCII.
+     */
+    boolean cellEquals(int cell, String value) {
+        int start = trimmedStart(cell);
+        int end = trimmedEnd(cell, start);
+        if (end - start != value.length()) {
+            // a non-ASCII value may still match a cell of another length in bytes
+            return !isAscii(value) && getCell(cell).equals(value);
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                return getCell(cell).equals(value);
+            }
+            if (charAt(start + i) != c) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return whether the trimmed cell starts with the given ASCII character
+     */
+    boolean cellStartsWith(int cell, char c) {
+        int start = trimmedStart(cell);
+        return start < trimmedEnd(cell, start) && charAt(start) == c;
+    }
+
+    /**
+     * Parses the trimmed cell as a decimal long, the way {@link Long#parseLong(String)} does.
+     *
+     * @throws NumberFormatException if the cell is not a number
+     */
+    long getLong(int cell) {
+        int start = trimmedStart(cell);
+        int end = trimmedEnd(cell, start);
+        int position = start;
+        boolean negative = false;
+        if (position < end && (charAt(position) == '-' || charAt(position) == '+')) {
+            negative = charAt(position) == '-';
+            position++;
+        }
+        if (position == end) {
+            throw numberFormatException(start, end);
+        }
+        // accumulate negatively, so Long.MIN_VALUE can be parsed too
+        long min = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long result = 0;
+        for (; position < end; position++) {
+            int digit = charAt(position) - '0';
+            if (digit < 0 || digit > 9 || result < min / 10) {
+                throw numberFormatException(start, end);
+            }
+            result *= 10;
+            if (result < min + digit) {
+                throw numberFormatException(start, end);
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    /**
+     * Parses the trimmed cell as a non-negative decimal number with an optional fraction, scaled by 10 to the power
+     * of <code>scale</code>: with a scale of 3, <code>12.3456</code> is read as 12345. Further fraction digits are
+     * dropped.
+     *
+     * @throws NumberFormatException if the cell is not such a number, or too large
+     */
+    long getScaled(int cell, int scale) {
+        int start = trimmedStart(cell);
+        int end = trimmedEnd(cell, start);
+        long result = 0;
+        int fractionDigits = -1;
+        boolean digits = false;
+        for (int position = start; position < end; position++) {
+            int c = charAt(position);
+            if (c == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+                continue;
+            }
+            if (c < '0' || c > '9') {
+                throw numberFormatException(start, end);
+            }
+            digits = true;
+            if (fractionDigits >= 0) {
+                if (fractionDigits == scale) {
+                    continue;
+                }
+                fractionDigits++;
+            }
+            if (result > (Long.MAX_VALUE - (c - '0')) / 10) {
+                throw numberFormatException(start, end);
+            }
+            result = result * 10 + (c - '0');
+        }
+        if (!digits) {
+            throw numberFormatException(start, end);
+        }
+        for (int i = Math.max(fractionDigits, 0); i < scale; i++) {
+            if (result > Long.MAX_VALUE / 10) {
+                throw numberFormatException(start, end);
+            }
+            result *= 10;
+        }
+        return result;
+    }
+
+    private NumberFormatException numberFormatException(int start, int end) {
+        return new NumberFormatException("For input string: \"" + text(start, end) + "\"");
+    }
+
+    private static boolean isAscii(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int trimmedStart(int cell) {
+        int start = cellStarts[cell];
+        int end = cellEnds[cell];
+        while (start < end && charAt(start) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    private int trimmedEnd(int cell, int start) {
+        int end = cellEnds[cell];
+        while (end > start && charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    private void splitCells() {
+        cellCount = 0;
+        int start = lineStart;
+        for (int position = lineStart; position < lineEnd; position++) {
+            if (charAt(position) == delimiter) {
+                addCell(start, position);
+                start = position + 1;
+            }
+        }
+        addCell(start, lineEnd);
+        // drop empty trailing cells, like String.split; a line without any content still has one cell
+        while (cellCount > 1 && cellStarts[cellCount - 1] == cellEnds[cellCount - 1]) {
+            cellCount--;
+        }
+    }
+
+    private void addCell(int start, int end) {
+        if (cellCount == cellStarts.length) {
+            cellStarts = Arrays.copyOf(cellStarts, cellCount * 2);
+            cellEnds = Arrays.copyOf(cellEnds, cellCount * 2);
+        }
+        cellStarts[cellCount] = start;
+        cellEnds[cellCount] = end;
+        cellCount++;
+    }
+}
@@ -11,6 +11,7 @@ import net.dulvac.slingperformanceplugin.reports.PerformanceReport;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.Serializable;
 import java.util.Collection;
 
 /**
@@ -19,10 +20,19 @@ import java.util.Collection;
  *
  * <p>
  * Subtypes can define additional parser-specific parameters as instance fields.
+ * Parsers are sent to the agent when the reports are parsed there, so those fields must be serializable.
  * 
  */
 public abstract class GenericReportParser implements
-    Describable<GenericReportParser>, ExtensionPoint {
+    Describable<GenericReportParser>, ExtensionPoint, Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Suffix of gzip compressed report files, which the parsers read like uncompressed ones.
+   */
+  public static final String COMPRESSED_SUFFIX = ".gz";
+
   /**
    * GLOB patterns that specify the performance report.
    */
@@ -44,6 +54,8 @@ public abstract class GenericReportParser implements
 
   /**
    * Parses the specified reports into {@link PerformanceReport}s.
+   *
+   * @param build the build, or <code>null</code> when the reports are parsed on the agent
    */
   public abstract Collection<PerformanceReport> parse(AbstractBuild<?, ?> build, Collection<File> reports, TaskListener listener)
       throws IOException;
@@ -57,6 +69,17 @@ public abstract class GenericReportParser implements
     return Hudson.getInstance().getExtensionList(GenericReportParser.class);
   }
 
+  /**
+   * @return the name of a report file, without the suffix of a compressed report
+   */
+  public static String getReportFileName(File report) {
+    String name = report.getName();
+    if (name.endsWith(COMPRESSED_SUFFIX)) {
+      return name.substring(0, name.length() - COMPRESSED_SUFFIX.length());
+    }
+    return name;
+  }
+
   public String getReportName() {
     return this.getClass().getName().replaceAll("^.*\\.(\\w+)Parser.*$", "$1");
   }
@@ -0,0 +1,179 @@
+package net.dulvac.slingperformanceplugin.parsers;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reads delimiter separated lines straight from the bytes of a memory-mapped file.
+ *
+ * <p> Delimiters, line ends and numbers are found and parsed in the mapped bytes, so the file is neither copied into
+ * the heap nor decoded as a whole; only the cells asked for as strings are decoded. This requires a charset that
+ * encodes ASCII characters as single bytes of the same value and never uses such bytes within other characters, like
+ * UTF-8 or ISO-8859-1. </p>
+ *
+ * <p> The mapping is released when the reader is closed, through the cleaner of the buffer, since Windows does not
+ * allow deleting a mapped file. Where the JVM does not give access to the cleaner, the mapping is released when the
+ * buffer is garbage collected, and {@link DelimitedLines} does not map files on Windows. </p>
+ */
+final class MappedLineReader extends DelimitedLines {
+
+    private static final Logger LOGGER = Logger.getLogger(MappedLineReader.class.getName());
+
+    /**
+     * <code>sun.misc.Unsafe</code> and its <code>invokeCleaner</code> method, on Java 9 and later.
+     */
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+    /**
+     * <code>sun.nio.ch.DirectBuffer.cleaner()</code> and <code>sun.misc.Cleaner.clean()</code>, before Java 9.
+     */
+    private static final Method CLEANER;
+    private static final Method CLEAN;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+        } catch (Exception e) {
+            invokeCleaner = null;
+        }
+        Method cleaner = null;
+        Method clean = null;
+        if (unsafe == null) {
+            try {
+                cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+                clean = cleaner.getReturnType().getMethod("clean");
+            } catch (Exception e) {
+                cleaner = null;
+            }
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+        CLEANER = cleaner;
+        CLEAN = clean;
+    }
+
+    private final ByteBuffer buffer;
+    private final Charset charset;
+    private final int limit;
+    /** Start of the next line. */
+    private int next;
+    private byte[] scratch = new byte[256];
+    private boolean closed;
+
+    MappedLineReader(ByteBuffer buffer, char delimiter, Charset charset) {
+        super(delimiter);
+        this.buffer = buffer;
+        this.charset = charset;
+        this.limit = buffer.limit();
+    }
+
+    /**
+     * @return whether the charset encodes line ends, the delimiter and numbers as their single ASCII bytes
+     */
+    static boolean isAsciiCompatible(Charset charset, char delimiter) {
+        String sample = "\r\n\t +-.0123456789" + delimiter;
+        byte[] bytes = sample.getBytes(charset);
+        if (bytes.length != sample.length()) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] != sample.charAt(i)) {
+                return false;
+            }
+        }
+        // multi-byte charsets that reuse ASCII byte values within other characters, like Shift_JIS, are left out
+        String name = charset.name();
+        return name.equals("UTF-8") || name.equals("US-ASCII") || name.startsWith("ISO-8859-")
+                || name.startsWith("windows-125");
+    }
+
+    /**
+     * @return whether mapped buffers can be released before they are garbage collected
+     */
+    static boolean canUnmap() {
+        return INVOKE_CLEANER != null || CLEAN != null;
+    }
+
+    /**
+     * Releases the mapping of a buffer. The buffer must not be used afterwards.
+     *
+     * @return whether the mapping was released
+     */
+    static boolean unmap(ByteBuffer buffer) {
+        if (!buffer.isDirect()) {
+            // a heap buffer maps nothing
+            return true;
+        }
+        try {
+            if (INVOKE_CLEANER != null) {
+                INVOKE_CLEANER.invoke(UNSAFE, buffer);
+                return true;
+            }
+            if (CLEAN != null) {
+                Object cleaner = CLEANER.invoke(buffer);
+                if (cleaner != null) {
+                    CLEAN.invoke(cleaner);
+                }
+                return true;
+            }
+        } catch (Exception e) {
+            LOGGER.log(Level.FINE, "Unable to release a mapped report file", e);
+        }
+        return false;
+    }
+
+    @Override
+    boolean next() {
+        if (closed || next >= limit) {
+            return false;
+        }
+        int position = next;
+        while (position < limit && buffer.get(position) != '\n') {
+            position++;
+        }
+        int lineStart = next;
+        int lineEnd = position;
+        if (lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r') {
+            lineEnd--;
+        }
+        next = position < limit ? position + 1 : position;
+        setLine(lineStart, lineEnd);
+        return true;
+    }
+
+    @Override
+    int charAt(int position) {
+        // bytes of non-ASCII characters are above any delimiter, digit or white space
+        return buffer.get(position) & 0xFF;
+    }
+
+    @Override
+    String text(int start, int end) {
+        int length = end - start;
+        if (length > scratch.length) {
+            scratch = Arrays.copyOf(scratch, Math.max(length, scratch.length * 2));
+        }
+        for (int i = 0; i < length; i++) {
+            scratch[i] = buffer.get(start + i);
+        }
+        return new String(scratch, 0, length, charset);
+    }
+
+    public void close() {
+        if (!closed) {
+            closed = true;
+            unmap(buffer);
+        }
+    }
+}
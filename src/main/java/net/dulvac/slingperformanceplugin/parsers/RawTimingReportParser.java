@@ -0,0 +1,163 @@
+package net.dulvac.slingperformanceplugin.parsers;
+
+import hudson.Extension;
+import hudson.model.AbstractBuild;
+import hudson.model.TaskListener;
+import net.dulvac.slingperformanceplugin.PluginMetrics;
+import net.dulvac.slingperformanceplugin.SlingReportSample;
+import net.dulvac.slingperformanceplugin.reports.PerformanceReport;
+import net.dulvac.slingperformanceplugin.stats.LatencyHistogram;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parser for raw timing files, with the duration of every single iteration of a test.
+ *
+ * <p> Every line holds a test name and a duration in milliseconds, separated by a comma, or only a duration, which
+ * belongs to a test named after the file. Durations may have up to three decimals. Empty lines, lines starting with
+ * <code>#</code> and a header line are skipped. </p>
+ *
+ * <p> The durations are streamed into a {@link LatencyHistogram} per test, so files with millions of iterations are
+ * parsed in constant memory, and any percentile of the test can be read from the resulting report. </p>
+ */
+public class RawTimingReportParser extends GenericReportParser {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Durations are recorded in microseconds.
+     */
+    private static final int SCALE = 3;
+
+    @Extension
+    public static final class DescriptorImpl extends PerformanceReportParserDescriptor {
+
+        @Override
+        public String getDisplayName() {
+            return "Raw timing report (one duration per line)";
+        }
+    }
+
+    @DataBoundConstructor
+    public RawTimingReportParser(String glob) {
+        super(glob);
+    }
+
+    @Override
+    public String getDefaultGlobPattern() {
+        return "**/*.timings";
+    }
+
+    @Override
+    public Collection<PerformanceReport> parse(AbstractBuild<?, ?> build, Collection<File> reports,
+                                              TaskListener listener) throws IOException {
+        List<PerformanceReport> result = new ArrayList<PerformanceReport>();
+        PrintStream logger = listener.getLogger();
+        for (File f : reports) {
+            logger.println("Performance: Parsing raw timing report file " + f.getName());
+            DelimitedLines lines = DelimitedLines.open(f, ',');
+            try {
+                parse(getReportFileName(f), lines, result, logger);
+            } finally {
+                lines.close();
+            }
+        }
+        return result;
+    }
+
+    private void parse(String reportFileName, DelimitedLines lines, List<PerformanceReport> result,
+                       PrintStream logger) throws IOException {
+        Map<String, LatencyHistogram> histograms = new LinkedHashMap<String, LatencyHistogram>();
+        LatencyHistogram fileHistogram = null;
+        // the histogram of the last test, since iterations of the same test usually follow each other
+        String lastTest = null;
+        LatencyHistogram lastHistogram = null;
+        long parsed = 0;
+        int failed = 0;
+        while (lines.next()) {
+            int cells = lines.getCellCount();
+            if ((cells == 1 && lines.cellEquals(0, "")) || lines.cellStartsWith(0, '#')) {
+                continue;
+            }
+            long duration;
+            try {
+                duration = lines.getScaled(cells - 1, SCALE);
+            } catch (NumberFormatException e) {
+                if (parsed > 0 || failed > 0) {
+                    failed++;
+                    if (failed <= 10) {
+                        logger.println("Performance: Parsing raw timing line " + lines.getLineNumber()
+                                + " failed. (File: " + reportFileName + ")");
+                    }
+                }
+                // otherwise the header
+                continue;
+            }
+            LatencyHistogram histogram;
+            if (cells == 1) {
+                if (fileHistogram == null) {
+                    fileHistogram = getHistogram(histograms, reportFileName);
+                }
+                histogram = fileHistogram;
+            } else {
+                // only decode the test name when it changes
+                if (lastTest == null || !lines.cellEquals(0, lastTest)) {
+                    lastTest = lines.getCell(0);
+                    lastHistogram = getHistogram(histograms, lastTest);
+                }
+                histogram = lastHistogram;
+            }
+            histogram.record(duration);
+            parsed++;
+        }
+
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            result.add(createReport(reportFileName, entry.getKey(), entry.getValue()));
+        }
+        PluginMetrics.get().count(PluginMetrics.ROWS_PARSED, parsed);
+        PluginMetrics.get().count(PluginMetrics.PARSE_FAILURES, failed);
+        logger.println("Performance: Parsed " + parsed + " timings of " + histograms.size() + " tests from "
+                + reportFileName + (failed > 0 ? ", " + failed + " lines failed" : ""));
+    }
+
+    private static LatencyHistogram getHistogram(Map<String, LatencyHistogram> histograms, String test) {
+        LatencyHistogram histogram = histograms.get(test);
+        if (histogram == null) {
+            histogram = new LatencyHistogram();
+            histograms.put(test, histogram);
+        }
+        return histogram;
+    }
+
+    private static PerformanceReport createReport(String reportFileName, String test, LatencyHistogram histogram) {
+        SlingReportSample sample = new SlingReportSample();
+        sample.setMin(toMillis(histogram.getMin()));
+        sample.set10Percentile(toMillis(histogram.getValueAtPercentile(10)));
+        sample.setMedian(toMillis(histogram.getValueAtPercentile(50)));
+        sample.set90Percentile(toMillis(histogram.getValueAtPercentile(90)));
+        sample.setMax(toMillis(histogram.getMax()));
+        sample.setHistogram(histogram);
+        sample.setTestCase(test);
+        sample.setTestName(reportFileName + " | " + test);
+        sample.setSuccessful(true);
+
+        PerformanceReport report = new PerformanceReport();
+        report.setReportFileName(reportFileName);
+        report.setReportSample(sample);
+        report.addSample(sample);
+        report.setReportName(sample.getTestName());
+        return report;
+    }
+
+    private static long toMillis(long micros) {
+        return Math.round(micros / 1000.0);
+    }
+}
@@ -1,18 +1,19 @@
 package net.dulvac.slingperformanceplugin.parsers;
 
+import net.dulvac.slingperformanceplugin.PluginMetrics;
 import net.dulvac.slingperformanceplugin.SlingReportSample;
 import net.dulvac.slingperformanceplugin.reports.PerformanceReport;
 import org.kohsuke.stapler.DataBoundConstructor;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import hudson.Extension;
 import hudson.model.AbstractBuild;
@@ -73,98 +74,139 @@ public class SlingTextFormatReportParser extends GenericReportParser {
             Collection<File> reports, TaskListener listener) throws IOException {
 
         List<PerformanceReport> result = new ArrayList<PerformanceReport>();
+        PrintStream logger = listener.getLogger();
         for (File f : reports) {
-
-            PrintStream logger = listener.getLogger();
-            BufferedReader fis = new BufferedReader(new FileReader(f));
             logger.println("Performance: Parsing Sling Performance report file " + f.getName());
             logger.println("Report path:" + f.getAbsolutePath());
 
-            boolean firstRow = true;
-            boolean parsingFailed = false;
-            String resultRow;
-            ArrayList<String> columns = new ArrayList<String>();
-
-            // Read results
-            while ((resultRow = fis.readLine()) != null) {
-                if (firstRow) {
-                    if (!resultRow.contains(Columns.TEST_SUITE.toString())) {
-                        parsingFailed = true;
-                        break;
-                    }
-
-                    // get columns
-                    for (String column : Arrays.asList(resultRow.split("\\|"))) {
-                        columns.add(column.trim());
-                    }
+            DelimitedLines lines = DelimitedLines.open(f, '|');
+            try {
+                parse(getReportFileName(f), lines, result, logger);
+            } finally {
+                lines.close();
+            }
+        }
+        return result;
+    }
 
-                    // done parsing header columns
-                    firstRow = false;
-                    continue;
+    /**
+     * Streams the rows of one report file into {@link PerformanceReport}s. Column positions are resolved once from
+     * the header row; the cells of the following rows are only read where a column is needed.
+     */
+    private void parse(String reportFileName, DelimitedLines lines, List<PerformanceReport> result,
+            PrintStream logger) throws IOException {
+        if (!lines.next() || !lines.getLine().contains(Columns.TEST_SUITE.toString())) {
+            return;
+        }
 
+        // get columns
+        int columnCount = lines.getCellCount();
+        int[] positions = new int[Columns.values().length];
+        Arrays.fill(positions, -1);
+        for (int i = columnCount - 1; i >= 0; i--) {
+            String column = lines.getCell(i);
+            for (Columns c : Columns.values()) {
+                if (c.toString().equals(column)) {
+                    // keep the first column with this name
+                    positions[c.ordinal()] = i;
+                }
+            }
+        }
+        int median = positions[Columns.FIFTY_PERCENT.ordinal()];
+        int min = positions[Columns.MIN.ordinal()];
+        int max = positions[Columns.MAX.ordinal()];
+        int tenPercent = positions[Columns.TEN_PERCENT.ordinal()];
+        int ninetyPercent = positions[Columns.NINETY_PERCENT.ordinal()];
+        int testSuite = positions[Columns.TEST_SUITE.ordinal()];
+        int testCase = positions[Columns.TEST_CASE.ordinal()];
+        int testClass = positions[Columns.TEST_CLASS.ordinal()];
+
+        boolean parsingFailed = false;
+        int parsed = 0;
+        int failed = 0;
+        StringBuilder testName = new StringBuilder();
+        // suites and classes repeat on many rows, keep one copy of each
+        Map<String, String> names = new HashMap<String, String>();
+        String lastSuite = null;
+        String lastClass = null;
+
+        // columns parsed, following result lines
+        while (lines.next()) {
+            final PerformanceReport r = new PerformanceReport();
+            r.setReportFileName(reportFileName);
+            SlingReportSample sample = new SlingReportSample();
+
+            if (lines.getCellCount() != columnCount) {
+                sample.setSuccessful(false);
+                parsingFailed = true;
+            } else {
+                if (median >= 0) {
+                    sample.setMedian(lines.getLong(median));
                 }
-                // columns parsed, following result lines
-                // parse results
-                String[] results = resultRow.split("\\|");
-                for (int i = 0; i < results.length; i++) {
-                    results[i] = results[i].trim();
+                if (min >= 0) {
+                    sample.setMin(lines.getLong(min));
+                }
+                if (max >= 0) {
+                    sample.setMax(lines.getLong(max));
+                }
+                if (tenPercent >= 0) {
+                    sample.set10Percentile(lines.getLong(tenPercent));
+                }
+                if (ninetyPercent >= 0) {
+                    sample.set90Percentile(lines.getLong(ninetyPercent));
                 }
 
-                final PerformanceReport r = new PerformanceReport();
-                r.setReportFileName(f.getName());
-                SlingReportSample sample = new SlingReportSample();
-
-                if (results.length != columns.size()) {
-                    sample.setSuccessful(false);
-                    parsingFailed = true;
-                } else {
-                    if (columns.contains(Columns.FIFTY_PERCENT.toString())) {
-                        sample.setMedian(Long.valueOf(results[columns.indexOf(Columns.FIFTY_PERCENT.toString())]));
-                    }
-                    if (columns.contains(Columns.MIN.toString())) {
-                        sample.setMin(Long.valueOf(results[columns.indexOf(Columns.MIN.toString())]));
-                    }
-                    if (columns.contains(Columns.MAX.toString())) {
-                        sample.setMax(Long.valueOf(results[columns.indexOf(Columns.MAX.toString())]));
-                    }
-                    if (columns.contains(Columns.TEN_PERCENT.toString())) {
-                        sample.set10Percentile(Long.valueOf(results[columns.indexOf(Columns.TEN_PERCENT.toString())]));
-                    }
-                    if (columns.contains(Columns.NINETY_PERCENT.toString())) {
-                        sample.set90Percentile(
-                                Long.valueOf(results[columns.indexOf(Columns.NINETY_PERCENT.toString())]));
-                    }
-
-                    // set test suite and test case names
-                    if (columns.contains(Columns.TEST_SUITE.toString())) {
-                        sample.setTestSuite(results[columns.indexOf(Columns.TEST_SUITE.toString())]);
-                    }
-                    if (columns.contains(Columns.TEST_CASE.toString())) {
-                        sample.setTestCase(results[columns.indexOf(Columns.TEST_CASE.toString())]);
-                    }
-                    if (columns.contains(Columns.TEST_CLASS.toString())) {
-                        sample.setTestClass(results[columns.indexOf(Columns.TEST_CLASS.toString())]);
-                    }
-
-                    sample.setTestName(r.getReportFileName() + " | " + sample.getTestSuite() + " | "
-                            + sample.getTestClass() + " | " + sample.getTestCase());
-                    sample.setSuccessful(true);
+                // set test suite and test case names
+                if (testSuite >= 0) {
+                    lastSuite = dedup(names, lines, testSuite, lastSuite);
+                    sample.setTestSuite(lastSuite);
                 }
-                if (!parsingFailed) {
-                    r.setReportSample(sample);
-                    r.addSample(sample);
-                    // set the report name
-                    r.setReportName(sample.getTestName());
-                    result.add(r);
-                    logger.println("Performance: Parsing Sling Performance report " + r.getReportName() +
-                            " succeeded. (File: " + r.getReportFileName() + ")");
-                } else {
-                    r.addSample(sample);
-                    logger.println("Performance: Parsing Sling Performance report " + r.getReportName() +
-                            " failed. (File: " + r.getReportFileName() + ")");
+                if (testCase >= 0) {
+                    sample.setTestCase(lines.getCell(testCase));
                 }
+                if (testClass >= 0) {
+                    lastClass = dedup(names, lines, testClass, lastClass);
+                    sample.setTestClass(lastClass);
+                }
+
+                testName.setLength(0);
+                testName.append(reportFileName).append(" | ").append(sample.getTestSuite()).append(" | ")
+                        .append(sample.getTestClass()).append(" | ").append(sample.getTestCase());
+                sample.setTestName(testName.toString());
+                sample.setSuccessful(true);
+            }
+            if (!parsingFailed) {
+                r.setReportSample(sample);
+                r.addSample(sample);
+                // set the report name
+                r.setReportName(sample.getTestName());
+                result.add(r);
+                parsed++;
+            } else {
+                failed++;
+                logger.println("Performance: Parsing Sling Performance report line " + lines.getLineNumber() +
+                        " failed. (File: " + reportFileName + ")");
             }
         }
-        return result;
+        PluginMetrics.get().count(PluginMetrics.ROWS_PARSED, parsed);
+        PluginMetrics.get().count(PluginMetrics.PARSE_FAILURES, failed);
+        logger.println("Performance: Parsed " + parsed + " Sling Performance reports from " + reportFileName +
+                (failed > 0 ? ", " + failed + " failed" : ""));
+    }
+
+    /**
+     * Returns the name in the given cell, without decoding the cell if it holds the same name as the previous row.
+     */
+    private static String dedup(Map<String, String> names, DelimitedLines lines, int cell, String last) {
+        if (last != null && lines.cellEquals(cell, last)) {
+            return last;
+        }
+        String name = lines.getCell(cell);
+        String existing = names.get(name);
+        if (existing != null) {
+            return existing;
+        }
+        names.put(name, name);
+        return name;
     }
 }
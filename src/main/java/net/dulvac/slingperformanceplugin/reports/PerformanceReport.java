@@ -4,11 +4,16 @@ import hudson.model.AbstractBuild;
 import net.dulvac.slingperformanceplugin.PerformanceBuildAction;
 import net.dulvac.slingperformanceplugin.SlingPerformanceReportMap;
 import net.dulvac.slingperformanceplugin.SlingReportSample;
+import net.dulvac.slingperformanceplugin.TestDictionary;
+import net.dulvac.slingperformanceplugin.TestIdentifier;
 import net.dulvac.slingperformanceplugin.Messages;
+import net.dulvac.slingperformanceplugin.stats.LatencyHistogram;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -24,31 +29,154 @@ public class PerformanceReport extends AbstractReport implements
 
     private PerformanceBuildAction buildAction;
     private SlingReportSample reportSample;
-    private List<SlingReportSample> reportSamples = new ArrayList<SlingReportSample>();
+    /**
+     * The sample of a report with a single sample, which is most reports. Once a second sample is added, all samples
+     * are kept in {@link #sampleColumns} instead.
+     */
+    private SlingReportSample singleSample;
+    private SampleColumns sampleColumns;
+    /**
+     * Iterations of the samples of a multi-sample report that have a histogram, in microseconds.
+     */
+    private LatencyHistogram iterationSketch;
+    private int iterationSamples;
+    /**
+     * Number of samples of a multi-sample report that only have aggregated values.
+     */
+    private int aggregatedSamples;
+    /**
+     * Distribution of all samples of a multi-sample report, in microseconds, computed when first asked for;
+     * <code>null</code> for a report with a single sample, whose own values are exact.
+     */
+    private LatencyHistogram sketch;
+    /**
+     * Min, 10%, median, 90% and max of the sketch in milliseconds, computed when first asked for.
+     */
+    private long[] mergedValues;
     private String reportFileName;
     private String reportName;
+    /**
+     * Id of the test in the {@link TestDictionary} of the project, or -1 if it was not identified yet.
+     */
+    private int testId = -1;
     private boolean multipleSampleReport;
 
     /**
-     * {@link TestRunReport}s keyed by their {@link TestRunReport#getStaplerUri()}.
+     * {@link TestRunReport}s keyed by their {@link TestRunReport#getStaplerUri()}, created when first asked for.
      */
-    private final Map<String, TestRunReport> testReportMap = new LinkedHashMap<String, TestRunReport>();
+    private Map<String, TestRunReport> testReportMap;
     private PerformanceReport lastBuildReport;
 
-    public void addSample(SlingReportSample pReportSample) {
+    /**
+     * Number of values a sample without a histogram adds to the sketch of a multi-sample report without samples that
+     * have one.
+     */
+    static final long SAMPLE_WEIGHT = 1000;
+
+    public synchronized void addSample(SlingReportSample pReportSample) {
         String testName = pReportSample.getTestName();
         if (testName == null) {
             return;
         }
 
-        TestRunReport uriReport = testReportMap.get(testName);
+        if (sampleColumns != null) {
+            sampleColumns.add(pReportSample);
+        } else if (singleSample == null) {
+            singleSample = pReportSample;
+        } else {
+            sampleColumns = new SampleColumns(2);
+            sampleColumns.add(singleSample);
+            sampleColumns.add(pReportSample);
+            addToSketch(singleSample);
+            singleSample = null;
+        }
+        if (sampleColumns != null) {
+            addToSketch(pReportSample);
+            sketch = null;
+            mergedValues = null;
+        }
+        testReportMap = null;
+    }
 
-        if (uriReport == null) {
-            uriReport = new TestRunReport(this);
-            testReportMap.put(testName, uriReport);
+    private void addToSketch(SlingReportSample sample) {
+        if (hasIterations(sample)) {
+            if (iterationSketch == null) {
+                iterationSketch = new LatencyHistogram();
+            }
+            iterationSketch.add(sample.getHistogram());
+            iterationSamples++;
+        } else {
+            aggregatedSamples++;
         }
-        uriReport.addReportSample(pReportSample);
-        reportSamples.add(pReportSample);
+    }
+
+    private static boolean hasIterations(SlingReportSample sample) {
+        return sample.getHistogram() != null && sample.getHistogram().getCount() > 0;
+    }
+
+    /**
+     * Returns the distribution of all samples of a multi-sample report. Samples without a histogram only have five
+     * values; they are added as values spread evenly between them, 10% between min and 10%, 40% between 10% and
+     * median, 40% between median and 90% and 10% between 90% and max. The formats without histograms do not tell the
+     * number of iterations, so such a sample weighs as much as the average sample with a histogram of the report, or
+     * {@link #SAMPLE_WEIGHT} values if there is none. Every sample then counts the same, whichever kind of samples
+     * makes up most of the report.
+     *
+     * @return the distribution, or <code>null</code> for a report with a single sample
+     */
+    private LatencyHistogram getSketch() {
+        if (sampleColumns == null) {
+            return null;
+        }
+        if (sketch == null) {
+            if (aggregatedSamples == 0) {
+                sketch = iterationSketch;
+            } else {
+                sketch = iterationSketch == null ? new LatencyHistogram() : iterationSketch.copy();
+                long weight = iterationSamples == 0 ? SAMPLE_WEIGHT
+                        : Math.max(10, iterationSketch.getCount() / iterationSamples);
+                for (SlingReportSample sample : sampleColumns.asList()) {
+                    if (!hasIterations(sample)) {
+                        addAggregated(sample, weight);
+                    }
+                }
+            }
+        }
+        return sketch;
+    }
+
+    private void addAggregated(SlingReportSample sample, long weight) {
+        long[] values = { sample.getMin(), sample.get10Percentile(), sample.getMedian(), sample.get90Percentile(),
+                sample.getMax() };
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Math.max(0, values[i]) * 1000;
+        }
+        // tolerate reports whose values are not in order
+        Arrays.sort(values);
+        sketch.recordUniform(values[0], values[1], weight / 10);
+        sketch.recordUniform(values[1], values[2], weight * 4 / 10);
+        sketch.recordUniform(values[2], values[3], weight * 4 / 10);
+        sketch.recordUniform(values[3], values[4], weight / 10);
+    }
+
+    /**
+     * @return min, 10%, median, 90% and max of all samples, or <code>null</code> for a report with a single sample
+     */
+    private synchronized long[] getMergedValues() {
+        LatencyHistogram sketch = getSketch();
+        if (sketch == null) {
+            return null;
+        }
+        if (mergedValues == null) {
+            mergedValues = new long[] { toMillis(sketch.getMin()), toMillis(sketch.getValueAtPercentile(10)),
+                    toMillis(sketch.getValueAtPercentile(50)), toMillis(sketch.getValueAtPercentile(90)),
+                    toMillis(sketch.getMax()) };
+        }
+        return mergedValues;
+    }
+
+    private static long toMillis(long micros) {
+        return Math.round(micros / 1000.0);
     }
 
     public int compareTo(PerformanceReport jmReport) {
@@ -58,8 +186,12 @@ public class PerformanceReport extends AbstractReport implements
         return getReportName().compareTo(jmReport.getReportName());
     }
 
+    /**
+     * @return the median of the report; for multi-sample reports, the median of all samples taken together
+     */
     public long getMedian() {
-        return this.reportSample.getMedian();
+        long[] merged = getMergedValues();
+        return merged != null ? merged[2] : this.reportSample.getMedian();
     }
 
     public AbstractBuild<?, ?> getBuild() {
@@ -82,24 +214,62 @@ public class PerformanceReport extends AbstractReport implements
         return reportSample;
     }
 
-    public List<SlingReportSample> getReportSamples() {
-        return reportSamples;
+    /**
+     * @return a read-only list of the samples. Samples of multi-sample reports are created when they are read, so
+     *         changing them does not change the report.
+     */
+    public synchronized List<SlingReportSample> getReportSamples() {
+        if (sampleColumns != null) {
+            return sampleColumns.asList();
+        }
+        if (singleSample != null) {
+            return Collections.singletonList(singleSample);
+        }
+        return Collections.emptyList();
     }
 
     public long getMax() {
-        return this.reportSample.getMax();
+        long[] merged = getMergedValues();
+        return merged != null ? merged[4] : this.reportSample.getMax();
     }
 
     public long getMin() {
-        return this.reportSample.getMin();
+        long[] merged = getMergedValues();
+        return merged != null ? merged[0] : this.reportSample.getMin();
     }
 
     public long get10Percentile() {
-        return this.reportSample.get10Percentile();
+        long[] merged = getMergedValues();
+        return merged != null ? merged[1] : this.reportSample.get10Percentile();
     }
 
     public long get90Percentile() {
-        return this.reportSample.get90Percentile();
+        long[] merged = getMergedValues();
+        return merged != null ? merged[3] : this.reportSample.get90Percentile();
+    }
+
+    /**
+     * @return the latency below which the given percentage of the iterations lie, in milliseconds; for multi-sample
+     *         reports, of all samples taken together
+     * @see SlingReportSample#getPercentile(double)
+     */
+    public synchronized double getPercentile(double percentile) {
+        LatencyHistogram sketch = getSketch();
+        if (sketch != null) {
+            return sketch.getValueAtPercentile(percentile) / 1000.0;
+        }
+        return this.reportSample.getPercentile(percentile);
+    }
+
+    /**
+     * @return the latencies of all iterations in microseconds, or <code>null</code> if the report was not parsed from
+     *         raw timings. The histogram must not be changed.
+     */
+    public synchronized LatencyHistogram getHistogram() {
+        if (sampleColumns != null) {
+            return aggregatedSamples == 0 ? iterationSketch : null;
+        }
+        return this.reportSample.getHistogram();
     }
 
     public String getReportFileName() {
@@ -112,7 +282,20 @@ public class PerformanceReport extends AbstractReport implements
         return UriReportList;
     }
 
-    public Map<String, TestRunReport> getUriReportMap() {
+    public synchronized Map<String, TestRunReport> getUriReportMap() {
+        if (testReportMap == null) {
+            // one report per test name, holding the last sample of that test
+            Map<String, TestRunReport> reports = new LinkedHashMap<String, TestRunReport>();
+            for (SlingReportSample sample : getReportSamples()) {
+                TestRunReport uriReport = reports.get(sample.getTestName());
+                if (uriReport == null) {
+                    uriReport = new TestRunReport(this);
+                    reports.put(sample.getTestName(), uriReport);
+                }
+                uriReport.addReportSample(sample);
+            }
+            testReportMap = reports;
+        }
         return testReportMap;
     }
 
@@ -136,6 +319,72 @@ public class PerformanceReport extends AbstractReport implements
         this.reportName = reportName;
     }
 
+    /**
+     * Estimates the heap used by this report and its samples, in bytes. The estimate assumes compressed object
+     * pointers, and that the strings of a single sample are distinct objects.
+     */
+    public synchronized long estimateSize() {
+        long size = 120 + estimateSize(reportName) + estimateSize(reportFileName);
+        if (sampleColumns != null) {
+            size += sampleColumns.estimateSize();
+        }
+        if (iterationSketch != null) {
+            size += iterationSketch.estimateSize();
+        }
+        if (sketch != null && sketch != iterationSketch) {
+            size += sketch.estimateSize();
+        }
+        if (mergedValues != null) {
+            size += 56;
+        }
+        if (singleSample != null) {
+            size += 80 + (singleSample.getDate() == null ? 0 : 24) + estimateSize(singleSample.getTestName())
+                    + (singleSample.getHistogram() == null ? 0 : singleSample.getHistogram().estimateSize())
+                    + estimateSize(singleSample.getTestSuite()) + estimateSize(singleSample.getTestClass())
+                    + estimateSize(singleSample.getTestCase());
+        }
+        if (testReportMap != null) {
+            size += 64 + testReportMap.size() * (24L + 40 + 80);
+        }
+        return size;
+    }
+
+    private static long estimateSize(String value) {
+        return value == null ? 0 : 40 + 2L * value.length();
+    }
+
+    public int getTestId() {
+        return testId;
+    }
+
+    /**
+     * Sets the id of the test, and replaces the names of the report with the equal ones kept by the dictionary, so
+     * the reports of all builds share them.
+     */
+    public synchronized void setTestIdentifier(TestIdentifier test) {
+        this.testId = test.getId();
+        if (test.getName().equals(reportName)) {
+            reportName = test.getName();
+        }
+        if (test.getFileName() != null && test.getFileName().equals(reportFileName)) {
+            reportFileName = test.getFileName();
+        }
+        if (singleSample != null) {
+            if (test.getName().equals(singleSample.getTestName())) {
+                singleSample.setTestName(test.getName());
+            }
+            if (test.getTestSuite() != null && test.getTestSuite().equals(singleSample.getTestSuite())) {
+                singleSample.setTestSuite(test.getTestSuite());
+            }
+            if (test.getTestClass() != null && test.getTestClass().equals(singleSample.getTestClass())) {
+                singleSample.setTestClass(test.getTestClass());
+            }
+            if (test.getTestCase() != null && test.getTestCase().equals(singleSample.getTestCase())) {
+                singleSample.setTestCase(test.getTestCase());
+            }
+        }
+    }
+
     public boolean isMultipleSampleReport() {
         return multipleSampleReport;
     }
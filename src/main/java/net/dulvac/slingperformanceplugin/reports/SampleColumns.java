@@ -0,0 +1,209 @@
+package net.dulvac.slingperformanceplugin.reports;
+
+import net.dulvac.slingperformanceplugin.SlingReportSample;
+import net.dulvac.slingperformanceplugin.stats.LatencyHistogram;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Column-wise storage of the samples of a multi-sample {@link PerformanceReport}.
+ *
+ * <p> Every value of a sample is kept in a primitive array per column, and test identifiers are stored as indexes
+ * into a dictionary of the distinct strings of the report, so a sample costs a few dozen bytes instead of a
+ * {@link SlingReportSample} with its own strings. Samples are stored by value: {@link #get(int)} creates a new
+ * {@link SlingReportSample}, and changing it does not change the stored sample. Latency histograms are shared
+ * with the created samples instead of copied, and must not be changed. </p>
+ */
+final class SampleColumns {
+
+    private static final int NULL_STRING = -1;
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    private int size;
+    private int[] sampleIds;
+    private long[] min;
+    private long[] tenPercentile;
+    private long[] median;
+    private long[] ninetyPercentile;
+    private long[] max;
+    private final BitSet successful = new BitSet();
+    /**
+     * Allocated with the first sample that has a date, since parsed samples have none.
+     */
+    private long[] dates;
+    /**
+     * Allocated with the first sample that has a histogram, since most samples have none.
+     */
+    private LatencyHistogram[] histograms;
+
+    private int[] testNames;
+    private int[] testSuites;
+    private int[] testClasses;
+    private int[] testCases;
+    private final List<String> strings = new ArrayList<String>();
+    private final Map<String, Integer> stringIds = new HashMap<String, Integer>();
+
+    SampleColumns(int capacity) {
+        sampleIds = new int[capacity];
+        min = new long[capacity];
+        tenPercentile = new long[capacity];
+        median = new long[capacity];
+        ninetyPercentile = new long[capacity];
+        max = new long[capacity];
+        testNames = new int[capacity];
+        testSuites = new int[capacity];
+        testClasses = new int[capacity];
+        testCases = new int[capacity];
+    }
+
+    int size() {
+        return size;
+    }
+
+    void add(SlingReportSample sample) {
+        if (size == sampleIds.length) {
+            grow(Math.max(2, size * 2));
+        }
+        sampleIds[size] = sample.getSampleId();
+        min[size] = sample.getMin();
+        tenPercentile[size] = sample.get10Percentile();
+        median[size] = sample.getMedian();
+        ninetyPercentile[size] = sample.get90Percentile();
+        max[size] = sample.getMax();
+        successful.set(size, sample.isSuccessful());
+        Date date = sample.getDate();
+        if (date != null && dates == null) {
+            dates = new long[sampleIds.length];
+            Arrays.fill(dates, NO_DATE);
+        }
+        if (dates != null) {
+            dates[size] = date == null ? NO_DATE : date.getTime();
+        }
+        if (sample.getHistogram() != null && histograms == null) {
+            histograms = new LatencyHistogram[sampleIds.length];
+        }
+        if (histograms != null) {
+            histograms[size] = sample.getHistogram();
+        }
+        testNames[size] = encode(sample.getTestName());
+        testSuites[size] = encode(sample.getTestSuite());
+        testClasses[size] = encode(sample.getTestClass());
+        testCases[size] = encode(sample.getTestCase());
+        size++;
+    }
+
+    SlingReportSample get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        SlingReportSample sample = new SlingReportSample();
+        sample.setSampleId(sampleIds[index]);
+        sample.setMin(min[index]);
+        sample.set10Percentile(tenPercentile[index]);
+        sample.setMedian(median[index]);
+        sample.set90Percentile(ninetyPercentile[index]);
+        sample.setMax(max[index]);
+        sample.setSuccessful(successful.get(index));
+        if (dates != null && dates[index] != NO_DATE) {
+            sample.setDate(new Date(dates[index]));
+        }
+        if (histograms != null && histograms[index] != null) {
+            sample.setHistogram(histograms[index]);
+        }
+        sample.setTestName(decode(testNames[index]));
+        sample.setTestSuite(decode(testSuites[index]));
+        sample.setTestClass(decode(testClasses[index]));
+        sample.setTestCase(decode(testCases[index]));
+        return sample;
+    }
+
+    String getTestName(int index) {
+        return decode(testNames[index]);
+    }
+
+    /**
+     * @return a read-only view of the samples, creating each sample when it is read
+     */
+    List<SlingReportSample> asList() {
+        return new AbstractList<SlingReportSample>() {
+            @Override
+            public SlingReportSample get(int index) {
+                return SampleColumns.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Estimates the heap used by the columns and the dictionary, in bytes.
+     */
+    long estimateSize() {
+        long capacity = sampleIds.length;
+        // five long columns, five int columns and the optional dates
+        long result = 200 + capacity * (5 * 8 + 5 * 4) + capacity / 8;
+        if (dates != null) {
+            result += capacity * 8;
+        }
+        if (histograms != null) {
+            result += capacity * 4;
+            for (int i = 0; i < size; i++) {
+                if (histograms[i] != null) {
+                    result += histograms[i].estimateSize();
+                }
+            }
+        }
+        for (String value : strings) {
+            result += 40 + 2L * value.length() + 48;
+        }
+        return result;
+    }
+
+    private int encode(String value) {
+        if (value == null) {
+            return NULL_STRING;
+        }
+        Integer id = stringIds.get(value);
+        if (id == null) {
+            id = strings.size();
+            strings.add(value);
+            stringIds.put(value, id);
+        }
+        return id;
+    }
+
+    private String decode(int id) {
+        return id == NULL_STRING ? null : strings.get(id);
+    }
+
+    private void grow(int capacity) {
+        sampleIds = Arrays.copyOf(sampleIds, capacity);
+        min = Arrays.copyOf(min, capacity);
+        tenPercentile = Arrays.copyOf(tenPercentile, capacity);
+        median = Arrays.copyOf(median, capacity);
+        ninetyPercentile = Arrays.copyOf(ninetyPercentile, capacity);
+        max = Arrays.copyOf(max, capacity);
+        if (dates != null) {
+            int oldCapacity = dates.length;
+            dates = Arrays.copyOf(dates, capacity);
+            Arrays.fill(dates, oldCapacity, capacity, NO_DATE);
+        }
+        if (histograms != null) {
+            histograms = Arrays.copyOf(histograms, capacity);
+        }
+        testNames = Arrays.copyOf(testNames, capacity);
+        testSuites = Arrays.copyOf(testSuites, capacity);
+        testClasses = Arrays.copyOf(testClasses, capacity);
+        testCases = Arrays.copyOf(testCases, capacity);
+    }
+}
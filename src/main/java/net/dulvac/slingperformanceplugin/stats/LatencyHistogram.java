@@ -0,0 +1,308 @@
+package net.dulvac.slingperformanceplugin.stats;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * Mergeable histogram of non-negative latencies with a bounded relative error, in the style of HdrHistogram.
+ *
+ * <p> Values below 2<sup>{@link #SUB_BITS}</sup> get a bucket each. Above that, every power of two is split into
+ * 2<sup>SUB_BITS - 1</sup> equally wide buckets, so a value is known to within about 3% whatever its magnitude, and
+ * microsecond latencies up to minutes need less than 1000 buckets. Only the buckets between the lowest and the
+ * highest value are allocated, which for the latencies of a single test are usually a few hundred. Merging two
+ * histograms adds their counts, so percentiles of merged histograms are exactly those of all recorded values taken
+ * together, within the bucket resolution. </p>
+ *
+ * <p> The histogram does not know its unit; the parsers of this plug-in record microseconds. </p>
+ */
+public final class LatencyHistogram implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final int SUB_BITS = 6;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+
+    /**
+     * Counts per bucket, from the lowest to the highest bucket used.
+     */
+    private long[] counts = new long[0];
+    /**
+     * Bucket of <code>counts[0]</code>.
+     */
+    private int offset;
+    private long totalCount;
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+    private double sum;
+
+    public void record(long value) {
+        record(value, 1);
+    }
+
+    /**
+     * Records a value <code>count</code> times.
+     *
+     * @throws IllegalArgumentException if the value is negative
+     */
+    public void record(long value, long count) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative latency: " + value);
+        }
+        if (count <= 0) {
+            return;
+        }
+        addCount(bucket(value), count);
+        totalCount += count;
+        sum += (double) value * count;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Records <code>count</code> values spread evenly between <code>from</code> and <code>to</code>, both included.
+     * This stands in for values known only by a range, like the values between two percentiles.
+     */
+    public void recordUniform(long from, long to, long count) {
+        if (from < 0 || to < from) {
+            throw new IllegalArgumentException("Invalid latency range: " + from + " - " + to);
+        }
+        if (count <= 0) {
+            return;
+        }
+        int first = bucket(from);
+        int last = bucket(to);
+        if (first == last) {
+            addCount(first, count);
+        } else {
+            ensureBuckets(first, last);
+            // share the count by the overlap of each bucket with the range, carrying the rounding errors along
+            double width = (double) to - from + 1;
+            long assigned = 0;
+            double exact = 0;
+            for (int bucket = first; bucket <= last; bucket++) {
+                long low = Math.max(from, lowestValue(bucket));
+                long high = Math.min(to, lowestValue(bucket) + (bucketWidth(bucket) - 1));
+                exact += count * ((high - low + 1) / width);
+                long share = bucket == last ? count - assigned : Math.round(exact) - assigned;
+                if (share > 0) {
+                    addCount(bucket, share);
+                    assigned += share;
+                }
+            }
+        }
+        totalCount += count;
+        sum += ((double) from + to) / 2 * count;
+        min = Math.min(min, from);
+        max = Math.max(max, to);
+    }
+
+    private void addCount(int bucket, long count) {
+        ensureBuckets(bucket, bucket);
+        counts[bucket - offset] += count;
+    }
+
+    private void ensureBuckets(int first, int last) {
+        if (counts.length == 0) {
+            counts = new long[last - first + 1];
+            offset = first;
+        } else if (first < offset || last >= offset + counts.length) {
+            int low = Math.min(offset, first);
+            int high = Math.max(offset + counts.length, last + 1);
+            long[] grown = new long[high - low];
+            System.arraycopy(counts, 0, grown, offset - low, counts.length);
+            counts = grown;
+            offset = low;
+        }
+    }
+
+    /**
+     * Adds all values of another histogram to this one.
+     */
+    public void add(LatencyHistogram other) {
+        if (other.totalCount == 0) {
+            return;
+        }
+        ensureBuckets(other.offset, other.offset + other.counts.length - 1);
+        for (int i = 0; i < other.counts.length; i++) {
+            if (other.counts[i] != 0) {
+                addCount(other.offset + i, other.counts[i]);
+            }
+        }
+        totalCount += other.totalCount;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    public LatencyHistogram copy() {
+        LatencyHistogram copy = new LatencyHistogram();
+        copy.add(this);
+        return copy;
+    }
+
+    public long getCount() {
+        return totalCount;
+    }
+
+    /**
+     * @return the smallest recorded value, or 0 if the histogram is empty
+     */
+    public long getMin() {
+        return totalCount == 0 ? 0 : min;
+    }
+
+    /**
+     * @return the largest recorded value, or 0 if the histogram is empty
+     */
+    public long getMax() {
+        return totalCount == 0 ? 0 : max;
+    }
+
+    public double getMean() {
+        return totalCount == 0 ? 0 : sum / totalCount;
+    }
+
+    /**
+     * Returns the value below or at which the given percentage of the recorded values lie. The result is the middle
+     * of the bucket holding that value, kept within the recorded minimum and maximum.
+     *
+     * @param percentile between 0 and 100
+     * @return the value, or 0 if the histogram is empty
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        if (percentile <= 0) {
+            return min;
+        }
+        if (percentile >= 100) {
+            return max;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * totalCount));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                int bucket = offset + i;
+                long value = lowestValue(bucket) + (bucketWidth(bucket) - 1) / 2;
+                return Math.max(min, Math.min(max, value));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Estimates the heap used by the histogram, in bytes.
+     */
+    public long estimateSize() {
+        return 72 + 16 + 8L * counts.length;
+    }
+
+    /**
+     * Writes the used buckets only, each as the distance from the previous one and its count.
+     */
+    public void write(DataOutputStream out) throws IOException {
+        int used = 0;
+        for (long count : counts) {
+            if (count != 0) {
+                used++;
+            }
+        }
+        out.writeInt(used);
+        int previous = -1;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 0) {
+                writeVarLong(out, offset + i - previous);
+                writeVarLong(out, counts[i]);
+                previous = offset + i;
+            }
+        }
+        if (used > 0) {
+            out.writeLong(min);
+            out.writeLong(max);
+            out.writeDouble(sum);
+        }
+    }
+
+    public static LatencyHistogram read(DataInputStream in) throws IOException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        int used = in.readInt();
+        int maxBucket = bucket(Long.MAX_VALUE);
+        if (used < 0 || used > maxBucket + 1) {
+            throw new IOException("Corrupt latency histogram");
+        }
+        int[] indexes = new int[used];
+        long[] bucketCounts = new long[used];
+        int index = -1;
+        for (int i = 0; i < used; i++) {
+            long step = readVarLong(in);
+            if (step <= 0 || index + step > maxBucket) {
+                throw new IOException("Corrupt latency histogram");
+            }
+            index += (int) step;
+            indexes[i] = index;
+            bucketCounts[i] = readVarLong(in);
+        }
+        if (used > 0) {
+            histogram.offset = indexes[0];
+            histogram.counts = new long[index + 1 - indexes[0]];
+            for (int i = 0; i < used; i++) {
+                histogram.counts[indexes[i] - indexes[0]] = bucketCounts[i];
+                histogram.totalCount += bucketCounts[i];
+            }
+            histogram.min = in.readLong();
+            histogram.max = in.readLong();
+            histogram.sum = in.readDouble();
+        }
+        return histogram;
+    }
+
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BITS - 1);
+        return SUB_BUCKETS + (shift - 1) * HALF_SUB_BUCKETS + (int) (value >>> shift) - HALF_SUB_BUCKETS;
+    }
+
+    static long lowestValue(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+        long sub = (bucket - SUB_BUCKETS) % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+        return sub << shift;
+    }
+
+    static long bucketWidth(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return 1;
+        }
+        return 1L << ((bucket - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1);
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupt latency histogram");
+    }
+}
@@ -0,0 +1,91 @@
+package net.dulvac.slingperformanceplugin.stats;
+
+import java.util.Arrays;
+
+/**
+ * Mann-Whitney U test (Wilcoxon rank-sum test) with the normal approximation.
+ *
+ * <p> The test compares the ranks of two samples instead of their values, so it needs no assumption about the
+ * distribution of response times and is not thrown off by single outliers. Ties get their average rank, and the
+ * variance is corrected for them. The approximation is reasonable from about three values per sample. </p>
+ */
+public final class MannWhitneyU {
+
+    private MannWhitneyU() {
+    }
+
+    /**
+     * One-sided test whether the values of <code>candidate</code> tend to be greater than those of
+     * <code>baseline</code>.
+     *
+     * @return the p-value; small values mean <code>candidate</code> is likely greater. 1 if either sample is empty or
+     *         all values are equal.
+     */
+    public static double pGreater(double[] baseline, double[] candidate) {
+        int n1 = baseline.length;
+        int n2 = candidate.length;
+        if (n1 == 0 || n2 == 0) {
+            return 1;
+        }
+        int n = n1 + n2;
+        double[] values = new double[n];
+        System.arraycopy(baseline, 0, values, 0, n1);
+        System.arraycopy(candidate, 0, values, n1, n2);
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+
+        // rank sum of the candidate values, and the tie correction of the variance
+        double rankSum = 0;
+        for (int i = n1; i < n; i++) {
+            rankSum += rank(sorted, values[i]);
+        }
+        double ties = 0;
+        for (int i = 0; i < n; ) {
+            int j = i;
+            while (j < n && sorted[j] == sorted[i]) {
+                j++;
+            }
+            double t = j - i;
+            ties += t * t * t - t;
+            i = j;
+        }
+
+        double u = rankSum - n2 * (n2 + 1) / 2.0;
+        double mean = n1 * (double) n2 / 2;
+        double variance = n1 * (double) n2 / 12 * ((n + 1) - ties / (n * (double) (n - 1)));
+        if (variance <= 0) {
+            return 1;
+        }
+        // continuity correction
+        double z = (u - mean - 0.5) / Math.sqrt(variance);
+        return 1 - normalCdf(z);
+    }
+
+    /**
+     * @return the average 1-based rank of the value in the sorted values
+     */
+    private static double rank(double[] sorted, double value) {
+        int first = Arrays.binarySearch(sorted, value);
+        int last = first;
+        while (first > 0 && sorted[first - 1] == value) {
+            first--;
+        }
+        while (last < sorted.length - 1 && sorted[last + 1] == value) {
+            last++;
+        }
+        return (first + last) / 2.0 + 1;
+    }
+
+    /**
+     * Standard normal cumulative distribution function, Abramowitz and Stegun 26.2.17, accurate to 7.5e-8.
+     */
+    static double normalCdf(double z) {
+        if (z < 0) {
+            return 1 - normalCdf(-z);
+        }
+        double t = 1 / (1 + 0.2316419 * z);
+        double polynomial = t * (0.319381530 + t * (-0.356563782 + t * (1.781477937 + t * (-1.821255978
+                + t * 1.330274429))));
+        return 1 - Math.exp(-z * z / 2) / Math.sqrt(2 * Math.PI) * polynomial;
+    }
+}
@@ -0,0 +1,80 @@
+package net.dulvac.slingperformanceplugin;
+
+import hudson.Util;
+import junit.framework.TestCase;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+
+public class AtomicFileOutputTest extends TestCase {
+
+    private File dir;
+    private File file;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = Util.createTempDir();
+        file = new File(dir, "data.bin");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Util.deleteRecursive(dir);
+    }
+
+    private void write(int value, boolean commit) throws Exception {
+        AtomicFileOutput output = new AtomicFileOutput(file);
+        try {
+            output.getStream().writeInt(value);
+            if (commit) {
+                output.commit();
+            }
+        } finally {
+            output.abort();
+        }
+    }
+
+    private int read() throws Exception {
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            return in.readInt();
+        } finally {
+            in.close();
+        }
+    }
+
+    public void testCommitReplacesFile() throws Exception {
+        write(1, true);
+        write(2, true);
+
+        assertEquals(2, read());
+        assertEquals(1, dir.list().length);
+    }
+
+    public void testAbortKeepsFile() throws Exception {
+        write(1, true);
+        write(2, false);
+
+        assertEquals(1, read());
+        assertEquals(1, dir.list().length);
+    }
+
+    public void testConcurrentWritersUseOwnTemporaryFiles() throws Exception {
+        AtomicFileOutput first = new AtomicFileOutput(file);
+        AtomicFileOutput second = new AtomicFileOutput(file);
+        try {
+            first.getStream().writeInt(1);
+            second.getStream().writeInt(2);
+            second.commit();
+            first.commit();
+        } finally {
+            first.abort();
+            second.abort();
+        }
+
+        // the last one to commit wins
+        assertEquals(1, read());
+        assertEquals(1, dir.list().length);
+    }
+}
@@ -0,0 +1,86 @@
+package net.dulvac.slingperformanceplugin;
+
+import hudson.Util;
+import junit.framework.TestCase;
+import net.dulvac.slingperformanceplugin.reports.PerformanceReport;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+public class BaselineStoreTest extends TestCase {
+
+    private File dir;
+    private TestDictionary dictionary;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = Util.createTempDir();
+        dictionary = TestDictionary.get(new File(dir, TestDictionary.DICTIONARY_FILE_NAME));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Util.deleteRecursive(dir);
+    }
+
+    private List<PerformanceReport> reports(long... medians) {
+        List<PerformanceReport> reports = new ArrayList<PerformanceReport>();
+        for (int i = 0; i < medians.length; i++) {
+            reports.add(TestReports.report("test" + i, medians[i]));
+        }
+        dictionary.identifyAll(reports);
+        return reports;
+    }
+
+    public void testWriteAndRead() throws Exception {
+        File file = new File(dir, BaselineStore.STORE_FILE_NAME);
+        BaselineStore store = new BaselineStore(file, dictionary);
+        store.record(1, reports(100, 50));
+        store.record(2, reports(120, 60));
+        // ignored, older than the last build included
+        store.record(2, reports(500, 500));
+
+        BaselineStore read = new BaselineStore(file, dictionary);
+        assertTrue(read.load());
+        assertEquals(2, read.getLastBuild());
+        for (int id = 0; id < 2; id++) {
+            BaselineStore.Baseline expected = store.getBaseline(id);
+            BaselineStore.Baseline actual = read.getBaseline(id);
+            assertEquals(2, actual.getCount());
+            for (DataFilter metric : Arrays.asList(DataFilter.MEDIAN, DataFilter.NINENTY_PERCENT)) {
+                assertEquals(expected.getMean(metric), actual.getMean(metric));
+                assertEquals(expected.getStandardDeviation(metric), actual.getStandardDeviation(metric));
+                assertTrue(Arrays.equals(expected.getWindow(metric), actual.getWindow(metric)));
+            }
+        }
+        assertTrue(Arrays.equals(new long[] { 100, 120 }, read.getBaseline(0).getWindow(DataFilter.MEDIAN)));
+        assertNull(read.getBaseline(2));
+    }
+
+    public void testStoreOfAnotherDictionaryIsNotLoaded() throws Exception {
+        File file = new File(dir, BaselineStore.STORE_FILE_NAME);
+        new BaselineStore(file, dictionary).record(1, reports(100));
+
+        TestDictionary other = TestDictionary.get(new File(dir, "other.dict"));
+        assertFalse(new BaselineStore(file, other).load());
+    }
+
+    public void testBaselinesKeptWithBuild() throws Exception {
+        BaselineStore store = new BaselineStore(new File(dir, BaselineStore.STORE_FILE_NAME), dictionary);
+        store.record(1, reports(100, 50));
+        File buildFile = new File(dir, BaselineStore.BUILD_FILE_NAME);
+        List<PerformanceReport> build = reports(200, 60, 70);
+        store.writeBaselines(buildFile, build);
+        store.record(2, build);
+
+        Map<Integer, BaselineStore.Baseline> kept = BaselineStore.readBaselines(buildFile, dictionary);
+        assertEquals(2, kept.size());
+        assertEquals(100.0, kept.get(0).getMean(DataFilter.MEDIAN));
+        assertEquals(1, kept.get(0).getCount());
+        assertNull(kept.get(2));
+        assertNull(BaselineStore.readBaselines(new File(dir, "missing.bin"), dictionary));
+    }
+}
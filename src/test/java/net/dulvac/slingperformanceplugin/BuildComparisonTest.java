@@ -0,0 +1,72 @@
+package net.dulvac.slingperformanceplugin;
+
+import junit.framework.TestCase;
+import net.dulvac.slingperformanceplugin.reports.PerformanceReport;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class BuildComparisonTest extends TestCase {
+
+    private static PerformanceReport report(int id, String name, long min, long median, long max) {
+        PerformanceReport report = TestReports.report(name, TestReports.REPORT_FILE_NAME,
+                TestReports.sample(name, min, median, max));
+        report.setTestIdentifier(new TestIdentifier(id, name, TestReports.REPORT_FILE_NAME, null, null, name));
+        return report;
+    }
+
+    public void testMatchedTestsHaveDeltas() {
+        BuildComparison comparison = BuildComparison.compare(1, Arrays.asList(report(1, "b", 10, 100, 200),
+                report(0, "a", 5, 50, 80)), 2, Arrays.asList(report(0, "a", 5, 75, 80), report(1, "b", 10, 90,
+                200)));
+
+        List<BuildComparison.Row> rows = comparison.getRows();
+        assertEquals(2, rows.size());
+        assertEquals(0, rows.get(0).getTestId());
+        assertEquals(1, rows.get(1).getTestId());
+        assertEquals(50.0, rows.get(0).getBase(DataFilter.MEDIAN));
+        assertEquals(75.0, rows.get(0).getTarget(DataFilter.MEDIAN));
+        assertEquals(25.0, rows.get(0).getDelta(DataFilter.MEDIAN));
+        assertEquals(50.0, rows.get(0).getRelativeDelta(DataFilter.MEDIAN));
+        assertEquals(-10.0, rows.get(1).getDelta(DataFilter.MEDIAN));
+        assertEquals(0.0, rows.get(1).getDelta(DataFilter.MAX));
+        assertFalse(rows.get(0).isAdded());
+        assertFalse(rows.get(0).isRemoved());
+        assertEquals("#1", comparison.getBaseName());
+        assertEquals("build=2&with=1", comparison.getParameters());
+    }
+
+    public void testTestsOfOneSideOnly() {
+        BuildComparison comparison = BuildComparison.compare(1, Arrays.asList(report(0, "a", 5, 50, 80),
+                report(2, "removed", 1, 2, 3)), 2, Arrays.asList(report(0, "a", 5, 50, 80),
+                report(1, "added", 1, 2, 3)));
+
+        List<BuildComparison.Row> rows = comparison.getRows();
+        assertEquals(3, rows.size());
+        assertEquals("added", rows.get(1).getName());
+        assertTrue(rows.get(1).isAdded());
+        assertTrue(Double.isNaN(rows.get(1).getBase(DataFilter.MEDIAN)));
+        assertTrue(Double.isNaN(rows.get(1).getDelta(DataFilter.MEDIAN)));
+        assertEquals("removed", rows.get(2).getName());
+        assertTrue(rows.get(2).isRemoved());
+        assertEquals(2.0, rows.get(2).getBase(DataFilter.MEDIAN));
+        assertTrue(Double.isNaN(rows.get(2).getTarget(DataFilter.MEDIAN)));
+    }
+
+    public void testRowsByLargestChange() {
+        BuildComparison comparison = BuildComparison.compare(1, Arrays.asList(report(0, "a", 5, 100, 200),
+                report(1, "b", 5, 10, 200), report(2, "c", 5, 100, 200)), 2, Arrays.asList(
+                report(0, "a", 5, 110, 200), report(1, "b", 5, 20, 200), report(2, "c", 5, 50, 200),
+                report(3, "d", 5, 50, 200)));
+
+        List<BuildComparison.Row> absolute = comparison.getRows(DataFilter.MEDIAN, false);
+        assertEquals("c", absolute.get(0).getName());
+        assertEquals("d", absolute.get(3).getName());
+
+        List<BuildComparison.Row> relative = comparison.getRows(DataFilter.MEDIAN, true);
+        assertEquals("b", relative.get(0).getName());
+        assertEquals("c", relative.get(1).getName());
+        assertEquals("a", relative.get(2).getName());
+        assertEquals("d", relative.get(3).getName());
+    }
+}
@@ -0,0 +1,151 @@
+package net.dulvac.slingperformanceplugin;
+
+import junit.framework.TestCase;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+public class ChartCacheTest extends TestCase {
+
+    private static final byte[] PNG = {1, 2, 3, 4};
+
+    /**
+     * The request of a browser that sends the given If-None-Match header, or none if it is <code>null</code>, and
+     * whose copy is out of date by its modification time.
+     */
+    private static StaplerRequest request(final String ifNoneMatch) {
+        return (StaplerRequest) Proxy.newProxyInstance(StaplerRequest.class.getClassLoader(),
+                new Class<?>[] {StaplerRequest.class}, new InvocationHandler() {
+
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("getHeader") && "If-None-Match".equals(args[0])) {
+                            return ifNoneMatch;
+                        }
+                        if (method.getName().equals("checkIfModified")) {
+                            return false;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    /**
+     * Response that records its status, headers and body.
+     */
+    private static final class Response implements InvocationHandler {
+
+        int status = HttpServletResponse.SC_OK;
+        final Map<String, Object> headers = new HashMap<String, Object>();
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        StaplerResponse create() {
+            return (StaplerResponse) Proxy.newProxyInstance(StaplerResponse.class.getClassLoader(),
+                    new Class<?>[] {StaplerResponse.class}, this);
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            String name = method.getName();
+            if (name.equals("setStatus")) {
+                status = (Integer) args[0];
+            } else if (name.equals("setHeader") || name.equals("setDateHeader")) {
+                headers.put((String) args[0], args[1]);
+            } else if (name.equals("setContentType")) {
+                headers.put("Content-Type", args[0]);
+            } else if (name.equals("setContentLength")) {
+                headers.put("Content-Length", args[0]);
+            } else if (name.equals("getOutputStream")) {
+                return new ServletOutputStream() {
+                    @Override
+                    public void write(int b) {
+                        body.write(b);
+                    }
+                };
+            } else {
+                throw new UnsupportedOperationException(name);
+            }
+            return null;
+        }
+    }
+
+    private static Response send(String ifNoneMatch, ChartCache.Chart chart) throws Exception {
+        Response response = new Response();
+        ChartCache.send(request(ifNoneMatch), response.create(), chart);
+        assertEquals(chart.getETag(), response.headers.get("ETag"));
+        return response;
+    }
+
+    public void testCachedUntilNewGeneration() {
+        ChartCache cache = new ChartCache(1024);
+        ChartCache.Key key = cache.getKey("project", "chart");
+        assertNull(cache.get(key));
+        ChartCache.Chart chart = cache.put(key, PNG);
+
+        assertSame(chart, cache.get(cache.getKey("project", "chart")));
+        assertNull(cache.get(cache.getKey("other", "chart")));
+        assertNull(cache.get(cache.getKey("project", "other chart")));
+        cache.startGeneration("project");
+        assertNull(cache.get(cache.getKey("project", "chart")));
+        assertEquals(1, cache.getHits());
+        assertEquals(4, cache.getMisses());
+    }
+
+    public void testLeastRecentlyUsedIsEvicted() {
+        ChartCache cache = new ChartCache(2 * PNG.length);
+        ChartCache.Key first = cache.getKey("project", "first");
+        ChartCache.Key second = cache.getKey("project", "second");
+        cache.put(first, PNG);
+        cache.put(second, PNG);
+        cache.get(first);
+
+        cache.put(cache.getKey("project", "third"), PNG);
+        assertEquals(2, cache.getCount());
+        assertEquals(2 * PNG.length, cache.getSize());
+        assertNull(cache.get(second));
+        assertNotNull(cache.get(first));
+        // larger than the whole cache
+        cache.put(cache.getKey("project", "large"), new byte[3 * PNG.length]);
+        assertEquals(2, cache.getCount());
+    }
+
+    public void testETagDependsOnImage() {
+        ChartCache cache = new ChartCache(1024);
+        ChartCache.Chart chart = cache.put(cache.getKey("project", "first"), PNG);
+
+        assertTrue(chart.getETag().startsWith("\"") && chart.getETag().endsWith("\""));
+        assertEquals(chart.getETag(), cache.put(cache.getKey("project", "second"), PNG.clone()).getETag());
+        assertFalse(chart.getETag().equals(cache.put(cache.getKey("project", "third"), new byte[1]).getETag()));
+    }
+
+    public void testMatchingETagIsNotModified() throws Exception {
+        ChartCache cache = new ChartCache(1024);
+        ChartCache.Chart chart = cache.put(cache.getKey("project", "chart"), PNG);
+
+        Response response = send(chart.getETag(), chart);
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.status);
+        assertEquals(0, response.body.size());
+        assertEquals(chart.getLastModified(), response.headers.get("Last-Modified"));
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, send("\"other\", " + chart.getETag(), chart).status);
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, send("*", chart).status);
+    }
+
+    public void testOtherETagIsSent() throws Exception {
+        ChartCache cache = new ChartCache(1024);
+        ChartCache.Chart chart = cache.put(cache.getKey("project", "chart"), PNG);
+
+        for (String ifNoneMatch : new String[] {"\"other\"", null}) {
+            Response response = send(ifNoneMatch, chart);
+            assertEquals(HttpServletResponse.SC_OK, response.status);
+            assertEquals("image/png", response.headers.get("Content-Type"));
+            assertEquals(PNG.length, response.headers.get("Content-Length"));
+            assertEquals(PNG.length, response.body.size());
+        }
+    }
+}
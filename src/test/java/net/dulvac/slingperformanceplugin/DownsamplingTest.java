@@ -0,0 +1,54 @@
+package net.dulvac.slingperformanceplugin;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+
+public class DownsamplingTest extends TestCase {
+
+    public void testShortSeriesIsKept() {
+        double[] y = { 1, 5, 2 };
+        assertTrue(Arrays.equals(new int[] { 0, 1, 2 }, Downsampling.lttb(new double[] { 0, 1, 2 }, y, 10)));
+        assertTrue(Arrays.equals(new int[] { 0, 1, 2 }, Downsampling.minMax(y, 10)));
+    }
+
+    public void testLttbKeepsEndsAndSpike() {
+        int size = 1000;
+        double[] x = new double[size];
+        double[] y = new double[size];
+        for (int i = 0; i < size; i++) {
+            x[i] = i;
+            y[i] = 100;
+        }
+        y[517] = 5000;
+
+        int[] selected = Downsampling.lttb(x, y, 50);
+        assertEquals(50, selected.length);
+        assertEquals(0, selected[0]);
+        assertEquals(size - 1, selected[selected.length - 1]);
+        assertTrue(Arrays.binarySearch(selected, 517) >= 0);
+        for (int i = 1; i < selected.length; i++) {
+            assertTrue(selected[i] > selected[i - 1]);
+        }
+    }
+
+    public void testMinMaxKeepsExtremesOfEachBucket() {
+        int size = 1002;
+        double[] y = new double[size];
+        for (int i = 0; i < size; i++) {
+            y[i] = 100 + i % 7;
+        }
+        y[300] = 1;
+        y[700] = 9000;
+
+        int[] selected = Downsampling.minMax(y, 22);
+        assertTrue(selected.length <= 22);
+        assertEquals(0, selected[0]);
+        assertEquals(size - 1, selected[selected.length - 1]);
+        assertTrue(Arrays.binarySearch(selected, 300) >= 0);
+        assertTrue(Arrays.binarySearch(selected, 700) >= 0);
+        for (int i = 1; i < selected.length; i++) {
+            assertTrue(selected[i] > selected[i - 1]);
+        }
+    }
+}
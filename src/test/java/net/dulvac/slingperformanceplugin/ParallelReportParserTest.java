@@ -0,0 +1,104 @@
+package net.dulvac.slingperformanceplugin;
+
+import hudson.model.AbstractBuild;
+import hudson.model.TaskListener;
+import junit.framework.TestCase;
+import net.dulvac.slingperformanceplugin.parsers.GenericReportParser;
+import net.dulvac.slingperformanceplugin.reports.PerformanceReport;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+public class ParallelReportParserTest extends TestCase {
+
+    /**
+     * Parser that gives one report per file, named by the path of the file. Files of the first report file name are
+     * parsed last, and files named <code>broken.txt</code> fail to parse.
+     */
+    private static final class PathParser extends GenericReportParser {
+
+        PathParser() {
+            super("*.txt");
+        }
+
+        @Override
+        public Collection<PerformanceReport> parse(AbstractBuild<?, ?> build, Collection<File> reports,
+                                                   TaskListener listener) throws IOException {
+            List<PerformanceReport> parsed = new ArrayList<PerformanceReport>();
+            for (File report : reports) {
+                if (report.getName().equals("broken.txt")) {
+                    throw new IOException("Unable to parse " + report);
+                }
+                if (report.getName().startsWith("a.txt")) {
+                    try {
+                        Thread.sleep(50);
+                    } catch (InterruptedException e) {
+                        throw new IOException(e.toString());
+                    }
+                }
+                parsed.add(TestReports.report(report.getPath(), getReportFileName(report),
+                        TestReports.sample(report.getPath(), 10)));
+            }
+            return parsed;
+        }
+
+        @Override
+        public String getDefaultGlobPattern() {
+            return "*.txt";
+        }
+    }
+
+    private static List<String> parse(File... files) throws IOException {
+        List<String> reportNames = new ArrayList<String>();
+        List<PerformanceReport> reports = ParallelReportParser.parse(new PathParser(), null, Arrays.asList(files), null);
+        for (PerformanceReport report : reports) {
+            reportNames.add(report.getReportName());
+        }
+        return reportNames;
+    }
+
+    public void testReportsInOrderOfReportFileNames() throws Exception {
+        File b = new File("y", "b.txt");
+        File a = new File("z", "a.txt.gz");
+        File sameName = new File("x", "b.txt");
+        File c = new File("x", "c.txt");
+
+        List<String> expected = Arrays.asList(a.getPath(), sameName.getPath(), b.getPath(), c.getPath());
+        assertEquals(expected, parse(c, b, sameName, a));
+        // the same order however the files were listed
+        assertEquals(expected, parse(a, sameName, b, c));
+        assertEquals(expected, parse(c, a, b, sameName));
+    }
+
+    public void testSameReportsAsParsedTogether() throws Exception {
+        List<File> files = Arrays.asList(new File("b.txt"), new File("a.txt"), new File("c.txt"));
+        List<File> sorted = new ArrayList<File>(files);
+        Collections.sort(sorted, ParallelReportParser.BY_REPORT_FILE_NAME);
+
+        List<PerformanceReport> parallel = ParallelReportParser.parse(new PathParser(), null, files, null);
+        List<PerformanceReport> together = new ArrayList<PerformanceReport>(new PathParser().parse(null, sorted, null));
+        assertEquals(together.size(), parallel.size());
+        for (int i = 0; i < together.size(); i++) {
+            assertEquals(together.get(i).getReportName(), parallel.get(i).getReportName());
+            assertEquals(together.get(i).getReportFileName(), parallel.get(i).getReportFileName());
+        }
+    }
+
+    public void testParseErrorIsThrown() throws Exception {
+        try {
+            parse(new File("a.txt"), new File("broken.txt"), new File("c.txt"));
+            fail("the broken file does not parse");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("broken.txt"));
+        }
+    }
+
+    public void testNoFiles() throws Exception {
+        assertEquals(0, parse().size());
+    }
+}
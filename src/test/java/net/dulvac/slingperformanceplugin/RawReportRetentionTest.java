@@ -0,0 +1,71 @@
+package net.dulvac.slingperformanceplugin;
+
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import net.dulvac.slingperformanceplugin.parsers.GenericReportParser;
+import org.jvnet.hudson.test.HudsonTestCase;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+
+public class RawReportRetentionTest extends HudsonTestCase {
+
+    /**
+     * Runs a build with archived raw reports, and with a snapshot of its results if <code>snapshot</code> is set.
+     */
+    private FreeStyleBuild build(FreeStyleProject project, boolean snapshot) throws Exception {
+        FreeStyleBuild build = buildAndAssertSuccess(project);
+        build.addAction(new PerformanceBuildAction(build, System.out, new ArrayList<GenericReportParser>()));
+        assertTrue(new File(getReportsDir(build), "Sling").mkdirs());
+        if (snapshot) {
+            ReportSnapshot.write(ReportSnapshot.getSnapshotFile(build),
+                    Collections.singletonList(TestReports.report("first", 10)));
+        }
+        return build;
+    }
+
+    private static File getReportsDir(FreeStyleBuild build) {
+        return new File(build.getRootDir(), SlingPerformanceReportMap.getPerformanceReportDirRelativePath());
+    }
+
+    public void testNewestBuildsKeepRawReports() throws Exception {
+        FreeStyleProject project = createFreeStyleProject();
+        FreeStyleBuild first = build(project, true);
+        // recorded before snapshots existed
+        FreeStyleBuild second = build(project, false);
+        FreeStyleBuild third = build(project, true);
+        FreeStyleBuild fourth = build(project, true);
+
+        RawReportRetention.apply(fourth, 2, System.out);
+        assertFalse(getReportsDir(first).exists());
+        assertFalse(getReportsDir(second).exists());
+        assertTrue(ReportSnapshot.isReadable(ReportSnapshot.getSnapshotFile(second)));
+        assertTrue(getReportsDir(third).isDirectory());
+        assertTrue(getReportsDir(fourth).isDirectory());
+        assertEquals(second.number, ReportCatalog.get(project).getRawReportsCheckedBuild());
+    }
+
+    public void testBuildsWithoutPerformanceReportsAreSkipped() throws Exception {
+        FreeStyleProject project = createFreeStyleProject();
+        FreeStyleBuild other = buildAndAssertSuccess(project);
+        File otherDir = getReportsDir(other);
+        // not recorded by the publisher
+        assertTrue(otherDir.mkdirs());
+        FreeStyleBuild last = build(project, true);
+
+        RawReportRetention.apply(last, 1, System.out);
+        assertTrue(otherDir.isDirectory());
+        assertTrue(getReportsDir(last).isDirectory());
+    }
+
+    public void testAllBuildsKeptWhenFewerThanBuildsToKeep() throws Exception {
+        FreeStyleProject project = createFreeStyleProject();
+        FreeStyleBuild first = build(project, true);
+        FreeStyleBuild second = build(project, true);
+
+        RawReportRetention.apply(second, 3, System.out);
+        assertTrue(getReportsDir(first).isDirectory());
+        assertEquals(0, ReportCatalog.get(project).getRawReportsCheckedBuild());
+    }
+}
@@ -0,0 +1,81 @@
+package net.dulvac.slingperformanceplugin;
+
+import junit.framework.TestCase;
+import net.dulvac.slingperformanceplugin.reports.PerformanceReport;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class ReportMapCacheTest extends TestCase {
+
+    private static SlingPerformanceReportMap reportMap(String... reportNames) {
+        Map<String, PerformanceReport> reports = new LinkedHashMap<String, PerformanceReport>();
+        for (String reportName : reportNames) {
+            reports.put(reportName, TestReports.report(reportName, 10));
+        }
+        SlingPerformanceReportMap reportMap = new SlingPerformanceReportMap(null);
+        reportMap.setPerformanceReportMap(reports);
+        return reportMap;
+    }
+
+    public void testHitsAndMisses() {
+        ReportMapCache cache = new ReportMapCache(1024 * 1024);
+        SlingPerformanceReportMap first = reportMap("first");
+
+        assertNull(cache.get("1"));
+        cache.put("1", first);
+        assertSame(first, cache.get("1"));
+        assertSame(first, cache.peek("1"));
+        assertNull(cache.peek("2"));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getCount());
+        assertEquals(ReportMapCache.estimateSize(first), cache.getSize());
+    }
+
+    public void testLeastRecentlyUsedIsEvicted() {
+        // names of the same length, so the maps have the same size
+        SlingPerformanceReportMap first = reportMap("one");
+        SlingPerformanceReportMap second = reportMap("two");
+        SlingPerformanceReportMap third = reportMap("six");
+        long size = ReportMapCache.estimateSize(first);
+        assertEquals(size, ReportMapCache.estimateSize(second));
+        ReportMapCache cache = new ReportMapCache(2 * size);
+        cache.put("1", first);
+        cache.put("2", second);
+        // makes the second map the least recently used
+        cache.get("1");
+
+        cache.put("3", third);
+        assertEquals(1, cache.getEvictions());
+        assertNull(cache.peek("2"));
+        assertSame(first, cache.peek("1"));
+        assertSame(third, cache.peek("3"));
+        assertEquals(2 * size, cache.getSize());
+    }
+
+    public void testReplacedMapIsNotEvicted() {
+        ReportMapCache cache = new ReportMapCache(1024 * 1024);
+        cache.put("1", reportMap("first"));
+        SlingPerformanceReportMap larger = reportMap("first", "second");
+        cache.put("1", larger);
+
+        assertEquals(0, cache.getEvictions());
+        assertEquals(1, cache.getCount());
+        assertEquals(ReportMapCache.estimateSize(larger), cache.getSize());
+        cache.remove("1");
+        assertEquals(0, cache.getSize());
+    }
+
+    public void testMapLargerThanBudgetIsNotCached() {
+        SlingPerformanceReportMap first = reportMap("first");
+        SlingPerformanceReportMap larger = reportMap("first", "second");
+        ReportMapCache cache = new ReportMapCache(ReportMapCache.estimateSize(larger) - 1);
+        cache.put("1", first);
+
+        cache.put("2", larger);
+        assertNull(cache.peek("2"));
+        assertSame(first, cache.peek("1"));
+        assertEquals(0, cache.getEvictions());
+    }
+}
@@ -0,0 +1,111 @@
+package net.dulvac.slingperformanceplugin;
+
+import hudson.Util;
+import junit.framework.TestCase;
+import net.dulvac.slingperformanceplugin.reports.PerformanceReport;
+import net.dulvac.slingperformanceplugin.stats.LatencyHistogram;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+public class ReportSnapshotTest extends TestCase {
+
+    private File dir;
+    private File file;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = Util.createTempDir();
+        file = new File(dir, ReportSnapshot.SNAPSHOT_FILE_NAME);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Util.deleteRecursive(dir);
+    }
+
+    private static SlingReportSample sample(String testCase, long median, LatencyHistogram histogram) {
+        SlingReportSample sample = TestReports.sample(testCase, median);
+        sample.setSampleId(1);
+        sample.setDate(new Date(1000000L + median));
+        sample.setHistogram(histogram);
+        return sample;
+    }
+
+    private List<PerformanceReport> reports() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100; value++) {
+            histogram.record(value);
+        }
+        List<PerformanceReport> reports = new ArrayList<PerformanceReport>();
+        reports.add(TestReports.report("first", "a.txt", sample("first", 10, histogram), sample("first", 12, null)));
+        reports.add(TestReports.report("second", "a.txt", sample("second", 20, null)));
+        reports.add(TestReports.report("first", "b.txt", sample("first", 30, null)));
+        reports.add(TestReports.report(null, null, sample(null, 40, null)));
+        return reports;
+    }
+
+    private static void assertSampleEquals(SlingReportSample expected, SlingReportSample actual) {
+        assertEquals(expected.getSampleId(), actual.getSampleId());
+        assertEquals(expected.getTestName(), actual.getTestName());
+        assertEquals(expected.getTestSuite(), actual.getTestSuite());
+        assertEquals(expected.getTestClass(), actual.getTestClass());
+        assertEquals(expected.getTestCase(), actual.getTestCase());
+        assertEquals(expected.getMin(), actual.getMin());
+        assertEquals(expected.get10Percentile(), actual.get10Percentile());
+        assertEquals(expected.getMedian(), actual.getMedian());
+        assertEquals(expected.get90Percentile(), actual.get90Percentile());
+        assertEquals(expected.getMax(), actual.getMax());
+        assertEquals(expected.isSuccessful(), actual.isSuccessful());
+        assertEquals(expected.getDate(), actual.getDate());
+        LatencyHistogram histogram = expected.getHistogram();
+        if (histogram == null) {
+            assertNull(actual.getHistogram());
+        } else {
+            assertEquals(histogram.getCount(), actual.getHistogram().getCount());
+            assertEquals(histogram.getMin(), actual.getHistogram().getMin());
+            assertEquals(histogram.getMax(), actual.getHistogram().getMax());
+            assertEquals(histogram.getValueAtPercentile(50), actual.getHistogram().getValueAtPercentile(50));
+        }
+    }
+
+    private static void assertReportsEqual(List<PerformanceReport> expected, List<PerformanceReport> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            PerformanceReport expectedReport = expected.get(i);
+            PerformanceReport actualReport = actual.get(i);
+            assertEquals(expectedReport.getReportName(), actualReport.getReportName());
+            assertEquals(expectedReport.getReportFileName(), actualReport.getReportFileName());
+            assertEquals(expectedReport.isMultipleSampleReport(), actualReport.isMultipleSampleReport());
+            List<SlingReportSample> expectedSamples = expectedReport.getReportSamples();
+            List<SlingReportSample> actualSamples = actualReport.getReportSamples();
+            assertEquals(expectedSamples.size(), actualSamples.size());
+            for (int j = 0; j < expectedSamples.size(); j++) {
+                assertSampleEquals(expectedSamples.get(j), actualSamples.get(j));
+            }
+        }
+    }
+
+    public void testWriteAndRead() throws Exception {
+        List<PerformanceReport> reports = reports();
+        ReportSnapshot.write(file, reports);
+
+        assertTrue(ReportSnapshot.isReadable(file));
+        assertReportsEqual(reports, ReportSnapshot.read(file));
+        assertReportsEqual(reports, ReportSnapshot.read(file, null, null));
+        assertNull(ReportSnapshot.read(new File(dir, "missing.bin")));
+    }
+
+    public void testReadByNameAndFile() throws Exception {
+        List<PerformanceReport> reports = reports();
+        ReportSnapshot.write(file, reports);
+
+        assertReportsEqual(Arrays.asList(reports.get(0), reports.get(2)), ReportSnapshot.read(file, "first", null));
+        assertReportsEqual(reports.subList(0, 2), ReportSnapshot.read(file, null, "a.txt"));
+        assertReportsEqual(reports.subList(2, 3), ReportSnapshot.read(file, "first", "b.txt"));
+        assertReportsEqual(reports.subList(0, 0), ReportSnapshot.read(file, "missing", null));
+    }
+}
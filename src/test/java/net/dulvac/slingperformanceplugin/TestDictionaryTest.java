@@ -0,0 +1,113 @@
+package net.dulvac.slingperformanceplugin;
+
+import hudson.Util;
+import junit.framework.TestCase;
+import net.dulvac.slingperformanceplugin.reports.PerformanceReport;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.List;
+
+public class TestDictionaryTest extends TestCase {
+
+    private File dir;
+    private File file;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = Util.createTempDir();
+        file = new File(dir, TestDictionary.DICTIONARY_FILE_NAME);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Util.deleteRecursive(dir);
+    }
+
+    private static List<PerformanceReport> reports() {
+        return Arrays.asList(TestReports.report("first", 10), TestReports.report("second", 20),
+                TestReports.report("first", "other.txt", TestReports.sample("first", 30)));
+    }
+
+    private TestDictionary load() {
+        TestDictionary dictionary = new TestDictionary(file);
+        assertTrue(dictionary.load());
+        return dictionary;
+    }
+
+    public void testSameTestHasSameId() {
+        TestDictionary dictionary = TestDictionary.get(file);
+        List<PerformanceReport> reports = reports();
+        dictionary.identifyAll(reports);
+
+        assertEquals(3, dictionary.size());
+        assertEquals(0, reports.get(0).getTestId());
+        assertEquals(1, reports.get(1).getTestId());
+        // the same name in another report file is another test
+        assertEquals(2, reports.get(2).getTestId());
+        assertEquals(0, dictionary.getId("first"));
+        assertEquals(-1, dictionary.getId("missing"));
+        assertEquals(1, dictionary.identify(TestReports.report("second", 40)).getId());
+        assertEquals(3, dictionary.size());
+        assertSame(dictionary, TestDictionary.get(file));
+    }
+
+    public void testRenamedReportIsAnotherTest() {
+        TestDictionary dictionary = TestDictionary.get(file);
+        TestIdentifier first = dictionary.identify(TestReports.report("first", 10));
+        PerformanceReport renamed =
+                TestReports.report("first[00001]", TestReports.REPORT_FILE_NAME, TestReports.sample("first", 20));
+        TestIdentifier test = dictionary.identify(renamed);
+
+        assertEquals(1, test.getId());
+        assertEquals("first[00001]", test.getTestCase());
+        assertEquals(first.getId(), dictionary.identify(TestReports.report("first", 30)).getId());
+    }
+
+    public void testWriteAndLoad() {
+        TestDictionary dictionary = TestDictionary.get(file);
+        dictionary.identifyAll(reports());
+
+        TestDictionary loaded = load();
+        assertEquals(dictionary.getToken(), loaded.getToken());
+        assertEquals(dictionary.size(), loaded.size());
+        for (int id = 0; id < dictionary.size(); id++) {
+            TestIdentifier test = loaded.get(id);
+            assertEquals(id, test.getId());
+            assertEquals(dictionary.get(id).getName(), test.getName());
+            assertEquals(dictionary.get(id).getFileName(), test.getFileName());
+            assertEquals(dictionary.get(id), test);
+        }
+        assertNull(loaded.get(dictionary.size()));
+    }
+
+    public void testTruncatedTestIsDropped() throws Exception {
+        TestDictionary dictionary = TestDictionary.get(file);
+        dictionary.identifyAll(reports());
+        RandomAccessFile out = new RandomAccessFile(file, "rw");
+        try {
+            out.setLength(file.length() - 3);
+        } finally {
+            out.close();
+        }
+
+        TestDictionary loaded = load();
+        // the ids did not change
+        assertEquals(dictionary.getToken(), loaded.getToken());
+        assertEquals(2, loaded.size());
+        assertEquals(2, load().size());
+    }
+
+    public void testUnreadableFileIsNotLoaded() throws Exception {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(new byte[32]);
+        } finally {
+            out.close();
+        }
+
+        assertFalse(new TestDictionary(file).load());
+    }
+}
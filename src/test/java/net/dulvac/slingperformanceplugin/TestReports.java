@@ -0,0 +1,59 @@
+package net.dulvac.slingperformanceplugin;
+
+import net.dulvac.slingperformanceplugin.reports.PerformanceReport;
+
+/**
+ * Parsed reports for the tests, as the parsers would give them.
+ */
+final class TestReports {
+
+    static final String REPORT_FILE_NAME = "results.txt";
+
+    private TestReports() {
+    }
+
+    /**
+     * @return a successful sample of the test of the given name, in the suite <code>suite</code> and the class
+     *         <code>Test</code>, with the 10% line at the minimum and the 90% line at the maximum
+     */
+    static SlingReportSample sample(String testName, long min, long median, long max) {
+        SlingReportSample sample = new SlingReportSample();
+        sample.setTestName(testName);
+        sample.setTestSuite("suite");
+        sample.setTestClass("Test");
+        sample.setTestCase(testName);
+        sample.setMin(min);
+        sample.set10Percentile(min);
+        sample.setMedian(median);
+        sample.set90Percentile(max);
+        sample.setMax(max);
+        sample.setSuccessful(true);
+        return sample;
+    }
+
+    /**
+     * @return a sample ranging from half to twice its median
+     */
+    static SlingReportSample sample(String testName, long median) {
+        return sample(testName, median / 2, median, median * 2);
+    }
+
+    static PerformanceReport report(String reportName, String reportFileName, SlingReportSample... samples) {
+        PerformanceReport report = new PerformanceReport();
+        report.setReportName(reportName);
+        report.setReportFileName(reportFileName);
+        report.setMultipleSampleReport(samples.length > 1);
+        report.setReportSample(samples[0]);
+        for (SlingReportSample sample : samples) {
+            report.addSample(sample);
+        }
+        return report;
+    }
+
+    /**
+     * @return a report of one sample of the test of the same name, from {@link #REPORT_FILE_NAME}
+     */
+    static PerformanceReport report(String reportName, long median) {
+        return report(reportName, REPORT_FILE_NAME, sample(reportName, median));
+    }
+}
@@ -0,0 +1,128 @@
+package net.dulvac.slingperformanceplugin;
+
+import hudson.Util;
+import junit.framework.TestCase;
+import net.dulvac.slingperformanceplugin.reports.PerformanceReport;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.List;
+
+public class TrendIndexTest extends TestCase {
+
+    private File dir;
+    private File file;
+    private TestDictionary dictionary;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = Util.createTempDir();
+        file = new File(dir, TrendIndex.INDEX_FILE_NAME);
+        dictionary = TestDictionary.get(new File(dir, TestDictionary.DICTIONARY_FILE_NAME));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Util.deleteRecursive(dir);
+    }
+
+    private List<PerformanceReport> reports(long firstMedian, long secondMedian) {
+        List<PerformanceReport> reports =
+                Arrays.asList(TestReports.report("first", firstMedian), TestReports.report("second", secondMedian));
+        dictionary.identifyAll(reports);
+        return reports;
+    }
+
+    private TrendIndex record(File indexFile, int... buildNumbers) throws Exception {
+        TrendIndex index = new TrendIndex(indexFile, dictionary);
+        for (int buildNumber : buildNumbers) {
+            index.record(buildNumber, buildNumber * 1000L, reports(buildNumber * 10, buildNumber * 20));
+        }
+        return index;
+    }
+
+    private TrendIndex load() {
+        TrendIndex index = new TrendIndex(file, dictionary);
+        assertTrue(index.load());
+        return index;
+    }
+
+    private static void assertBuilds(TrendIndex index, int... buildNumbers) {
+        List<TrendIndex.BuildEntry> builds = index.getBuilds();
+        assertEquals(buildNumbers.length, builds.size());
+        for (int i = 0; i < buildNumbers.length; i++) {
+            assertEquals(buildNumbers[i], builds.get(i).getNumber());
+            assertEquals(buildNumbers[i] * 1000L, builds.get(i).getTimestamp());
+        }
+    }
+
+    public void testRecordAndLoad() throws Exception {
+        TrendIndex index = record(file, 1, 2);
+        // recorded once only
+        index.record(2, 2000L, reports(500, 500));
+
+        TrendIndex loaded = load();
+        assertBuilds(loaded, 2, 1);
+        int id = dictionary.getId("second");
+        TrendIndex.Series series = loaded.getSeries(id);
+        assertEquals(2, series.size());
+        assertEquals(1, series.getBuildNumber(0));
+        assertEquals(1, series.indexOf(2));
+        assertEquals(40, series.getValue(DataFilter.MEDIAN, 1));
+        assertEquals(20, series.getValue(DataFilter.MIN, 1));
+        assertEquals(80, series.getValue(DataFilter.MAX, 1));
+        assertEquals(-1, series.indexOf(3));
+        assertNull(loaded.getSeries(dictionary.size()));
+    }
+
+    public void testRemovedBuildIsNotLoaded() throws Exception {
+        TrendIndex index = record(file, 1, 2, 3);
+        long length = file.length();
+        index.remove(2);
+        // appended as a deletion record
+        assertTrue(file.length() > length);
+        assertEquals(-1, index.getSeries(dictionary.getId("first")).indexOf(2));
+
+        TrendIndex loaded = load();
+        assertBuilds(loaded, 3, 1);
+        TrendIndex.Series series = loaded.getSeries(dictionary.getId("first"));
+        assertEquals(2, series.size());
+        assertEquals(1, series.getBuildNumber(0));
+        assertEquals(3, series.getBuildNumber(1));
+    }
+
+    public void testMostlyRemovedIndexIsRewritten() throws Exception {
+        TrendIndex index = record(file, 1, 2, 3);
+        index.remove(1);
+        // more deleted builds than indexed builds
+        index.remove(2);
+
+        File expected = new File(dir, "expected.idx");
+        record(expected, 3);
+        assertEquals(expected.length(), file.length());
+        assertBuilds(load(), 3);
+    }
+
+    public void testTruncatedRecordIsDropped() throws Exception {
+        record(file, 1, 2);
+        RandomAccessFile out = new RandomAccessFile(file, "rw");
+        try {
+            out.setLength(file.length() - 3);
+        } finally {
+            out.close();
+        }
+
+        assertBuilds(load(), 1);
+        File expected = new File(dir, "expected.idx");
+        record(expected, 1);
+        assertEquals(expected.length(), file.length());
+    }
+
+    public void testIndexOfAnotherDictionaryIsNotLoaded() throws Exception {
+        record(file, 1);
+
+        TestDictionary other = TestDictionary.get(new File(dir, "other.dict"));
+        assertFalse(new TrendIndex(file, other).load());
+    }
+}
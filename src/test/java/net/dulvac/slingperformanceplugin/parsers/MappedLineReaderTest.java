@@ -0,0 +1,96 @@
+package net.dulvac.slingperformanceplugin.parsers;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+public class MappedLineReaderTest extends TestCase {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final String REPORT = "# Suite | Test | Min | Max\r\n"
+            + "  s\u00fcite | \u00e9t\u00e9 caf\u00e9 |  12 | 34.5678 \n"
+            + "\n"
+            + "suite|test|-9223372036854775808|0.5||\n"
+            + "last|line|0|1";
+
+    public void testSameLinesAsReader() throws IOException {
+        DelimitedLines expected = new DelimitedLineReader(new StringReader(REPORT), '|');
+        DelimitedLines actual = new MappedLineReader(ByteBuffer.wrap(REPORT.getBytes(UTF_8)), '|', UTF_8);
+        while (expected.next()) {
+            assertTrue(actual.next());
+            assertEquals(expected.getLineNumber(), actual.getLineNumber());
+            assertEquals(expected.getLine(), actual.getLine());
+            assertEquals(expected.getCellCount(), actual.getCellCount());
+            for (int cell = 0; cell < expected.getCellCount(); cell++) {
+                assertEquals(expected.getCell(cell), actual.getCell(cell));
+            }
+        }
+        assertFalse(actual.next());
+    }
+
+    public void testNumbers() throws IOException {
+        DelimitedLines lines = new MappedLineReader(ByteBuffer.wrap(REPORT.getBytes(UTF_8)), '|', UTF_8);
+        lines.next();
+        lines.next();
+        assertEquals("\u00e9t\u00e9 caf\u00e9", lines.getCell(1));
+        assertTrue(lines.cellEquals(1, "\u00e9t\u00e9 caf\u00e9"));
+        assertFalse(lines.cellEquals(1, "ete cafe"));
+        assertTrue(lines.cellEquals(2, "12"));
+        assertEquals(12, lines.getLong(2));
+        assertEquals(34567, lines.getScaled(3, 3));
+        lines.next();
+        lines.next();
+        assertEquals(Long.MIN_VALUE, lines.getLong(2));
+        assertEquals(500, lines.getScaled(3, 3));
+        try {
+            lines.getLong(1);
+            fail("text parsed as a number");
+        } catch (NumberFormatException expected) {
+            // expected
+        }
+    }
+
+    public void testAsciiCompatibleCharsets() {
+        assertTrue(MappedLineReader.isAsciiCompatible(UTF_8, '|'));
+        assertTrue(MappedLineReader.isAsciiCompatible(Charset.forName("ISO-8859-1"), '|'));
+        assertFalse(MappedLineReader.isAsciiCompatible(Charset.forName("UTF-16"), '|'));
+    }
+
+    public void testClosingReleasesMapping() throws IOException {
+        File file = File.createTempFile("report", ".txt");
+        try {
+            FileOutputStream out = new FileOutputStream(file);
+            try {
+                out.write(REPORT.getBytes(UTF_8));
+            } finally {
+                out.close();
+            }
+            FileInputStream in = new FileInputStream(file);
+            MappedByteBuffer buffer;
+            try {
+                buffer = in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+            } finally {
+                in.close();
+            }
+            DelimitedLines lines = new MappedLineReader(buffer, '|', UTF_8);
+            assertTrue(lines.next());
+            lines.close();
+            // the buffer is not read any more once released
+            assertFalse(lines.next());
+            if (MappedLineReader.canUnmap()) {
+                assertTrue(file.delete());
+            }
+        } finally {
+            file.delete();
+        }
+    }
+}
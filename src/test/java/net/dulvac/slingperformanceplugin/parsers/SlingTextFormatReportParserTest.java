@@ -0,0 +1,77 @@
+package net.dulvac.slingperformanceplugin.parsers;
+
+import hudson.util.StreamTaskListener;
+import junit.framework.TestCase;
+import net.dulvac.slingperformanceplugin.SlingReportSample;
+import net.dulvac.slingperformanceplugin.reports.PerformanceReport;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class SlingTextFormatReportParserTest extends TestCase {
+
+    private static final String REPORT =
+            "com.adobe.cq.performancetest.author.packagemanager.ITBuildBigPackageTest.testRewrapPackage.txt";
+
+    public void testParseReport() throws Exception {
+        File report = new File(getClass().getResource("/" + REPORT).toURI());
+
+        List<PerformanceReport> reports = parse(report);
+
+        assertEquals(1, reports.size());
+        PerformanceReport r = reports.get(0);
+        assertEquals(REPORT, r.getReportFileName());
+        SlingReportSample sample = r.getReportSample();
+        assertEquals("TS1-5.5.0-R2", sample.getTestSuite());
+        assertEquals("com.adobe.cq.performancetest.author.packagemanager.ITBuildBigPackageTest",
+                sample.getTestClass());
+        assertEquals(92, sample.getMin());
+        assertEquals(92, sample.get10Percentile());
+        assertEquals(829, sample.getMedian());
+        assertEquals(1559, sample.get90Percentile());
+        assertEquals(1559, sample.getMax());
+        assertEquals(REPORT + " | TS1-5.5.0-R2 | " + sample.getTestClass() + " | ", r.getReportName());
+    }
+
+    public void testParseColumnsInAnyOrder() throws Exception {
+        File report = write("max | min |Test Suite| Test Class |Test Case| 50%\r\n"
+                + " 30 | 10 | suite | class | case one | 20 \r\n"
+                + "\n"
+                + " 3 | 1 | suite | class | case two | 2 \n");
+
+        List<PerformanceReport> reports = parse(report);
+
+        // rows after a malformed row are dropped
+        assertEquals(1, reports.size());
+        SlingReportSample sample = reports.get(0).getReportSample();
+        assertEquals(10, sample.getMin());
+        assertEquals(20, sample.getMedian());
+        assertEquals(30, sample.getMax());
+        assertEquals("case one", sample.getTestCase());
+    }
+
+    public void testIgnoresFilesWithoutHeader() throws Exception {
+        assertTrue(parse(write("not a report\n1|2|3\n")).isEmpty());
+    }
+
+    private File write(String content) throws IOException {
+        File file = File.createTempFile("sling-report", ".txt");
+        file.deleteOnExit();
+        FileWriter writer = new FileWriter(file);
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+
+    private List<PerformanceReport> parse(File report) throws IOException {
+        return new ArrayList<PerformanceReport>(new SlingTextFormatReportParser("").parse(null,
+                Collections.singletonList(report), new StreamTaskListener(System.out)));
+    }
+}
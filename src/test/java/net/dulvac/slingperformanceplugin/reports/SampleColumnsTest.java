@@ -0,0 +1,113 @@
+package net.dulvac.slingperformanceplugin.reports;
+
+import junit.framework.TestCase;
+import net.dulvac.slingperformanceplugin.SlingReportSample;
+import net.dulvac.slingperformanceplugin.stats.LatencyHistogram;
+
+import java.util.Date;
+import java.util.List;
+
+public class SampleColumnsTest extends TestCase {
+
+    private static SlingReportSample sample(int sampleId, String testCase, long median) {
+        SlingReportSample sample = new SlingReportSample();
+        sample.setSampleId(sampleId);
+        sample.setTestName(testCase);
+        sample.setTestSuite("suite");
+        sample.setTestClass("Test");
+        sample.setTestCase(testCase);
+        sample.setMin(median / 2);
+        sample.set10Percentile(median - 1);
+        sample.setMedian(median);
+        sample.set90Percentile(median + 1);
+        sample.setMax(median * 2);
+        sample.setSuccessful(sampleId % 2 == 0);
+        return sample;
+    }
+
+    private static void assertSampleEquals(SlingReportSample expected, SlingReportSample actual) {
+        assertEquals(expected.getSampleId(), actual.getSampleId());
+        assertEquals(expected.getTestName(), actual.getTestName());
+        assertEquals(expected.getTestSuite(), actual.getTestSuite());
+        assertEquals(expected.getTestClass(), actual.getTestClass());
+        assertEquals(expected.getTestCase(), actual.getTestCase());
+        assertEquals(expected.getMin(), actual.getMin());
+        assertEquals(expected.get10Percentile(), actual.get10Percentile());
+        assertEquals(expected.getMedian(), actual.getMedian());
+        assertEquals(expected.get90Percentile(), actual.get90Percentile());
+        assertEquals(expected.getMax(), actual.getMax());
+        assertEquals(expected.isSuccessful(), actual.isSuccessful());
+        assertEquals(expected.getDate(), actual.getDate());
+        assertSame(expected.getHistogram(), actual.getHistogram());
+    }
+
+    public void testSamplesAreKeptByValue() {
+        SampleColumns columns = new SampleColumns(2);
+        SlingReportSample[] samples = new SlingReportSample[5];
+        for (int i = 0; i < samples.length; i++) {
+            // grows past the initial capacity
+            samples[i] = sample(i, "test" + (i % 2), 100 + i);
+            columns.add(samples[i]);
+        }
+
+        assertEquals(samples.length, columns.size());
+        for (int i = 0; i < samples.length; i++) {
+            assertSampleEquals(samples[i], columns.get(i));
+        }
+        columns.get(0).setMedian(1);
+        assertEquals(100, columns.get(0).getMedian());
+        assertEquals("test1", columns.getTestName(3));
+    }
+
+    public void testNullStringsAndOptionalColumns() {
+        SampleColumns columns = new SampleColumns(1);
+        SlingReportSample first = sample(1, null, 10);
+        columns.add(first);
+        SlingReportSample second = sample(2, "test", 20);
+        second.setDate(new Date(1000));
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(20);
+        second.setHistogram(histogram);
+        columns.add(second);
+        // a sample without a date after the dates were allocated
+        SlingReportSample third = sample(3, "test", 30);
+        columns.add(third);
+
+        assertSampleEquals(first, columns.get(0));
+        assertSampleEquals(second, columns.get(1));
+        assertSampleEquals(third, columns.get(2));
+        assertNull(columns.get(0).getTestName());
+    }
+
+    public void testListView() {
+        SampleColumns columns = new SampleColumns(4);
+        columns.add(sample(1, "test", 10));
+        columns.add(sample(2, "test", 20));
+
+        List<SlingReportSample> list = columns.asList();
+        assertEquals(2, list.size());
+        assertEquals(20, list.get(1).getMedian());
+        columns.add(sample(3, "test", 30));
+        assertEquals(3, list.size());
+        try {
+            list.add(sample(4, "test", 40));
+            fail("the view is read-only");
+        } catch (UnsupportedOperationException expected) {
+        }
+        try {
+            columns.get(3);
+            fail("beyond the samples");
+        } catch (IndexOutOfBoundsException expected) {
+        }
+    }
+
+    public void testEstimatedSizeGrowsWithDistinctStrings() {
+        SampleColumns same = new SampleColumns(4);
+        SampleColumns distinct = new SampleColumns(4);
+        for (int i = 0; i < 4; i++) {
+            same.add(sample(i, "test", 10));
+            distinct.add(sample(i, "test" + i, 10));
+        }
+        assertTrue(distinct.estimateSize() > same.estimateSize());
+    }
+}
@@ -0,0 +1,89 @@
+package net.dulvac.slingperformanceplugin.stats;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+public class LatencyHistogramTest extends TestCase {
+
+    public void testBucketsCoverAllValues() {
+        long[] values = { 0, 1, 63, 64, 65, 127, 128, 1000, 123456789L, Long.MAX_VALUE };
+        for (long value : values) {
+            int bucket = LatencyHistogram.bucket(value);
+            long lowest = LatencyHistogram.lowestValue(bucket);
+            assertTrue(value + " below bucket", lowest <= value);
+            assertTrue(value + " above bucket", value - lowest < LatencyHistogram.bucketWidth(bucket));
+        }
+        for (int bucket = 0; bucket < LatencyHistogram.bucket(Long.MAX_VALUE); bucket++) {
+            assertEquals(LatencyHistogram.lowestValue(bucket + 1),
+                    LatencyHistogram.lowestValue(bucket) + LatencyHistogram.bucketWidth(bucket));
+        }
+    }
+
+    public void testPercentilesWithinResolution() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100000; value++) {
+            histogram.record(value);
+        }
+        assertEquals(100000, histogram.getCount());
+        assertEquals(1, histogram.getMin());
+        assertEquals(100000, histogram.getMax());
+        assertEquals(50000, histogram.getValueAtPercentile(50), 50000 * 0.04);
+        assertEquals(99000, histogram.getValueAtPercentile(99), 99000 * 0.04);
+        assertEquals(99900, histogram.getValueAtPercentile(99.9), 99900 * 0.04);
+        assertEquals(100000, histogram.getValueAtPercentile(100));
+    }
+
+    public void testMergeEqualsRecordingTogether() {
+        Random random = new Random(42);
+        LatencyHistogram all = new LatencyHistogram();
+        LatencyHistogram first = new LatencyHistogram();
+        LatencyHistogram second = new LatencyHistogram();
+        for (int i = 0; i < 10000; i++) {
+            long value = (long) (random.nextGaussian() * 1000 + 20000);
+            all.record(value);
+            (i % 3 == 0 ? first : second).record(value);
+        }
+        first.add(second);
+        for (double percentile : new double[] { 1, 10, 50, 90, 99, 99.9 }) {
+            assertEquals(all.getValueAtPercentile(percentile), first.getValueAtPercentile(percentile));
+        }
+    }
+
+    public void testRecordUniform() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordUniform(10000, 20000, 1000);
+        assertEquals(1000, histogram.getCount());
+        assertEquals(10000, histogram.getMin());
+        assertEquals(20000, histogram.getMax());
+        assertEquals(15000, histogram.getValueAtPercentile(50), 15000 * 0.04);
+        assertEquals(19000, histogram.getValueAtPercentile(90), 19000 * 0.04);
+
+        histogram.recordUniform(500, 500, 1000);
+        assertEquals(2000, histogram.getCount());
+        assertEquals(500, histogram.getValueAtPercentile(25));
+    }
+
+    public void testSerialization() throws IOException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(5, 3);
+        histogram.record(70000);
+        histogram.record(3000000000L);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        histogram.write(out);
+        out.close();
+        LatencyHistogram read =
+                LatencyHistogram.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(histogram.getCount(), read.getCount());
+        assertEquals(histogram.getMin(), read.getMin());
+        assertEquals(histogram.getMax(), read.getMax());
+        assertEquals(histogram.getMean(), read.getMean());
+        assertEquals(histogram.getValueAtPercentile(70), read.getValueAtPercentile(70));
+    }
+}
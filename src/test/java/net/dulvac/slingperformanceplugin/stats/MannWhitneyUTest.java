@@ -0,0 +1,31 @@
+package net.dulvac.slingperformanceplugin.stats;
+
+import junit.framework.TestCase;
+
+public class MannWhitneyUTest extends TestCase {
+
+    public void testSeparatedSamples() {
+        double[] baseline = { 1, 2, 3, 4, 5 };
+        double[] candidate = { 6, 7, 8, 9, 10 };
+        // U = 25, mean 12.5, sd 4.787, z = 2.507 with continuity correction
+        assertEquals(0.0061, MannWhitneyU.pGreater(baseline, candidate), 0.0005);
+        assertTrue(MannWhitneyU.pGreater(candidate, baseline) > 0.99);
+    }
+
+    public void testOverlappingSamplesAreNotSignificant() {
+        double[] baseline = { 100, 104, 98, 101, 103, 99 };
+        double[] candidate = { 102, 97, 105, 100, 101, 98 };
+        assertTrue(MannWhitneyU.pGreater(baseline, candidate) > 0.2);
+    }
+
+    public void testDegenerateSamples() {
+        assertEquals(1.0, MannWhitneyU.pGreater(new double[0], new double[] { 1, 2 }));
+        assertEquals(1.0, MannWhitneyU.pGreater(new double[] { 5, 5, 5 }, new double[] { 5, 5 }));
+    }
+
+    public void testNormalCdf() {
+        assertEquals(0.5, MannWhitneyU.normalCdf(0), 1e-6);
+        assertEquals(0.975, MannWhitneyU.normalCdf(1.96), 1e-4);
+        assertEquals(0.025, MannWhitneyU.normalCdf(-1.96), 1e-4);
+    }
+}